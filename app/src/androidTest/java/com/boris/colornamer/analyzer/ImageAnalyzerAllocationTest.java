@@ -0,0 +1,137 @@
+package com.boris.colornamer.analyzer;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Debug;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.camera.core.ImageProxy;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.boris.colornamer.imageutils.YuvPlane;
+import com.boris.colornamer.view.MarkerOverlayView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic camera images through {@link ImageAnalyzer#analyze(ImageProxy.PlaneProxy[], int, int, int, long)}
+ * and checks that, once warmed up, neither the calling thread nor the stages of the pipeline allocate.
+ * The allocations of the whole runtime are counted, so a zero count covers every stage thread and the
+ * fork-join pools. The views are not attached, so the display on the UI thread is not measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageAnalyzerAllocationTest {
+
+    private static final int W = 640;
+    private static final int H = 480;
+    private static final int WARMUP_FRAMES = 100;
+    private static final int FRAME_COUNT = 200;
+    //camera rate, so that the pipeline processes the images instead of dropping them
+    private static final long FRAME_INTERVAL_MS = 50;
+    //the runtime and the JIT may still map a few native arenas while the images are analyzed
+    private static final long MAX_NATIVE_GROWTH = 64 * 1024;
+
+    private ImageAnalyzer mAnalyzer;
+    private ImageProxy.PlaneProxy[] mPlanes;
+    private long mTimestamp;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    /**
+     * Creates the planes of a NV21 image with a gradient, the same buffers are analyzed at each frame
+     */
+    private static ImageProxy.PlaneProxy[] createPlanes() {
+        ByteBuffer y = ByteBuffer.allocateDirect(W * H);
+        for (int i = 0; i < W * H; i++) y.put(i, (byte) (i % W * 255 / W));
+        ByteBuffer vu = ByteBuffer.allocateDirect(W * H / 2);
+        for (int i = 0; i < W * H / 2; i++) vu.put(i, (byte) (i % 2 == 0 ? 200 : 60));
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        vu.position(0);
+        ByteBuffer v = vu.slice();
+        return new ImageProxy.PlaneProxy[]{new YuvPlane(y, W, 1), new YuvPlane(u, W, 2), new YuvPlane(v, W, 2)};
+    }
+
+    @Before
+    public void setUp() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        instrumentation.runOnMainSync(() -> mAnalyzer = new ImageAnalyzer(new ImageView(context), new MarkerOverlayView(context),
+                new TextView(context), new TextView(context), new TextView(context), context));
+        //the same image is analyzed again instead of being skipped as unchanged
+        mAnalyzer.setChangeThreshold(-1);
+        mPlanes = createPlanes();
+    }
+
+    @After
+    public void tearDown() {
+        mAnalyzer.release();
+    }
+
+    @Test
+    public void renderedPreview_allocatesNothing() throws InterruptedException {
+        mAnalyzer.setRenderPreview(true);
+        assertSteadyStateAllocatesNothing();
+    }
+
+    @Test
+    public void dominantColorsAndColorMap_allocateNothing() throws InterruptedException {
+        mAnalyzer.setRenderPreview(true);
+        mAnalyzer.setDominantColors(true);
+        mAnalyzer.setSegmentation(true);
+        mAnalyzer.setProbes(ImageAnalyzer.createProbeGrid(3, 3));
+        assertSteadyStateAllocatesNothing();
+    }
+
+    /**
+     * Hands images to the analyzer at the camera rate, from this thread like the camera executor
+     */
+    private void feed(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            mAnalyzer.analyze(mPlanes, W, H, 90, mTimestamp);
+            mTimestamp += FRAME_INTERVAL_MS * 1_000_000L;
+            Thread.sleep(FRAME_INTERVAL_MS);
+        }
+    }
+
+    private void assertSteadyStateAllocatesNothing() throws InterruptedException {
+        //the Mats, the bitmaps and the buffers are created by the first images
+        feed(WARMUP_FRAMES);
+        int level = mAnalyzer.getQualityController().getLevelIndex();
+        long processed = mAnalyzer.getProcessedFrameCount();
+
+        Debug.resetAllCounts();
+        Debug.startAllocCounting();
+        long nativeStart = Debug.getNativeHeapAllocatedSize();
+        feed(FRAME_COUNT);
+        //the last images go through the stages
+        Thread.sleep(500);
+        Debug.stopAllocCounting();
+        int globalCount = Debug.getGlobalAllocCount();
+        int globalSize = Debug.getGlobalAllocSize();
+        int threadCount = Debug.getThreadAllocCount();
+        long nativeGrowth = Debug.getNativeHeapAllocatedSize() - nativeStart;
+
+        //a change of quality resizes the images, which is not the steady state
+        assertEquals("quality level changed during the measure", level, mAnalyzer.getQualityController().getLevelIndex());
+        assertEquals("images not analyzed", processed + FRAME_COUNT, mAnalyzer.getProcessedFrameCount());
+        assertEquals("objects allocated by the camera thread", 0, threadCount);
+        assertEquals("objects allocated by the stage threads, " + globalSize + " bytes", 0, globalCount);
+        assertTrue("native heap grew by " + nativeGrowth + " bytes", nativeGrowth <= MAX_NATIVE_GROWTH);
+    }
+
+}
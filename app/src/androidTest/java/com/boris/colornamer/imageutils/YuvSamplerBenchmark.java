@@ -0,0 +1,91 @@
+package com.boris.colornamer.imageutils;
+
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the cost of sampling the center of a camera image directly from its YUV planes
+ * with the cost of converting and resizing the whole image before sampling it
+ */
+@RunWith(AndroidJUnit4.class)
+public class YuvSamplerBenchmark {
+
+    private static final String TAG = "YuvSamplerBenchmark";
+    private static final int W = 1000;
+    private static final int H = 1000;
+    private static final int ITERATIONS = 200;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    /**
+     * Creates the planes of a NV21 image, the layout used by most camera devices
+     */
+    private static ImageProxy.PlaneProxy[] createPlanes() {
+        ByteBuffer y = ByteBuffer.allocateDirect(W * H);
+        for (int i = 0; i < W * H; i++) y.put(i, (byte) (i * 31));
+        ByteBuffer vu = ByteBuffer.allocateDirect(W * H / 2);
+        for (int i = 0; i < W * H / 2; i++) vu.put(i, (byte) (i * 7));
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        vu.position(0);
+        ByteBuffer v = vu.slice();
+        return new ImageProxy.PlaneProxy[]{new YuvPlane(y, W, 1), new YuvPlane(u, W, 2), new YuvPlane(v, W, 2)};
+    }
+
+    @Test
+    public void centerSample_vsFullFrameConversion() {
+        ImageProxy.PlaneProxy[] planes = createPlanes();
+        Mat rgb = new Mat();
+        Mat square = new Mat();
+        Size squareSize = new Size(500, 500);
+        byte[] data = new byte[3 * 500 * 500];
+
+        //warm-up
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            ImageConverter.convYUV2RGB(planes, W, H, rgb);
+            Imgproc.resize(rgb, square, squareSize);
+            YuvSampler.meanRgb(planes, W / 2 - 7, H / 2 - 7, 14, 14);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            //previous classification path: whole image converted, resized and copied
+            ImageConverter.convYUV2RGB(planes, W, H, rgb);
+            Imgproc.resize(rgb, square, squareSize);
+            square.get(0, 0, data);
+        }
+        long fullFrame = (System.nanoTime() - start) / ITERATIONS;
+
+        int sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += YuvSampler.meanRgb(planes, W / 2 - 7, H / 2 - 7, 14, 14);
+        }
+        long center = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "full frame conversion + resize: " + fullFrame / 1000 + " us/frame");
+        Log.i(TAG, "center sampling from YUV planes: " + center / 1000 + " us/frame (" + sink + ")");
+        assertTrue(center < fullFrame);
+
+        rgb.release();
+        square.release();
+    }
+
+}
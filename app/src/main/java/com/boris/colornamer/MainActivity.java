@@ -2,10 +2,16 @@ package com.boris.colornamer;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
 import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.SeekBar;
 import android.widget.Switch;
 import android.widget.TextView;
 
@@ -14,18 +20,45 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.core.UseCaseGroup;
+import androidx.camera.core.ViewPort;
 import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.ActivityCompat.OnRequestPermissionsResultCallback;
 import androidx.core.content.ContextCompat;
 
 import com.boris.colornamer.Locale.LocaleHelper;
+import com.boris.colornamer.analyzer.FrameMetrics;
 import com.boris.colornamer.analyzer.ImageAnalyzer;
+import com.boris.colornamer.analyzer.StartupTrace;
+import com.boris.colornamer.imageutils.CaptureReader;
+import com.boris.colornamer.imageutils.CaptureWriter;
+import com.boris.colornamer.imageutils.Daltonizer;
+import com.boris.colornamer.imageutils.FrameReplayer;
+import com.boris.colornamer.imageutils.StillImage;
+import com.boris.colornamer.model.ColorNameTable;
+import com.boris.colornamer.model.ColorNames;
+import com.boris.colornamer.model.PaletteClassifier;
+import com.boris.colornamer.model.SampleLog;
+import com.boris.colornamer.model.SampleLogReader;
+import com.boris.colornamer.view.MarkerOverlayView;
+import com.boris.colornamer.view.SampleHistoryAdapter;
+import com.boris.colornamer.view.StillImageView;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import org.opencv.android.OpenCVLoader;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements OnRequestPermissionsResultCallback {
 
@@ -33,28 +66,101 @@ public class MainActivity extends AppCompatActivity implements OnRequestPermissi
     private Switch mTorchSwitch;
     @SuppressLint("UseSwitchCompatOrMaterialCode")
     private Switch mLocaleSwitch;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mPreviewSwitch;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mStatsSwitch;
+    private TextView mStatsView;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mDominantSwitch;
+    private SeekBar mRegionSeekBar;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mColorMapSwitch;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mProbeGridSwitch;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mPaletteSwitch;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mRecordSwitch;
+    //file receiving the camera images while recording, closed by the camera executor
+    private CaptureWriter mRecorder;
+    //true while the capture file is created by the camera executor
+    private boolean mRecorderPending;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mPhotoSwitch;
+    //photo opened from the gallery, the camera is unbound while it is displayed
+    private StillImage mStillImage;
+    private StillImageView mStillImageView;
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mDaltonizeSwitch;
+    //deficiency of the daltonization filter, a long click on the switch selects the next one
+    private int mDeficiency = Daltonizer.PROTANOPIA;
+    //lookup tables of the daltonization filters, created at their first use
+    private final int[][] mFilterLuts = new int[Daltonizer.DEFICIENCY_COUNT][];
+    @SuppressLint("UseSwitchCompatOrMaterialCode")
+    private Switch mHistorySwitch;
+    private ListView mHistoryView;
+    //confirmed readings of the analyzer, closed by the camera executor
+    private SampleLog mSampleLog;
+    //context of the selected language
+    private Context mLocaleContext;
+    //true once the probe was moved away from the center by a tap
+    private boolean mProbeMoved;
+    private ImageView mPreviewView;
+    private PreviewView mCameraPreviewView;
+    private MarkerOverlayView mOverlayView;
     private Camera mCamera;
+    private ProcessCameraProvider mCameraProvider;
+    private CameraSelector mCameraSelector;
+    private Preview mPreview;
+    private ImageAnalysis mImageAnalysis;
+    //true while the camera waits for the layout of the camera preview to be bound
+    private boolean mViewPortPending;
     private ImageAnalyzer mAnalyzer;
+    //the analysis starts once OpenCV, the camera provider and the analyzer are all ready
+    private ListenableFuture<ProcessCameraProvider> mCameraProviderFuture;
+    private boolean mOpenCvLoaded;
+    private final StartupTrace mStartupTrace = new StartupTrace();
+    //the camera images are converted on this thread instead of the UI thread
+    private final ExecutorService mAnalysisExecutor = Executors.newSingleThreadExecutor();
 
     private final static String TAG = "MainActivity";
+    //refresh period of the statistics overlay
+    private final static long STATS_REFRESH_MS = 1000;
+    private final static String STATS_FILE_NAME = "frame_metrics.json";
+    private final static String CAPTURE_FILE_NAME = "capture.yuv";
+    private final static String STARTUP_FILE_NAME = "startup_metrics.json";
+    private final static String HISTORY_DIRECTORY = "history";
+    private final static String HISTORY_FILE_NAME = "sample_history.csv";
+    //sizes of the region of the dominant colors mode at both ends of the seek bar
+    private final static float MIN_REGION_SIZE = 0.05f;
+    private final static float MAX_REGION_SIZE = 0.5f;
+    //number of columns and rows of the grid of probes
+    private final static int PROBE_GRID_SIZE = 3;
+    private final static int REQUEST_CODE_PHOTO = 102;
+    //max side of the overview of a photo, and part of the memory of the app kept for its tiles
+    private final static int MAX_OVERVIEW_SIDE = 1024;
+    private final static int TILE_CACHE_FRACTION = 8;
+    //names of the deficiencies of the daltonization filter, indexed by deficiency
+    private final static int[] DEFICIENCY_NAMES = new int[]{R.string.protanopia, R.string.deuteranopia, R.string.tritanopia};
     private final String[] REQUIRED_PERMISSIONS = new String[]{"android.permission.CAMERA"};
 
-    //load opencv statically
-    static {
-        if (OpenCVLoader.initDebug()) {
-            Log.d(TAG, "OpenCV is configured or connected successfully");
-        } else {
-            Log.e(TAG, "OpenCV not working or loaded");
-        }
-    }
-
     /**
      * Called at the opening of the app
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mStartupTrace.mark(StartupTrace.CREATE);
         setContentView(R.layout.activity_main);
+        mStartupTrace.mark(StartupTrace.CONTENT_VIEW);
+
+        //the native code and the camera provider are loaded in parallel while the UI is shown
+        loadOpenCv();
+        startCamera();
+
+        //prepare the color names lookup table while the camera starts
+        ColorNameTable.loadInBackground(getCacheDir());
 
         //continue initialization if all permissions granted
         if (allPermissionsGranted()) {
@@ -67,6 +173,24 @@ public class MainActivity extends AppCompatActivity implements OnRequestPermissi
         }
     }
 
+    /**
+     * Called at the closing of the app
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mStatsView != null) mStatsView.removeCallbacks(mStatsRefresh);
+        stopRecording();
+        closePhoto();
+        //release the analyzer after the last analyzed image
+        if (mAnalyzer != null) {
+            Log.i(TAG, "Analyzed images: " + mAnalyzer.getProcessedFrameCount() + ", skipped still images: " + mAnalyzer.getSkippedFrameCount());
+            mAnalysisExecutor.execute(mAnalyzer::release);
+        }
+        closeSampleLog();
+        mAnalysisExecutor.shutdown();
+    }
+
     private boolean allPermissionsGranted() {
         for (String permission : REQUIRED_PERMISSIONS) {
             if (ContextCompat.checkSelfPermission(getApplicationContext(), permission) != PackageManager.PERMISSION_GRANTED) {
@@ -101,64 +225,572 @@ public class MainActivity extends AppCompatActivity implements OnRequestPermissi
     }
 
     private void init() {
-        ImageView mPreviewView = findViewById(R.id.previewView);
+        mPreviewView = findViewById(R.id.previewView);
+        mCameraPreviewView = findViewById(R.id.cameraPreviewView);
+        mOverlayView = findViewById(R.id.overlayView);
         mTorchSwitch = findViewById(R.id.torchSwitch);
         mLocaleSwitch = findViewById(R.id.localeSwitch);
+        mPreviewSwitch = findViewById(R.id.previewSwitch);
+        mStatsSwitch = findViewById(R.id.statsSwitch);
+        mStatsView = findViewById(R.id.statsView);
+        mDominantSwitch = findViewById(R.id.dominantSwitch);
+        mRegionSeekBar = findViewById(R.id.regionSeekBar);
+        mColorMapSwitch = findViewById(R.id.colorMapSwitch);
+        mProbeGridSwitch = findViewById(R.id.probeGridSwitch);
+        mPaletteSwitch = findViewById(R.id.paletteSwitch);
+        mRecordSwitch = findViewById(R.id.recordSwitch);
+        mPhotoSwitch = findViewById(R.id.photoSwitch);
+        mStillImageView = findViewById(R.id.stillImageView);
+        mDaltonizeSwitch = findViewById(R.id.daltonizeSwitch);
+        mHistorySwitch = findViewById(R.id.historySwitch);
+        mHistoryView = findViewById(R.id.historyView);
         TextView mTextViewColor = findViewById(R.id.textColor);
         TextView mTextViewRGB = findViewById(R.id.textRGB);
         TextView mTextViewHSV = findViewById(R.id.textHSV);
 
-        mAnalyzer = new ImageAnalyzer(mPreviewView, mTextViewColor, mTextViewRGB, mTextViewHSV, getBaseContext());
+        mAnalyzer = new ImageAnalyzer(mPreviewView, mOverlayView, mTextViewColor, mTextViewRGB, mTextViewHSV, getBaseContext());
+        mStartupTrace.setListener(this::exportStartup);
+        mAnalyzer.setStartupTrace(mStartupTrace);
+        openSampleLog();
 
         setTitle(getString(R.string.app_title));
+        mLocaleContext = getBaseContext();
+        updateDaltonizeText();
 
         mLocaleSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
             Context c = LocaleHelper.setLocale(getBaseContext(), isChecked ? "en" : "fr");
             mAnalyzer.setContext(c);
             mTorchSwitch.setText(c.getString(R.string.torch));
             mLocaleSwitch.setText(c.getString(R.string.language));
+            mPreviewSwitch.setText(c.getString(R.string.fast_preview));
+            mStatsSwitch.setText(c.getString(R.string.statistics));
+            mDominantSwitch.setText(c.getString(R.string.dominant_colors));
+            mColorMapSwitch.setText(c.getString(R.string.color_map));
+            mProbeGridSwitch.setText(c.getString(R.string.probe_grid));
+            mPaletteSwitch.setText(c.getString(R.string.perceptual_names));
+            mRecordSwitch.setText(c.getString(R.string.record));
+            mPhotoSwitch.setText(c.getString(R.string.photo));
+            mHistorySwitch.setText(c.getString(R.string.history));
+            mLocaleContext = c;
+            updateDaltonizeText();
             setTitle(c.getString(R.string.app_title));
         });
 
-        startCamera();
+        //the image rendered by the analyzer is kept as a fallback of the camera preview
+        mPreviewSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> bindCamera());
+
+        //the latencies of the analysis are only measured while they are displayed
+        mStatsSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            mAnalyzer.getMetrics().setEnabled(isChecked);
+            mStatsView.setVisibility(isChecked ? View.VISIBLE : View.GONE);
+            mStatsView.removeCallbacks(mStatsRefresh);
+            if (isChecked) mStatsView.post(mStatsRefresh);
+        });
+        mStatsView.setOnLongClickListener(v -> {
+            exportStats();
+            return true;
+        });
+
+        //the dominant colors of a region chosen with the seek bar replace the mean color of the center
+        mAnalyzer.setRegionSize(getRegionSize());
+        mDominantSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            mAnalyzer.setDominantColors(isChecked);
+            mRegionSeekBar.setEnabled(isChecked);
+            updateOverlay();
+        });
+        mRegionSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                mAnalyzer.setRegionSize(getRegionSize());
+                updateOverlay();
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        //the color name of every pixel is drawn over the image
+        mColorMapSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            mAnalyzer.setSegmentation(isChecked);
+            updateOverlay();
+        });
+
+        //a grid of probes samples the whole displayed image, turning it off samples the center again
+        mProbeGridSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            mProbeMoved = false;
+            mAnalyzer.setProbes(isChecked ? ImageAnalyzer.createProbeGrid(PROBE_GRID_SIZE, PROBE_GRID_SIZE) : new float[]{0.5f, 0.5f});
+            updateOverlay();
+        });
+
+        //the colors are named with the nearest color of a palette instead of the hue thresholds
+        mPaletteSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (!isChecked) {
+                mAnalyzer.setNamer(null);
+                return;
+            }
+            //the grid of the palette is computed once, out of the UI thread
+            new Thread(() -> {
+                PaletteClassifier classifier = PaletteClassifier.getDefault();
+                runOnUiThread(() -> {
+                    if (mPaletteSwitch.isChecked()) mAnalyzer.setNamer(classifier);
+                });
+            }, "PaletteClassifier").start();
+        });
+
+        //the camera images are recorded to be replayed without camera, a long click replays the last capture
+        mRecordSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked) startRecording();
+            else stopRecording();
+        });
+        mRecordSwitch.setOnLongClickListener(v -> {
+            replayCapture();
+            return true;
+        });
+
+        //a photo of the gallery replaces the camera, its tapped points are sampled at native resolution
+        mPhotoSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked) pickPhoto();
+            else closePhoto();
+        });
+        mStillImageView.setOnSampleListener(this::samplePhoto);
+
+        //the rendered preview is daltonized for the selected deficiency, the colors are still named from the camera image
+        mDaltonizeSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> updateColorFilter());
+        mDaltonizeSwitch.setOnLongClickListener(v -> {
+            mDeficiency = (mDeficiency + 1) % Daltonizer.DEFICIENCY_COUNT;
+            updateDaltonizeText();
+            updateColorFilter();
+            return true;
+        });
+
+        //the confirmed readings are listed from the newest one, a long click exports them as CSV
+        mHistorySwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked) showHistory();
+            else mHistoryView.setVisibility(View.GONE);
+        });
+        mHistorySwitch.setOnLongClickListener(v -> {
+            exportHistory();
+            return true;
+        });
+
+        //a tap on the image samples the tapped point, both preview modes display the crop rect of the
+        //view port shared by the use cases, which is the area the probes are relative to
+        View.OnTouchListener tapToSample = (v, event) -> {
+            if (event.getAction() != MotionEvent.ACTION_UP) return true;
+            mProbeGridSwitch.setChecked(false);
+            mProbeMoved = true;
+            mAnalyzer.setProbes(new float[]{event.getX() / v.getWidth(), event.getY() / v.getHeight()});
+            updateOverlay();
+            return v.performClick();
+        };
+        mPreviewView.setOnTouchListener(tapToSample);
+        mCameraPreviewView.setOnTouchListener(tapToSample);
+
+        startAnalysis();
     }
 
-    private void startCamera() {
-        //create the potential (future) camera provider
-        //it will contains the camera provider when the
-        //camera will be available
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
+    /**
+     * Getter
+     *
+     * @return the size of the region of the dominant colors mode chosen with the seek bar
+     */
+    private float getRegionSize() {
+        return MIN_REGION_SIZE + (MAX_REGION_SIZE - MIN_REGION_SIZE) * mRegionSeekBar.getProgress() / mRegionSeekBar.getMax();
+    }
 
-        //define what to do when the camera provider will be available
-        cameraProviderFuture.addListener(() -> {
+    /**
+     * Getter
+     *
+     * @return true if the image is displayed by the camera preview, false if it is rendered by the analyzer
+     */
+    private boolean isFastPreview() {
+        //the daltonization filter is only applied to the rendered image
+        return mPreviewSwitch.isChecked() && !mDaltonizeSwitch.isChecked();
+    }
+
+    /**
+     * Shows the name of the deficiency of the daltonization filter in its switch
+     */
+    private void updateDaltonizeText() {
+        mDaltonizeSwitch.setText(mLocaleContext.getString(R.string.daltonize) + " " + mLocaleContext.getString(DEFICIENCY_NAMES[mDeficiency]));
+    }
+
+    /**
+     * Applies the daltonization filter of the selected deficiency to the rendered preview, or removes it,
+     * a lookup table is created in a background thread at its first use
+     */
+    private void updateColorFilter() {
+        if (!mDaltonizeSwitch.isChecked()) {
+            mAnalyzer.setColorFilter(null);
+            bindCamera();
+            return;
+        }
+        int deficiency = mDeficiency;
+        if (mFilterLuts[deficiency] != null) {
+            mAnalyzer.setColorFilter(mFilterLuts[deficiency]);
+            bindCamera();
+            return;
+        }
+        new Thread(() -> {
+            int[] lut = Daltonizer.createLut(deficiency, true);
+            runOnUiThread(() -> {
+                mFilterLuts[deficiency] = lut;
+                if (mDaltonizeSwitch.isChecked() && mDeficiency == deficiency) updateColorFilter();
+            });
+        }, "Daltonizer").start();
+    }
+
+    /**
+     * Shows the overlay over the camera preview, and over the rendered image in the dominant colors
+     * and color map modes or when the probes are not only at the center
+     */
+    private void updateOverlay() {
+        boolean dominantColors = mDominantSwitch.isChecked();
+        boolean colorMap = mColorMapSwitch.isChecked();
+        boolean probes = mProbeGridSwitch.isChecked() || mProbeMoved;
+        mOverlayView.setVisibility(isFastPreview() || dominantColors || colorMap || probes ? View.VISIBLE : View.GONE);
+        mOverlayView.setRegionSize(dominantColors ? getRegionSize() : 0);
+        if (!dominantColors) mOverlayView.clearDominantColors();
+        if (!colorMap) mOverlayView.setColorMap(null);
+    }
+
+    /**
+     * Displays the statistics of the analysis then schedules the next refresh while they are enabled
+     */
+    private final Runnable mStatsRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if (!mAnalyzer.getMetrics().isEnabled()) return;
+            mStatsView.setText(mAnalyzer.getMetrics().toText());
+            mStatsView.postDelayed(this, STATS_REFRESH_MS);
+        }
+    };
+
+    /**
+     * Writes a JSON snapshot of the statistics of the analysis in the files of the app and logs it as text
+     */
+    private void exportStats() {
+        FrameMetrics metrics = mAnalyzer.getMetrics();
+        Log.i(TAG, "Analysis statistics\n" + metrics.toText());
+        writeJson(STATS_FILE_NAME, metrics.toJson());
+    }
+
+    /**
+     * Logs the times of the cold start and writes them as JSON in the files of the app
+     *
+     * @param trace the trace of the startup, complete once the first color is displayed
+     */
+    private void exportStartup(@NonNull StartupTrace trace) {
+        Log.i(TAG, "Cold start to first color: " + trace.getTimeMs(StartupTrace.FIRST_COLOR) + " ms\n" + trace.toText());
+        writeJson(STARTUP_FILE_NAME, trace.toJson());
+    }
+
+    /**
+     * Writes a JSON snapshot in the files of the app
+     *
+     * @param fileName the name of the file
+     * @param json     the content of the file
+     */
+    private void writeJson(@NonNull String fileName, @NonNull String json) {
+        File file = new File(getExternalFilesDir(null), fileName);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(json);
+            Log.i(TAG, "Statistics exported to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Statistics could not be exported to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Loads the native library of OpenCV in a background thread, then starts the analysis if the camera is ready
+     */
+    private void loadOpenCv() {
+        new Thread(() -> {
+            boolean loaded = OpenCVLoader.initDebug();
+            mStartupTrace.mark(StartupTrace.OPENCV_LOADED);
+            runOnUiThread(() -> {
+                if (loaded) {
+                    Log.d(TAG, "OpenCV is configured or connected successfully");
+                    mOpenCvLoaded = true;
+                    startAnalysis();
+                } else {
+                    Log.e(TAG, "OpenCV not working or loaded");
+                }
+            });
+        }, "OpenCVLoader").start();
+    }
+
+    /**
+     * Creates the capture file and its batches on the camera executor, then starts appending the
+     * camera images to it, the previous capture is replaced
+     */
+    private void startRecording() {
+        //the switch was turned off and on again while the file is created
+        if (mRecorderPending || mRecorder != null) return;
+        mRecorderPending = true;
+        mAnalysisExecutor.execute(() -> {
+            File file = new File(getExternalFilesDir(null), CAPTURE_FILE_NAME);
             try {
-                // Camera provider is now guaranteed to be available
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                CaptureWriter recorder = new CaptureWriter(file, CaptureWriter.DEFAULT_BATCH_SIZE);
+                runOnUiThread(() -> {
+                    mRecorderPending = false;
+                    if (!isDestroyed() && mRecordSwitch.isChecked()) {
+                        mRecorder = recorder;
+                        mAnalyzer.setRecorder(recorder);
+                        Log.i(TAG, "Recording camera images to " + file.getAbsolutePath());
+                        return;
+                    }
+                    //the recording was stopped while the file was created, no image was appended
+                    new Thread(() -> {
+                        try {
+                            recorder.close();
+                        } catch (IOException e) {
+                            Log.e(TAG, "Capture file could not be closed", e);
+                        }
+                    }, "CaptureCloser").start();
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Camera images could not be recorded", e);
+                runOnUiThread(() -> {
+                    mRecorderPending = false;
+                    mRecordSwitch.setChecked(false);
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the recording, the file is closed by the camera executor after the last appended image
+     */
+    private void stopRecording() {
+        CaptureWriter recorder = mRecorder;
+        if (recorder == null) return;
+        mRecorder = null;
+        mAnalyzer.setRecorder(null);
+        mAnalysisExecutor.execute(() -> {
+            try {
+                recorder.close();
+                Log.i(TAG, "Recorded images: " + recorder.getFrameCount() + ", dropped: " + recorder.getDroppedCount());
+            } catch (IOException e) {
+                Log.e(TAG, "Capture file could not be written", e);
+            }
+        });
+    }
+
+    /**
+     * Replays the last capture at its original pace through the analyzer, the camera images
+     * wait on the camera executor until the replay ends, the statistics are logged if enabled
+     */
+    private void replayCapture() {
+        if (mRecordSwitch.isChecked() || mImageAnalysis == null || mStillImage != null) return;
+        File file = new File(getExternalFilesDir(null), CAPTURE_FILE_NAME);
+        mAnalysisExecutor.execute(() -> {
+            try {
+                FrameReplayer replayer = new FrameReplayer(CaptureReader.open(file));
+                int count = replayer.replay(mAnalyzer::analyze, true);
+                Log.i(TAG, "Replayed images: " + count);
+                if (mAnalyzer.getMetrics().isEnabled()) Log.i(TAG, "Replay statistics\n" + mAnalyzer.getMetrics().toText());
+            } catch (IOException e) {
+                Log.e(TAG, "Capture file could not be replayed", e);
+            }
+        });
+    }
+
+    /**
+     * Opens the history of the previous sessions in a background thread, out of the cold start,
+     * then starts appending the confirmed readings of the analyzer to it
+     */
+    private void openSampleLog() {
+        new Thread(() -> {
+            File directory = new File(getExternalFilesDir(null), HISTORY_DIRECTORY);
+            try {
+                SampleLog sampleLog = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE);
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        mSampleLog = sampleLog;
+                        mAnalyzer.setSampleLog(sampleLog);
+                        return;
+                    }
+                    //the app was closed while the history was opened, the analyzer never used it
+                    new Thread(() -> {
+                        try {
+                            sampleLog.close();
+                        } catch (IOException e) {
+                            Log.e(TAG, "Color history could not be closed", e);
+                        }
+                    }, "SampleLogCloser").start();
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Color history could not be opened in " + directory.getAbsolutePath(), e);
+            }
+        }, "SampleLogOpener").start();
+    }
 
-                // Choose the camera by requiring a lens facing
-                CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(CameraSelector.LENS_FACING_BACK).build();
+    /**
+     * Stops the history, the log is closed by the camera executor once the analyzer is released
+     */
+    private void closeSampleLog() {
+        SampleLog sampleLog = mSampleLog;
+        if (sampleLog == null) return;
+        mSampleLog = null;
+        mAnalyzer.setSampleLog(null);
+        mAnalysisExecutor.execute(() -> {
+            try {
+                sampleLog.close();
+                Log.i(TAG, "Logged readings: " + sampleLog.getCount() + ", dropped: " + sampleLog.getDroppedCount());
+            } catch (IOException e) {
+                Log.e(TAG, "Color history could not be written", e);
+            }
+        });
+    }
 
-                //Images are processed by passing an executor in which the image analysis is run
-                ImageAnalysis.Builder builder = new ImageAnalysis.Builder();
+    /**
+     * Flushes the pending readings then maps the history in a background thread, and lists it once it is mapped
+     */
+    private void showHistory() {
+        SampleLog sampleLog = mSampleLog;
+        if (sampleLog == null) {
+            mHistorySwitch.setChecked(false);
+            return;
+        }
+        Context context = mLocaleContext;
+        new Thread(() -> {
+            try {
+                sampleLog.flush();
+                SampleLogReader reader = SampleLogReader.open(sampleLog.getDirectory());
+                runOnUiThread(() -> {
+                    if (!mHistorySwitch.isChecked()) return;
+                    mHistoryView.setAdapter(new SampleHistoryAdapter(reader, context));
+                    mHistoryView.setVisibility(View.VISIBLE);
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Color history could not be read", e);
+                runOnUiThread(() -> mHistorySwitch.setChecked(false));
+            }
+        }, "SampleLogReader").start();
+    }
 
-                //build the imageAnalysis
-                ImageAnalysis imageAnalysis = builder
-                        //set the resolution of the view
-                        .setTargetResolution(new android.util.Size(1000, 1000))
-                        //set image format
-                        .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
-                        //set rotation
-                        .setOutputImageRotationEnabled(true)
-                        //the executor receives the last available frame from the camera at the time that the analyze() method is called
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST).build();
-                //sets the analyzer
-                imageAnalysis.setAnalyzer(getMainExecutor(), mAnalyzer);
+    /**
+     * Writes the whole history as CSV in the files of the app, in a background thread
+     */
+    private void exportHistory() {
+        SampleLog sampleLog = mSampleLog;
+        if (sampleLog == null) return;
+        //the names are exported in the selected language
+        String[] names = ColorNames.getNames(mLocaleContext);
+        File file = new File(getExternalFilesDir(null), HISTORY_FILE_NAME);
+        new Thread(() -> {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                sampleLog.flush();
+                SampleLogReader.open(sampleLog.getDirectory()).writeCsv(writer, names);
+                Log.i(TAG, "Color history exported to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "Color history could not be exported to " + file.getAbsolutePath(), e);
+            }
+        }, "SampleLogExporter").start();
+    }
 
-                // Attach use cases to the camera with the same lifecycle owner
-                mCamera = cameraProvider.bindToLifecycle(this, cameraSelector, imageAnalysis);
+    /**
+     * Lets the user choose a photo, it is opened in {@link #onActivityResult(int, int, Intent)}
+     */
+    private void pickPhoto() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT).addCategory(Intent.CATEGORY_OPENABLE).setType("image/*");
+        startActivityForResult(intent, REQUEST_CODE_PHOTO);
+    }
 
-                mTorchSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> mCamera.getCameraControl().enableTorch(isChecked));
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_CODE_PHOTO) return;
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            mPhotoSwitch.setChecked(false);
+            return;
+        }
+        openPhoto(data.getData());
+    }
 
+    /**
+     * Opens a photo and decodes its overview in a background thread, then displays it instead of the camera
+     *
+     * @param uri the uri of the photo
+     */
+    private void openPhoto(@NonNull Uri uri) {
+        int maxCacheBytes = (int) (Runtime.getRuntime().maxMemory() / TILE_CACHE_FRACTION);
+        new Thread(() -> {
+            try {
+                StillImage image = StillImage.open(getContentResolver(), uri, MAX_OVERVIEW_SIDE, maxCacheBytes);
+                runOnUiThread(() -> {
+                    //the photo mode was left while the photo was opened
+                    if (isDestroyed() || !mPhotoSwitch.isChecked() || mStillImage != null) {
+                        image.release();
+                        return;
+                    }
+                    Log.i(TAG, "Photo opened: " + image.getWidth() + "x" + image.getHeight());
+                    mStillImage = image;
+                    if (mCameraProvider != null) mCameraProvider.unbindAll();
+                    mPreviewView.setVisibility(View.GONE);
+                    mCameraPreviewView.setVisibility(View.GONE);
+                    mOverlayView.setVisibility(View.GONE);
+                    mStillImageView.setVisibility(View.VISIBLE);
+                    mStillImageView.setImage(image);
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Photo could not be opened", e);
+                runOnUiThread(() -> mPhotoSwitch.setChecked(false));
+            }
+        }, "StillImageLoader").start();
+    }
+
+    /**
+     * Closes the photo and binds the camera again
+     */
+    private void closePhoto() {
+        StillImage image = mStillImage;
+        if (image == null) return;
+        mStillImage = null;
+        mStillImageView.setImage(null);
+        mStillImageView.setVisibility(View.GONE);
+        image.release();
+        bindCamera();
+    }
+
+    /**
+     * Samples a patch of the photo around a tapped point, the patch covers the same part of the
+     * photo as the patch of the main probe covers of the camera image
+     *
+     * @param x the horizontal position of the point in pixels of the photo
+     * @param y the vertical position of the point in pixels of the photo
+     */
+    private void samplePhoto(int x, int y) {
+        StillImage image = mStillImage;
+        if (image == null) return;
+        int side = Math.max(1, (int) (ImageAnalyzer.DEFAULT_PATCH_SIZE * Math.min(image.getWidth(), image.getHeight())));
+        image.sample(x, y, side, rgb -> runOnUiThread(() -> {
+            if (mStillImage == image) mAnalyzer.showColor(rgb);
+        }));
+    }
+
+    /**
+     * Requests the camera provider, the analysis starts once it is available and the other parts are ready
+     */
+    private void startCamera() {
+        //create the potential (future) camera provider
+        //it will contains the camera provider when the
+        //camera will be available
+        mCameraProviderFuture = ProcessCameraProvider.getInstance(this);
+
+        //define what to do when the camera provider will be available
+        mCameraProviderFuture.addListener(() -> {
+            try {
+                // Camera provider is now guaranteed to be available
+                mCameraProvider = mCameraProviderFuture.get();
+                mStartupTrace.mark(StartupTrace.CAMERA_PROVIDER);
+                startAnalysis();
             } catch (InterruptedException | ExecutionException e) {
                 // Currently no exceptions thrown. cameraProviderFuture.get() should
                 // not block since the listener is being called, so no need to
@@ -168,4 +800,107 @@ public class MainActivity extends AppCompatActivity implements OnRequestPermissi
         }, ContextCompat.getMainExecutor(this));
     }
 
+    /**
+     * Binds the camera once OpenCV is loaded, the camera provider is available and the analyzer
+     * is created with the permission granted, each of them calls it when it becomes ready
+     */
+    private void startAnalysis() {
+        if (!mOpenCvLoaded || mCameraProvider == null || mAnalyzer == null || mImageAnalysis != null || isDestroyed()) return;
+
+        // Choose the camera by requiring a lens facing
+        mCameraSelector = new CameraSelector.Builder().requireLensFacing(CameraSelector.LENS_FACING_BACK).build();
+
+        //the preview is displayed by the GPU without going through the analyzer
+        mPreview = new Preview.Builder().build();
+        mPreview.setSurfaceProvider(mCameraPreviewView.getSurfaceProvider());
+
+        //the resolution starts at the current quality of the analyzer
+        mImageAnalysis = buildImageAnalysis(mAnalyzer.getQualityController().getLevel().resolution);
+
+        //the camera is bound again when the analyzer needs another resolution
+        mAnalyzer.getQualityController().setListener(level -> runOnUiThread(() -> {
+            if (isDestroyed()) return;
+            Log.i(TAG, "Analysis resolution changed to " + level.resolution);
+            mImageAnalysis.clearAnalyzer();
+            mImageAnalysis = buildImageAnalysis(level.resolution);
+            bindCamera();
+        }));
+
+        bindCamera();
+        mStartupTrace.mark(StartupTrace.CAMERA_BOUND);
+
+        mTorchSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (mCamera != null) mCamera.getCameraControl().enableTorch(isChecked);
+        });
+    }
+
+    /**
+     * Creates the analysis use case, the images are processed by the analyzer on the analysis executor
+     *
+     * @param resolution the side of the square target resolution of the camera images
+     * @return the analysis use case
+     */
+    private ImageAnalysis buildImageAnalysis(int resolution) {
+        //Images are processed by passing an executor in which the image analysis is run
+        ImageAnalysis.Builder builder = new ImageAnalysis.Builder();
+
+        //build the imageAnalysis
+        ImageAnalysis imageAnalysis = builder
+                //set the resolution of the view
+                .setTargetResolution(new android.util.Size(resolution, resolution))
+                //set image format
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                //the buffers are not rotated by the CPU, the analyzer reads them with their rotation
+                //the executor receives the last available frame from the camera at the time that the analyze() method is called
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST).build();
+        //sets the analyzer
+        imageAnalysis.setAnalyzer(mAnalysisExecutor, mAnalyzer);
+        return imageAnalysis;
+    }
+
+    /**
+     * Attaches the use cases to the camera depending on the preview mode, the camera preview
+     * is only bound in fast preview mode, else the analyzer renders the image in the ImageView.
+     * The use cases share the view port of the camera preview, so the analyzed images are cropped
+     * to the area it displays, and the rendered preview displays the same area.
+     */
+    private void bindCamera() {
+        //the analysis is not started yet or a photo replaces the camera
+        if (mImageAnalysis == null || mStillImage != null) return;
+
+        boolean fastPreview = isFastPreview();
+        mAnalyzer.setRenderPreview(!fastPreview);
+        mPreviewView.setVisibility(fastPreview ? View.GONE : View.VISIBLE);
+        //the camera preview stays laid out under the rendered preview to give the view port
+        mCameraPreviewView.setVisibility(fastPreview ? View.VISIBLE : View.INVISIBLE);
+        updateOverlay();
+
+        //the view port is only known once the camera preview is laid out
+        ViewPort viewPort = mCameraPreviewView.getViewPort();
+        if (viewPort == null) {
+            if (!mViewPortPending) {
+                mViewPortPending = true;
+                mCameraPreviewView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                    @Override
+                    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                        v.removeOnLayoutChangeListener(this);
+                        mViewPortPending = false;
+                        bindCamera();
+                    }
+                });
+            }
+            return;
+        }
+
+        // Attach use cases to the camera with the same lifecycle owner
+        UseCaseGroup.Builder group = new UseCaseGroup.Builder().setViewPort(viewPort).addUseCase(mImageAnalysis);
+        if (fastPreview) group.addUseCase(mPreview);
+        mCameraProvider.unbindAll();
+        mCamera = mCameraProvider.bindToLifecycle(this, mCameraSelector, group.build());
+
+        //the torch is turned off when the camera is bound again
+        mCamera.getCameraControl().enableTorch(mTorchSwitch.isChecked());
+    }
+
 }
\ No newline at end of file
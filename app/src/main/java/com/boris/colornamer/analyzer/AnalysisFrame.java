@@ -0,0 +1,152 @@
+package com.boris.colornamer.analyzer;
+
+import org.opencv.core.Mat;
+
+/**
+ * Data of a camera frame going through the stages of the analysis pipeline,
+ * reused from one camera image to another
+ */
+class AnalysisFrame {
+
+    //max number of pixels sampled and of colors found in the dominant colors mode
+    static final int MAX_SAMPLES = 1024;
+    static final int MAX_CLUSTERS = 4;
+    //max side of the color map
+    static final int MAX_MAP_SIZE = 500;
+    //max number of probes sampled in an image
+    static final int MAX_PROBES = 16;
+
+    //RGB version of the camera image, created with the square image by the camera executor at the first render
+    Mat rgb;
+    //area of the RGB image inside the crop rect, the part of the camera image displayed by the previews
+    private Mat crop;
+    private long cropParentAddr;
+    private int cropLeft;
+    private int cropTop;
+    private int cropWidth;
+    private int cropHeight;
+    //square version of the cropped RGB image, displayed in the preview
+    Mat square;
+    //square image before its rotation when the camera buffer is not upright
+    Mat resized;
+    //timestamp of the camera image in nanoseconds
+    long timestamp;
+    //clockwise rotation making the camera buffer upright, the probes and the displayed images are upright
+    int rotationDegrees;
+    //longest time spent on this frame by one of the threads, in nanoseconds
+    long processingTime;
+    //true if the square image is rendered for this frame
+    boolean renderPreview;
+    //lookup table daltonizing the rendered square image, null to render the colors of the camera
+    int[] filterLut;
+    //mean color of the main probe packed as 0xRRGGBB, or the largest dominant color, and variance of the colors of its patch
+    int meanColor;
+    float variance;
+
+    //centers of the probes relatively to the size of the image, their mean colors and whether their patches are uniform
+    int probeCount;
+    float patchSize;
+    final float[] probeCenters = new float[2 * MAX_PROBES];
+    final int[] probeColors = new int[MAX_PROBES];
+    final boolean[] probeUniform = new boolean[MAX_PROBES];
+
+    //colors sampled in the region of the dominant colors mode, and the dominant colors found in them
+    boolean dominantColors;
+    final int[] samples = new int[MAX_SAMPLES];
+    int sampleCount;
+    final int[] clusterColors = new int[MAX_CLUSTERS];
+    final float[] clusterCoverages = new float[MAX_CLUSTERS];
+    int clusterCount;
+
+    //ids of the color names of the pixels of the color map mode
+    boolean segmentation;
+    final byte[] labels = new byte[MAX_MAP_SIZE * MAX_MAP_SIZE];
+    int mapSize;
+
+    //area of the square image where the marker of the main probe is drawn, and its pixels
+    private Mat marker;
+    private long markerParentAddr;
+    private int markerTop;
+    private int markerLeft;
+    byte[] markerPixels;
+
+    //values displayed for this frame: hue in degrees, saturation and value in percent,
+    //and the color names with the coverage of each one in percent in the dominant colors mode
+    int h;
+    int s;
+    int v;
+    final byte[] nameIds = new byte[MAX_CLUSTERS];
+    final int[] namePercents = new int[MAX_CLUSTERS];
+    int nameCount;
+
+    /**
+     * Creates the Mats at the first call, so that the frame can be created before OpenCV is loaded
+     */
+    void createMats() {
+        if (rgb != null) return;
+        rgb = new Mat();
+        square = new Mat();
+        resized = new Mat();
+    }
+
+    /**
+     * Getter, the area is created at the first call and only created again if the RGB image
+     * is reallocated, or if the crop rect changes
+     *
+     * @param left   the first column of the crop rect
+     * @param top    the first row of the crop rect
+     * @param width  the width of the crop rect
+     * @param height the height of the crop rect
+     * @return the area of the RGB image inside the crop rect
+     */
+    Mat getCrop(int left, int top, int width, int height) {
+        if (crop == null || cropParentAddr != rgb.dataAddr() || cropLeft != left || cropTop != top
+                || cropWidth != width || cropHeight != height) {
+            if (crop != null) crop.release();
+            crop = rgb.submat(top, top + height, left, left + width);
+            cropParentAddr = rgb.dataAddr();
+            cropLeft = left;
+            cropTop = top;
+            cropWidth = width;
+            cropHeight = height;
+        }
+        return crop;
+    }
+
+    /**
+     * Getter, the area is created at the first call and only created again if the square image
+     * is reallocated, or if the marker is resized or moved
+     *
+     * @param thickness the size of the marker
+     * @param x         the column of the center of the marker relatively to the width of the image
+     * @param y         the row of the center of the marker relatively to the height of the image
+     * @return the area of the square image where the marker is drawn
+     */
+    Mat getMarker(int thickness, float x, float y) {
+        int top = Math.max(0, Math.min(square.rows() - thickness, (int) (y * square.rows()) - (thickness - 1) / 2));
+        int left = Math.max(0, Math.min(square.cols() - thickness, (int) (x * square.cols()) - (thickness - 1) / 2));
+        if (marker == null || markerParentAddr != square.dataAddr() || marker.rows() != thickness || markerTop != top || markerLeft != left) {
+            if (marker != null) marker.release();
+            marker = square.submat(top, top + thickness, left, left + thickness);
+            markerParentAddr = square.dataAddr();
+            markerTop = top;
+            markerLeft = left;
+            if (markerPixels == null || markerPixels.length != 3 * thickness * thickness) markerPixels = new byte[3 * thickness * thickness];
+        }
+        return marker;
+    }
+
+    /**
+     * Frees the native memory of the Mats
+     */
+    void release() {
+        if (marker != null) marker.release();
+        marker = null;
+        if (crop != null) crop.release();
+        crop = null;
+        if (rgb != null) rgb.release();
+        if (square != null) square.release();
+        if (resized != null) resized.release();
+    }
+
+}
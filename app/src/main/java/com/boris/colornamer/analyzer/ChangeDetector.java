@@ -0,0 +1,141 @@
+package com.boris.colornamer.analyzer;
+
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tells whether a camera image differs from the last analyzed one, using the luma of a sparse
+ * grid of the Y plane and the mean color of the sampled area. Images that did not change
+ * beyond the threshold do not need to be analyzed again.
+ */
+public class ChangeDetector {
+
+    private final int mGridSize;
+    //luma of the grid for the last analyzed image
+    private final int[] mReference;
+    private int mReferenceColor;
+    private boolean mHasReference;
+    private volatile int mThreshold;
+
+    //only written by the thread comparing the images
+    private volatile long mProcessedCount;
+    private volatile long mSkippedCount;
+
+    /**
+     * Constructor
+     *
+     * @param gridSize  the number of sampled rows and columns of the Y plane
+     * @param threshold the max difference, between 0 and 255, for an image to be considered unchanged
+     */
+    public ChangeDetector(int gridSize, int threshold) {
+        this.mGridSize = gridSize;
+        this.mReference = new int[gridSize * gridSize];
+        this.mThreshold = threshold;
+    }
+
+    /**
+     * Setter
+     *
+     * @param threshold the max mean luma difference of the grid and max channel difference of
+     *                  the sampled color, between 0 and 255, for an image to be considered unchanged.
+     *                  A negative threshold makes every image considered changed.
+     */
+    public void setThreshold(int threshold) {
+        this.mThreshold = threshold;
+    }
+
+    /**
+     * Forgets the last analyzed image so that the next one is considered changed
+     */
+    public void reset() {
+        mHasReference = false;
+    }
+
+    /**
+     * Compares the given image with the last analyzed one, which is replaced if the image changed
+     *
+     * @param yPlane    the Y plane of the image
+     * @param w         the width of the image
+     * @param h         the height of the image
+     * @param meanColor the mean color of the sampled area of the image packed as 0xRRGGBB
+     * @return true if the image must be analyzed, false if the last result can be kept
+     */
+    public boolean hasChanged(@NotNull ImageProxy.PlaneProxy yPlane, int w, int h, int meanColor) {
+        return hasChanged(yPlane, 0, 0, w, h, meanColor);
+    }
+
+    /**
+     * Compares an area of the given image, such as the crop rect displayed by the preview, with the
+     * one of the last analyzed image, which is replaced if the area changed
+     *
+     * @param yPlane    the Y plane of the image
+     * @param left      the first column of the area
+     * @param top       the first row of the area
+     * @param w         the width of the area
+     * @param h         the height of the area
+     * @param meanColor the mean color of the sampled area of the image packed as 0xRRGGBB
+     * @return true if the image must be analyzed, false if the last result can be kept
+     */
+    public boolean hasChanged(@NotNull ImageProxy.PlaneProxy yPlane, int left, int top, int w, int h, int meanColor) {
+        ByteBuffer buffer = yPlane.getBuffer();
+        int rowStride = yPlane.getRowStride();
+        int pixelStride = yPlane.getPixelStride();
+
+        //the grid is centered in the cells of a regular subdivision of the image
+        int sumDiff = 0;
+        for (int i = 0; i < mGridSize; i++) {
+            int row = top + (2 * i + 1) * h / (2 * mGridSize);
+            for (int j = 0; j < mGridSize; j++) {
+                int col = left + (2 * j + 1) * w / (2 * mGridSize);
+                int luma = buffer.get(row * rowStride + col * pixelStride) & 0xff;
+                sumDiff += Math.abs(luma - mReference[i * mGridSize + j]);
+            }
+        }
+
+        boolean changed = !mHasReference
+                || sumDiff > mThreshold * mGridSize * mGridSize
+                || Math.abs((meanColor >> 16) - (mReferenceColor >> 16)) > mThreshold
+                || Math.abs(((meanColor >> 8) & 0xff) - ((mReferenceColor >> 8) & 0xff)) > mThreshold
+                || Math.abs((meanColor & 0xff) - (mReferenceColor & 0xff)) > mThreshold;
+
+        if (!changed) {
+            mSkippedCount++;
+            return false;
+        }
+
+        //the image becomes the new reference
+        for (int i = 0; i < mGridSize; i++) {
+            int row = top + (2 * i + 1) * h / (2 * mGridSize);
+            for (int j = 0; j < mGridSize; j++) {
+                int col = left + (2 * j + 1) * w / (2 * mGridSize);
+                mReference[i * mGridSize + j] = buffer.get(row * rowStride + col * pixelStride) & 0xff;
+            }
+        }
+        mReferenceColor = meanColor;
+        mHasReference = true;
+        mProcessedCount++;
+        return true;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of images considered changed
+     */
+    public long getProcessedCount() {
+        return mProcessedCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of images considered unchanged
+     */
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.boris.colornamer.analyzer;
+
+import com.boris.colornamer.model.PackedColor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values of an analyzed frame handed to the UI thread, reused from one frame to another
+ * so that publishing a frame does not allocate
+ */
+class DisplayState {
+
+    //timestamp of the camera image in nanoseconds
+    long timestamp;
+    boolean renderPreview;
+    boolean segmentation;
+
+    //values of the mean color of the main probe, hue in degrees, saturation and value in percent
+    int r;
+    int g;
+    int b;
+    int h;
+    int s;
+    int v;
+
+    //names to display, with the coverage of each one in percent in the dominant colors mode
+    boolean dominantColors;
+    final byte[] nameIds = new byte[AnalysisFrame.MAX_CLUSTERS];
+    final int[] namePercents = new int[AnalysisFrame.MAX_CLUSTERS];
+    int nameCount;
+
+    //dominant colors drawn in the swatch
+    final int[] clusterColors = new int[AnalysisFrame.MAX_CLUSTERS];
+    final float[] clusterCoverages = new float[AnalysisFrame.MAX_CLUSTERS];
+    int clusterCount;
+
+    //probes drawn by the overlay
+    final float[] probeCenters = new float[2 * AnalysisFrame.MAX_PROBES];
+    final int[] probeColors = new int[AnalysisFrame.MAX_PROBES];
+    final boolean[] probeUniform = new boolean[AnalysisFrame.MAX_PROBES];
+    int probeCount;
+    float patchSize;
+
+    /**
+     * Copies the displayed values of a frame
+     *
+     * @param frame the frame whose values are copied
+     */
+    void copyFrom(@NotNull AnalysisFrame frame) {
+        timestamp = frame.timestamp;
+        renderPreview = frame.renderPreview;
+        segmentation = frame.segmentation;
+        r = PackedColor.getR(frame.meanColor);
+        g = PackedColor.getG(frame.meanColor);
+        b = PackedColor.getB(frame.meanColor);
+        h = frame.h;
+        s = frame.s;
+        v = frame.v;
+        dominantColors = frame.dominantColors;
+        nameCount = frame.nameCount;
+        System.arraycopy(frame.nameIds, 0, nameIds, 0, nameCount);
+        System.arraycopy(frame.namePercents, 0, namePercents, 0, nameCount);
+        clusterCount = frame.dominantColors ? frame.clusterCount : 0;
+        System.arraycopy(frame.clusterColors, 0, clusterColors, 0, clusterCount);
+        System.arraycopy(frame.clusterCoverages, 0, clusterCoverages, 0, clusterCount);
+        probeCount = frame.probeCount;
+        patchSize = frame.patchSize;
+        System.arraycopy(frame.probeCenters, 0, probeCenters, 0, 2 * probeCount);
+        System.arraycopy(frame.probeColors, 0, probeColors, 0, probeCount);
+        System.arraycopy(frame.probeUniform, 0, probeUniform, 0, probeCount);
+    }
+
+}
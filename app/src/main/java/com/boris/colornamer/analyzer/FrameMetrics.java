@@ -0,0 +1,294 @@
+package com.boris.colornamer.analyzer;
+
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.boris.colornamer.pipeline.LatencyHistogram;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * Latency of each step of the analysis of the camera images, and counts of the images
+ * dropped or skipped. Nothing is recorded while the metrics are disabled, and recording
+ * neither allocates nor locks so the metrics can stay enabled while measuring.
+ */
+public class FrameMetrics {
+
+    //steps of the analysis, indices of the histograms
+    public static final int MEAN_COLOR = 0;
+    public static final int CHANGE_DETECTION = 1;
+    public static final int CONVERT = 2;
+    public static final int RESIZE = 3;
+    public static final int CLASSIFY = 4;
+    public static final int MARKER = 5;
+    public static final int MAT_TO_BITMAP = 6;
+    public static final int UI_UPDATE = 7;
+    //from the capture of the image by the camera to the update of the views
+    public static final int CAMERA_TO_DISPLAY = 8;
+    public static final int DOMINANT_COLORS = 9;
+    public static final int SEGMENTATION = 10;
+    public static final int SEGMENTATION_RENDER = 11;
+    public static final int DALTONIZATION = 12;
+    private static final int STEP_COUNT = 13;
+
+    private static final String[] STEP_NAMES = new String[]{
+            "meanColor", "changeDetection", "convYUV2RGB", "resize", "classify",
+            "marker", "matToBitmap", "uiUpdate", "cameraToDisplay", "dominantColors",
+            "segmentation", "segmentationRender", "daltonization"
+    };
+
+    //a gap between camera timestamps this much longer than the frame interval means dropped images
+    private static final double DROP_GAP_RATIO = 1.5;
+    //camera timestamps further than this from the clocks are ignored
+    private static final long MAX_LATENCY_NS = 10_000_000_000L;
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STEP_COUNT];
+    private volatile boolean mEnabled;
+    private volatile long mStartTime;
+
+    //only written by the camera executor
+    private long mLastTimestamp;
+    private long mFrameInterval;
+    private volatile long mCameraCount;
+    private volatile long mCameraDroppedCount;
+    private volatile long mAnalyzedCount;
+    private volatile long mSkippedCount;
+    private volatile long mRateLimitedCount;
+    private volatile long mPipelineDroppedCount;
+
+    //allocations of the runtime when the metrics were enabled
+    private volatile long mStartAllocatedBytes;
+    private volatile long mStartGcCount;
+
+    /**
+     * Constructor, the metrics are disabled
+     */
+    public FrameMetrics() {
+        for (int i = 0; i < STEP_COUNT; i++) mHistograms[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Setter, enabling the metrics resets them
+     *
+     * @param enabled true to record the latencies and counts
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !mEnabled) reset();
+        mEnabled = enabled;
+    }
+
+    /**
+     * Getter
+     *
+     * @return true if the latencies and counts are recorded
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Empties the histograms and the counts
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) histogram.reset();
+        mCameraCount = 0;
+        mCameraDroppedCount = 0;
+        mAnalyzedCount = 0;
+        mSkippedCount = 0;
+        mRateLimitedCount = 0;
+        mPipelineDroppedCount = 0;
+        mLastTimestamp = 0;
+        mFrameInterval = 0;
+        mStartAllocatedBytes = readRuntimeStat("art.gc.bytes-allocated");
+        mStartGcCount = readRuntimeStat("art.gc.gc-count");
+        mStartTime = System.nanoTime();
+    }
+
+    /**
+     * Starts the measure of a step
+     *
+     * @return the current time, or 0 if the metrics are disabled
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a step
+     *
+     * @param step  the measured step
+     * @param start the time returned by {@link #start()} or by the previous call
+     * @return the current time so the next step can be measured from it, or 0 if the metrics are disabled
+     */
+    public long record(int step, long start) {
+        if (!mEnabled) return 0;
+        long now = System.nanoTime();
+        //the metrics were enabled during the step
+        if (start != 0) mHistograms[step].record(now - start);
+        return now;
+    }
+
+    /**
+     * Records the time elapsed since the capture of an image, must be called once the image is displayed
+     *
+     * @param timestamp the timestamp of the camera image in nanoseconds
+     */
+    public void recordCameraToDisplay(long timestamp) {
+        if (!mEnabled) return;
+        //the sensor timestamps use either the realtime clock or the monotonic clock
+        long latency = SystemClock.elapsedRealtimeNanos() - timestamp;
+        if (latency < 0 || latency > MAX_LATENCY_NS) latency = System.nanoTime() - timestamp;
+        if (latency >= 0 && latency <= MAX_LATENCY_NS) mHistograms[CAMERA_TO_DISPLAY].record(latency);
+    }
+
+    /**
+     * Counts an image received from the camera, must be called by the camera executor.
+     * The images the camera dropped while the previous one was analyzed are estimated
+     * from the gaps between the timestamps, using the shortest gap as the frame interval.
+     *
+     * @param timestamp the timestamp of the camera image in nanoseconds
+     */
+    public void onCameraImage(long timestamp) {
+        if (!mEnabled) return;
+        mCameraCount++;
+        long gap = timestamp - mLastTimestamp;
+        if (mLastTimestamp != 0 && gap > 0) {
+            if (mFrameInterval == 0 || gap < mFrameInterval) mFrameInterval = gap;
+            if (gap > DROP_GAP_RATIO * mFrameInterval) {
+                mCameraDroppedCount += Math.round((double) gap / mFrameInterval) - 1;
+            }
+        }
+        mLastTimestamp = timestamp;
+    }
+
+    /**
+     * Counts an image handed to the pipeline, must be called by the camera executor
+     */
+    public void onAnalyzed() {
+        if (mEnabled) mAnalyzedCount++;
+    }
+
+    /**
+     * Counts an image not analyzed because the scene did not change, must be called by the camera executor
+     */
+    public void onSkipped() {
+        if (mEnabled) mSkippedCount++;
+    }
+
+    /**
+     * Counts an image not analyzed because it came before the min interval of the quality level, must be called by the camera executor
+     */
+    public void onRateLimited() {
+        if (mEnabled) mRateLimitedCount++;
+    }
+
+    /**
+     * Counts an image dropped because all the frames of the pipeline were in flight, must be called by the camera executor
+     */
+    public void onPipelineDropped() {
+        if (mEnabled) mPipelineDroppedCount++;
+    }
+
+    /**
+     * Getter
+     *
+     * @param step the step of the analysis
+     * @return the histogram of the latencies of the step
+     */
+    public LatencyHistogram getHistogram(int step) {
+        return mHistograms[step];
+    }
+
+    /**
+     * Formats the metrics as a table, for the debug overlay and the logs
+     *
+     * @return the text snapshot of the metrics, latencies are in microseconds
+     */
+    @NotNull
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "%-16s%7s%7s%7s%7s%7s%n", "step (us)", "count", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < STEP_COUNT; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            builder.append(String.format(Locale.ROOT, "%-16s%7d%7d%7d%7d%7d%n", STEP_NAMES[i], histogram.getCount(),
+                    histogram.getPercentile(50), histogram.getPercentile(95), histogram.getPercentile(99), histogram.getMax()));
+        }
+        builder.append(String.format(Locale.ROOT, "camera %d, analyzed %d, skipped %d, rate limited %d%n", mCameraCount, mAnalyzedCount,
+                mSkippedCount, mRateLimitedCount));
+        builder.append(String.format(Locale.ROOT, "dropped by camera %d, by pipeline %d%n", mCameraDroppedCount, mPipelineDroppedCount));
+        builder.append(String.format(Locale.ROOT, "allocated %d KB, %d GC", getAllocatedBytes() / 1024, getGcCount()));
+        return builder.toString();
+    }
+
+    /**
+     * Formats the metrics as JSON, for the export
+     *
+     * @return the JSON snapshot of the metrics, latencies are in microseconds
+     */
+    @NotNull
+    public String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"durationMs\":").append(mStartTime == 0 ? 0 : (System.nanoTime() - mStartTime) / 1_000_000);
+        builder.append(",\"frames\":{\"camera\":").append(mCameraCount)
+                .append(",\"analyzed\":").append(mAnalyzedCount)
+                .append(",\"skipped\":").append(mSkippedCount)
+                .append(",\"rateLimited\":").append(mRateLimitedCount)
+                .append(",\"droppedByCamera\":").append(mCameraDroppedCount)
+                .append(",\"droppedByPipeline\":").append(mPipelineDroppedCount).append('}');
+        builder.append(",\"allocations\":{\"bytes\":").append(getAllocatedBytes())
+                .append(",\"gcCount\":").append(getGcCount()).append('}');
+        builder.append(",\"latenciesUs\":{");
+        for (int i = 0; i < STEP_COUNT; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            if (i > 0) builder.append(',');
+            builder.append('"').append(STEP_NAMES[i]).append("\":{\"count\":").append(histogram.getCount())
+                    .append(",\"mean\":").append(histogram.getMean())
+                    .append(",\"p50\":").append(histogram.getPercentile(50))
+                    .append(",\"p95\":").append(histogram.getPercentile(95))
+                    .append(",\"p99\":").append(histogram.getPercentile(99))
+                    .append(",\"max\":").append(histogram.getMax()).append('}');
+        }
+        builder.append("}}");
+        return builder.toString();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of bytes allocated by the whole app since the metrics were enabled, -1 if unknown
+     */
+    private long getAllocatedBytes() {
+        long start = mStartAllocatedBytes;
+        long now = readRuntimeStat("art.gc.bytes-allocated");
+        return start < 0 || now < 0 ? -1 : now - start;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of garbage collections since the metrics were enabled, -1 if unknown
+     */
+    private long getGcCount() {
+        long start = mStartGcCount;
+        long now = readRuntimeStat("art.gc.gc-count");
+        return start < 0 || now < 0 ? -1 : now - start;
+    }
+
+    /**
+     * Reads a statistic of the Android runtime
+     *
+     * @param name the name of the statistic
+     * @return the value of the statistic, -1 if it is not available
+     */
+    private static long readRuntimeStat(@NotNull String name) {
+        try {
+            String value = Debug.getRuntimeStat(name);
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -2,207 +2,943 @@ package com.boris.colornamer.analyzer;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 
-import com.boris.colornamer.R;
+import com.boris.colornamer.imageutils.CaptureWriter;
+import com.boris.colornamer.imageutils.ColorSegmenter;
+import com.boris.colornamer.imageutils.Daltonizer;
+import com.boris.colornamer.imageutils.ImageRotation;
 import com.boris.colornamer.imageutils.ImageConverter;
-import com.boris.colornamer.model.CompleteColor;
+import com.boris.colornamer.imageutils.IntegralImage;
+import com.boris.colornamer.imageutils.YuvConverter;
+import com.boris.colornamer.imageutils.YuvPixels;
+import com.boris.colornamer.imageutils.YuvSampler;
+import com.boris.colornamer.model.ColorClusterer;
+import com.boris.colornamer.model.ColorNameTable;
+import com.boris.colornamer.model.ColorNamer;
+import com.boris.colornamer.model.HsvConverter;
+import com.boris.colornamer.model.PackedColor;
+import com.boris.colornamer.model.SampleLog;
+import com.boris.colornamer.pipeline.FramePipeline;
+import com.boris.colornamer.pipeline.TripleBuffer;
+import com.boris.colornamer.view.ColorReadout;
+import com.boris.colornamer.view.MarkerOverlayView;
 
 import org.jetbrains.annotations.NotNull;
-import org.opencv.core.CvType;
+import org.jetbrains.annotations.Nullable;
+import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class ImageAnalyzer implements ImageAnalysis.Analyzer {
 
     private final ImageView mPreviewView;
-    private final TextView mTextViewColor;
-    private final TextView mTextViewRGB;
-    private final TextView mTextViewHSV;
-    private Context mContext;
-    private Bitmap bmp;
-    private Mat rgb;
-    private final Size SQUARE_SIZE = new Size(500, 500);
-
-    private final CompleteColor meanCompleteColor;
+    private final MarkerOverlayView mOverlayView;
+    //only used by the UI thread
+    private final ColorReadout mReadout;
+    private Bitmap mDisplayedBitmap;
+    //name id of the color sampled on a photo, only used by the UI thread
+    private final byte[] mStillNameIds = new byte[1];
+
+    //values of the last published frame, displayed by the UI thread at the next vsync
+    private final TripleBuffer<DisplayState> mDisplayStates = new TripleBuffer<>(new DisplayState(), new DisplayState(), new DisplayState());
+    private final AtomicBoolean mDisplayScheduled = new AtomicBoolean();
+    private final Runnable mDisplay = this::display;
+    //size of the sampled square on a 500x500 image
+    private static final int THICKNESS = 7;
+    private static final int REFERENCE_SIZE = 500;
+    //the thinnest marker showing its black and white contours and its color
+    private static final int MIN_THICKNESS = 5;
+
+    //one frame being converted and one frame in each stage
+    private static final int FRAME_COUNT = 4;
+
+    private final List<AnalysisFrame> mFrames = new ArrayList<>();
+    private final FramePipeline<AnalysisFrame> mPipeline;
+    //bitmaps written by the render stage and displayed by the UI thread
+    private volatile TripleBuffer<Bitmap> mBitmaps;
+    //only used by the camera executor
+    private final YuvConverter mConverter = new YuvConverter();
+    //true to draw the camera image in the ImageView, false when it is displayed by a camera preview
+    private volatile boolean mRenderPreview;
+
+    //images of a still scene are not analyzed again
+    private static final int CHANGE_GRID_SIZE = 16;
+    private static final int DEFAULT_CHANGE_THRESHOLD = 3;
+    private final ChangeDetector mChangeDetector = new ChangeDetector(CHANGE_GRID_SIZE, DEFAULT_CHANGE_THRESHOLD);
+    //set when the displayed result must be computed again even if the image did not change
+    private volatile boolean mForceAnalysis;
+
+    //latencies of the steps of the analysis, disabled by default
+    private final FrameMetrics mMetrics = new FrameMetrics();
+
+    //resolution, preview size and rate adapted to the speed of the device
+    private final QualityController mQuality = new QualityController(QualityController.DEFAULT_BUDGET_NS);
+    //only used by the camera executor
+    private Size mSquareSize = new Size(500, 500);
+    private long mLastAnalyzedTimestamp;
+
+    //the dominant colors mode clusters a larger region instead of averaging the center
+    public static final float DEFAULT_REGION_SIZE = 0.2f;
+    private static final int DOMINANT_COLOR_COUNT = 3;
+    private static final int KMEANS_ITERATIONS = 5;
+    //colors covering less of the region are not named
+    private static final float MIN_COVERAGE = 0.05f;
+    private volatile boolean mDominantColors;
+    private volatile float mRegionSize = DEFAULT_REGION_SIZE;
+    //only used by the sample stage
+    private final ColorClusterer mClusterer = new ColorClusterer(AnalysisFrame.MAX_SAMPLES, AnalysisFrame.MAX_CLUSTERS);
+
+    //the color map mode names every pixel of the image, using all the cores
+    private volatile boolean mSegmentation;
+    //only used by the camera executor, created when the mode is first used
+    private ForkJoinPool mSegmentationPool;
+    private ColorSegmenter mSegmenter;
+    //only used by the render stage
+    private int[] mMapPixels;
+    //color maps written by the render stage and displayed by the UI thread
+    private volatile TripleBuffer<Bitmap> mMapBitmaps;
+
+    //the rendered preview can be daltonized for a color vision deficiency, using all the cores
+    private volatile int[] mFilterLut;
+    //only used by the render stage, created when the filter is first used
+    private ForkJoinPool mFilterPool;
+    private Daltonizer mDaltonizer;
+    private byte[] mSquarePixels;
+    private int[] mFilteredPixels;
+
+    //side of the sampled patches relatively to the size of the image, a 7x7 square on a 500x500 image
+    public static final float DEFAULT_PATCH_SIZE = (float) THICKNESS / REFERENCE_SIZE;
+    //max number of pixels summed by the integral image of the probes, larger areas are subsampled
+    private static final int MAX_INTEGRAL_PIXELS = 1 << 16;
+    //a patch whose colors vary more than a standard deviation of 16 on each channel is not uniform
+    private static final float MAX_UNIFORM_VARIANCE = 3 * 16 * 16;
+    //centers of the probes relatively to the size of the image as x, y pairs, the first one is the main probe
+    private volatile float[] mProbes = new float[]{0.5f, 0.5f};
+    private volatile float mPatchSize = DEFAULT_PATCH_SIZE;
+    //only used by the camera executor
+    private final IntegralImage mIntegral = new IntegralImage(MAX_INTEGRAL_PIXELS);
+    private final int[] mPatchRects = new int[4 * AnalysisFrame.MAX_PROBES];
+
+    //the camera images are appended to the capture file while it is set
+    private volatile CaptureWriter mRecorder;
+    //only used by the camera executor, the camera image being analyzed, null for a replayed image
+    private ImageProxy mImage;
+
+    //steps of the cold start, forgotten once the first color is displayed
+    private volatile StartupTrace mStartupTrace;
+
+    //engine replacing the hue thresholds for the colors named by the analyzer, null to use them
+    private volatile ColorNamer mNamer;
+
+    //the confirmed readings are appended to the history while it is set
+    private volatile SampleLog mSampleLog;
+    private final ReadingConfirmer mConfirmer = new ReadingConfirmer(ReadingConfirmer.DEFAULT_CONFIRMATION_NS);
 
     /**
-     * Constructor
+     * Constructor, the analysis is done by the camera executor for the conversion
+     * then by the threads of a pipeline for the sampling, the rendering and the publishing
      *
      * @param imageView     the ImageView to draw the camera image on
+     * @param overlayView   the view drawn over the camera preview when the image is not rendered
      * @param textViewColor the TextView to display the color name
      * @param textViewRGB   the TextView to display the RGB values
      * @param textViewHSV   the TextView to display the HSV values
      * @param context       the context to get the string values of the rgb and hsv format depending on the used locale
      */
-    public ImageAnalyzer(@NotNull ImageView imageView, @NotNull TextView textViewColor, @NotNull TextView textViewRGB, @NotNull TextView textViewHSV, @NotNull Context context) {
+    public ImageAnalyzer(@NotNull ImageView imageView, @NotNull MarkerOverlayView overlayView, @NotNull TextView textViewColor, @NotNull TextView textViewRGB, @NotNull TextView textViewHSV, @NotNull Context context) {
         this.mPreviewView = imageView;
-        this.mTextViewColor = textViewColor;
-        this.mTextViewRGB = textViewRGB;
-        this.mTextViewHSV = textViewHSV;
-        this.mContext = context;
-        this.meanCompleteColor = new CompleteColor(context);
+        this.mOverlayView = overlayView;
+        this.mReadout = new ColorReadout(textViewColor, textViewRGB, textViewHSV, context);
+
+        for (int i = 0; i < FRAME_COUNT; i++) mFrames.add(new AnalysisFrame());
+        List<FramePipeline.Stage<AnalysisFrame>> stages = new ArrayList<>();
+        stages.add(this::sample);
+        stages.add(this::render);
+        stages.add(this::publish);
+        this.mPipeline = new FramePipeline<>("ImageAnalyzer", mFrames, stages);
+        this.mPipeline.start();
     }
 
     /**
-     * Setter
+     * Setter, must be called from the UI thread
      *
      * @param context the context to get the string values of the rgb and hsv format depending on the used locale
      */
-    public void setContext(Context context) {
-        this.mContext = context;
-        //update the context of the mean color for its name
-        this.meanCompleteColor.setContext(context);
+    public void setContext(@NotNull Context context) {
+        mReadout.setContext(context);
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter, the filter is only applied to the image rendered in the ImageView
+     *
+     * @param filterLut the lookup table of {@link Daltonizer} applied to the rendered image, or null to render the colors of the camera
+     */
+    public void setColorFilter(@Nullable int[] filterLut) {
+        this.mFilterLut = filterLut;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter
+     *
+     * @param renderPreview true to render the camera image with its center marker in the ImageView,
+     *                      false to only compute the mean color and display it with the overlay view
+     */
+    public void setRenderPreview(boolean renderPreview) {
+        this.mRenderPreview = renderPreview;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter
+     *
+     * @param dominantColors true to find the dominant colors of a region around the center,
+     *                       false to only compute the mean color of the center
+     */
+    public void setDominantColors(boolean dominantColors) {
+        this.mDominantColors = dominantColors;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter
+     *
+     * @param regionSize the side of the region of the dominant colors mode relatively to the smallest side of the image
+     */
+    public void setRegionSize(float regionSize) {
+        this.mRegionSize = Math.max(0, Math.min(1, regionSize));
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter
+     *
+     * @param segmentation true to show the color name of every pixel with a translucent color map
+     */
+    public void setSegmentation(boolean segmentation) {
+        this.mSegmentation = segmentation;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter, the probes are sampled at each image whatever their number and the size of their patch
+     *
+     * @param centers the centers of the probes relatively to the size of the image as x, y pairs, the first
+     *                one is the main probe whose color is named, at most {@link AnalysisFrame#MAX_PROBES} probes
+     */
+    public void setProbes(@NotNull float[] centers) {
+        if (centers.length < 2 || centers.length % 2 != 0 || centers.length > 2 * AnalysisFrame.MAX_PROBES) {
+            throw new IllegalArgumentException("invalid number of probe coordinates " + centers.length);
+        }
+        float[] probes = new float[centers.length];
+        for (int i = 0; i < centers.length; i++) probes[i] = Math.max(0, Math.min(1, centers[i]));
+        this.mProbes = probes;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Setter
+     *
+     * @param patchSize the side of the patch averaged by each probe relatively to the size of the image
+     */
+    public void setPatchSize(float patchSize) {
+        this.mPatchSize = Math.max(0, Math.min(1, patchSize));
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Creates a grid of probes covering the image, the probe nearest to the center is the main one
+     *
+     * @param columns the number of columns of the grid
+     * @param rows    the number of rows of the grid
+     * @return the centers of the probes to give to {@link #setProbes(float[])}
+     */
+    @NotNull
+    public static float[] createProbeGrid(int columns, int rows) {
+        float[] centers = new float[2 * columns * rows];
+        int main = 0;
+        float mainDistance = Float.MAX_VALUE;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int idx = i * columns + j;
+                centers[2 * idx] = (j + 0.5f) / columns;
+                centers[2 * idx + 1] = (i + 0.5f) / rows;
+                float distance = Math.abs(centers[2 * idx] - 0.5f) + Math.abs(centers[2 * idx + 1] - 0.5f);
+                if (distance < mainDistance) {
+                    mainDistance = distance;
+                    main = idx;
+                }
+            }
+        }
+        //swap the main probe with the first one
+        float x = centers[2 * main];
+        float y = centers[2 * main + 1];
+        centers[2 * main] = centers[0];
+        centers[2 * main + 1] = centers[1];
+        centers[0] = x;
+        centers[1] = y;
+        return centers;
+    }
+
+    /**
+     * Setter, the engine is used for all the colors named by the analyzer
+     *
+     * @param namer the engine naming the colors, such as a {@link com.boris.colornamer.model.PaletteClassifier},
+     *              or null to use the hue, saturation and value thresholds
+     */
+    public void setNamer(@Nullable ColorNamer namer) {
+        this.mNamer = namer;
+        this.mForceAnalysis = true;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the engine naming the colors, the lookup table of the hue thresholds once it is loaded
+     * if no other engine is set, or null while the thresholds must be applied to each color
+     */
+    @Nullable
+    private ColorNamer getNamer() {
+        ColorNamer namer = mNamer;
+        return namer != null ? namer : ColorNameTable.getInstance();
+    }
+
+    /**
+     * Setter, the recorder must be closed from the camera executor once it is removed so that
+     * it is not closed while an image is appended
+     *
+     * @param recorder the capture file receiving every camera image, or null to stop recording
+     */
+    public void setRecorder(@Nullable CaptureWriter recorder) {
+        this.mRecorder = recorder;
+    }
+
+    /**
+     * Setter
+     *
+     * @param trace the trace receiving the times of the first analyzed image and of the first displayed color
+     */
+    public void setStartupTrace(@Nullable StartupTrace trace) {
+        this.mStartupTrace = trace;
+    }
+
+    /**
+     * Setter, the log is appended by the publishing stage and by the camera executor,
+     * so it must only be closed once the analyzer is released
+     *
+     * @param sampleLog the history receiving the confirmed readings, or null to stop logging them
+     */
+    public void setSampleLog(@Nullable SampleLog sampleLog) {
+        this.mSampleLog = sampleLog;
+    }
+
+    /**
+     * Setter
+     *
+     * @param threshold the max difference, between 0 and 255, for an image to be considered unchanged
+     *                  and not analyzed again, a negative threshold makes every image analyzed
+     */
+    public void setChangeThreshold(int threshold) {
+        mChangeDetector.setThreshold(threshold);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of camera images that were analyzed
+     */
+    public long getProcessedFrameCount() {
+        return mChangeDetector.getProcessedCount();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of camera images skipped because the scene did not change
+     */
+    public long getSkippedFrameCount() {
+        return mChangeDetector.getSkippedCount();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the latencies and counts of the analysis, that can be enabled at any time
+     */
+    public FrameMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the controller of the quality of the analysis, whose listener must bind the camera
+     * again with the new resolution
+     */
+    public QualityController getQualityController() {
+        return mQuality;
+    }
+
+    /**
+     * Stops the pipeline and frees the memory of the frames,
+     * must be called from the camera executor once the analysis is over
+     */
+    public void release() {
+        mPipeline.stop();
+        mConverter.release();
+        if (mSegmentationPool != null) mSegmentationPool.shutdown();
+        if (mFilterPool != null) mFilterPool.shutdown();
+        for (AnalysisFrame frame : mFrames) frame.release();
     }
 
     /**
-     * Processes the given image from camera
+     * Processes the given image from camera, it is recorded when a capture is running then converted and handed to the pipeline
      *
      * @param image The image to analyze
      */
     @Override
     public void analyze(@NotNull ImageProxy image) {
-        //avoid creation of Mat every frame
-        if (rgb == null) rgb = new Mat(image.getWidth(), image.getHeight(), CvType.CV_8UC3);
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        long timestamp = image.getImageInfo().getTimestamp();
+        int rotationDegrees = image.getImageInfo().getRotationDegrees();
+        CaptureWriter recorder = mRecorder;
+        if (recorder != null) {
+            recorder.append(timestamp, image.getWidth(), image.getHeight(), rotationDegrees,
+                    planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride());
+        }
+        mImage = image;
+        //the crop rect of the view port shared with the camera preview is the displayed area
+        Rect crop = image.getCropRect();
+        analyze(planes, image.getWidth(), image.getHeight(), crop.left, crop.top, crop.width(), crop.height(), rotationDegrees, timestamp);
+    }
+
+    /**
+     * Processes the given YUV_420_888 image, such as a replayed image, exactly as an image from camera,
+     * must be called from the camera executor. The image is read in the orientation of the buffer,
+     * the probes are mapped to it and only the small square image and color map are rotated.
+     *
+     * @param planes          the Y, U and V planes of the image, only read during the call
+     * @param width           the width of the buffer
+     * @param height          the height of the buffer
+     * @param rotationDegrees the clockwise rotation making the buffer upright, 0, 90, 180 or 270
+     * @param timestamp       the timestamp of the image in nanoseconds
+     */
+    public void analyze(@NotNull ImageProxy.PlaneProxy[] planes, int width, int height, int rotationDegrees, long timestamp) {
+        analyze(planes, width, height, 0, 0, width, height, rotationDegrees, timestamp);
+    }
 
-        //convert image Yuv to Mat RGB
-        ImageConverter.convYUV2RGB(image, rgb);
+    /**
+     * Processes the area of the given YUV_420_888 image inside its crop rect, which is the area displayed
+     * by the previews: the probes, the region and the color map are relative to the crop rect, and only
+     * the crop rect is rendered. Must be called from the camera executor.
+     *
+     * @param planes          the Y, U and V planes of the image, only read during the call
+     * @param width           the width of the buffer
+     * @param height          the height of the buffer
+     * @param cropLeft        the first column of the crop rect in the buffer
+     * @param cropTop         the first row of the crop rect in the buffer
+     * @param cropWidth       the width of the crop rect in the buffer
+     * @param cropHeight      the height of the crop rect in the buffer
+     * @param rotationDegrees the clockwise rotation making the buffer upright, 0, 90, 180 or 270
+     * @param timestamp       the timestamp of the image in nanoseconds
+     */
+    public void analyze(@NotNull ImageProxy.PlaneProxy[] planes, int width, int height, int cropLeft, int cropTop,
+                        int cropWidth, int cropHeight, int rotationDegrees, long timestamp) {
+        mMetrics.onCameraImage(timestamp);
+        StartupTrace trace = mStartupTrace;
+        if (trace != null) trace.mark(StartupTrace.FIRST_IMAGE);
+
+        //slow devices analyze less images, a replay going back in time restarts the pacing
+        QualityController.Level level = mQuality.getLevel();
+        long gap = timestamp - mLastAnalyzedTimestamp;
+        if (gap >= 0 && gap < level.minFrameIntervalMs * 1_000_000L) {
+            closeImage();
+            mMetrics.onRateLimited();
+            return;
+        }
+        mLastAnalyzedTimestamp = timestamp;
 
-        //resize to a square image
-        Imgproc.resize(rgb, rgb, SQUARE_SIZE);
+        long start = System.nanoTime();
+        long time = mMetrics.start();
 
-        //update mean color member
-        computeMeanColorOfImage();
+        //mean colors of the probes computed directly from the YUV planes
+        float[] probes = mProbes;
+        float patchSize = mPatchSize;
+        int meanColor = measureProbes(planes, cropLeft, cropTop, cropWidth, cropHeight, rotationDegrees, probes, patchSize);
+        time = mMetrics.record(FrameMetrics.MEAN_COLOR, time);
 
-        //draw square using mean color with black and white contours
-        drawMiddleSquareOnImage();
+        if (mForceAnalysis) {
+            mForceAnalysis = false;
+            mChangeDetector.reset();
+        }
+        boolean changed = mChangeDetector.hasChanged(planes[0], cropLeft, cropTop, cropWidth, cropHeight, meanColor);
+        time = mMetrics.record(FrameMetrics.CHANGE_DETECTION, time);
+        if (!changed) {
+            //the displayed result is still valid, and so is the reading waiting for its confirmation
+            closeImage();
+            mMetrics.onSkipped();
+            mConfirmer.onUnchanged(mSampleLog, timestamp);
+            return;
+        }
 
-        //display rgb and hsv values
-        displayColorValues();
+        AnalysisFrame frame = mPipeline.acquire();
+        if (frame == null) {
+            //all frames are still processed, drop this image
+            closeImage();
+            //the next image must be analyzed even if it is similar to this one
+            mChangeDetector.reset();
+            mMetrics.onPipelineDropped();
+            mQuality.onFrameDropped();
+            return;
+        }
+
+        frame.timestamp = timestamp;
+        frame.rotationDegrees = rotationDegrees;
+
+        frame.meanColor = meanColor;
+        copyProbes(probes, patchSize, frame);
+
+        //pixels of the region read before the camera reuses the image
+        frame.dominantColors = mDominantColors;
+        if (frame.dominantColors) sampleRegion(planes, cropLeft, cropTop, cropWidth, cropHeight, frame);
+        frame.segmentation = mSegmentation;
+        if (frame.segmentation) segmentImage(planes, cropLeft, cropTop, cropWidth, cropHeight, frame, level.squareSize);
+
+        frame.renderPreview = mRenderPreview;
+        frame.filterLut = mFilterLut;
+        if (frame.renderPreview) {
+            //convert image Yuv to Mat RGB for the preview
+            frame.createMats();
+            mConverter.convert(planes, width, height, frame.rgb);
+            time = mMetrics.record(FrameMetrics.CONVERT, time);
+
+            //the camera can reuse the image
+            closeImage();
+
+            //resize the crop rect to a square image
+            if ((int) mSquareSize.width != level.squareSize) mSquareSize = new Size(level.squareSize, level.squareSize);
+            Mat crop = frame.getCrop(cropLeft, cropTop, cropWidth, cropHeight);
+            if (rotationDegrees == 0) {
+                Imgproc.resize(crop, frame.square, mSquareSize);
+            } else {
+                //the square image is rotated instead of the whole camera buffer
+                Imgproc.resize(crop, frame.resized, mSquareSize);
+                Core.rotate(frame.resized, frame.square, rotationDegrees == 90 ? Core.ROTATE_90_CLOCKWISE
+                        : rotationDegrees == 180 ? Core.ROTATE_180 : Core.ROTATE_90_COUNTERCLOCKWISE);
+            }
+            mMetrics.record(FrameMetrics.RESIZE, time);
+        } else {
+            //the camera preview displays the image
+            closeImage();
+        }
+
+        mMetrics.onAnalyzed();
+        frame.processingTime = System.nanoTime() - start;
+        mPipeline.submit(frame);
+    }
+
+    /**
+     * Gives the image being analyzed back to the camera, nothing is done for a replayed image
+     */
+    private void closeImage() {
+        if (mImage != null) mImage.close();
+        mImage = null;
+    }
+
+    /**
+     * First stage of the pipeline, classifies the mean color and computes its texts
+     *
+     * @param frame the frame to process
+     */
+    private void sample(@NotNull AnalysisFrame frame) {
+        long start = System.nanoTime();
+        long time = mMetrics.start();
+        if (frame.dominantColors) {
+            findDominantColors(frame);
+            time = mMetrics.record(FrameMetrics.DOMINANT_COLORS, time);
+        }
+        //hsv values and color names of the mean color
+        computeColorValues(frame);
+        mMetrics.record(FrameMetrics.CLASSIFY, time);
+        frame.processingTime = Math.max(frame.processingTime, System.nanoTime() - start);
+    }
 
-        //display the color name of the mean color
-        displayColorName();
+    /**
+     * Second stage of the pipeline, draws the preview image if it is rendered
+     *
+     * @param frame the frame to process
+     */
+    private void render(@NotNull AnalysisFrame frame) {
+        long start = System.nanoTime();
+        if (frame.segmentation) renderColorMap(frame);
+        if (frame.renderPreview) renderPreview(frame);
+        frame.processingTime = Math.max(frame.processingTime, System.nanoTime() - start);
+    }
 
-        //avoid creation of Bitmap every frame
-        if (bmp == null) bmp = Bitmap.createBitmap(rgb.cols(), rgb.rows(), Bitmap.Config.ARGB_8888);
+    /**
+     * Draws the preview image with its marker and hands it to the UI thread
+     *
+     * @param frame the frame to render
+     */
+    private void renderPreview(@NotNull AnalysisFrame frame) {
+        long time = mMetrics.start();
 
-        //display output image using bmp
-        ImageConverter.MatToBitmap(rgb, bmp);
-        mPreviewView.post(() -> mPreviewView.setImageBitmap(bmp));
+        //draw square using mean color with black and white contours
+        drawMiddleSquareOnImage(frame);
+        time = mMetrics.record(FrameMetrics.MARKER, time);
+
+        //avoid creation of Bitmap every frame, they are only created again when the preview size changes
+        int w = frame.square.cols();
+        int h = frame.square.rows();
+        if (mBitmaps == null || mBitmaps.getBack().getWidth() != w || mBitmaps.getBack().getHeight() != h) {
+            mBitmaps = new TripleBuffer<>(Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888));
+        }
 
-        //free memory
-        image.close();
-        rgb.release();
+        //write in the bitmap not displayed then hand it to the view
+        if (frame.filterLut != null) {
+            daltonize(frame, mBitmaps.getBack());
+        } else {
+            ImageConverter.MatToBitmap(frame.square, mBitmaps.getBack());
+            mMetrics.record(FrameMetrics.MAT_TO_BITMAP, time);
+        }
+        mBitmaps.publish();
     }
 
     /**
-     * Computes the mean color of the center of the image
+     * Writes the square image daltonized through the lookup table of the frame in a bitmap,
+     * each pixel is a single lookup so the filter keeps the rate of the camera
+     *
+     * @param frame  the frame whose square image is daltonized
+     * @param bitmap the bitmap receiving the filtered image, as large as the square image
      */
-    private void computeMeanColorOfImage() {
-        int midX = rgb.rows() / 2;
-        int midY = rgb.cols() / 2;
+    private void daltonize(@NotNull AnalysisFrame frame, @NotNull Bitmap bitmap) {
+        long time = mMetrics.start();
+        int w = frame.square.cols();
+        int h = frame.square.rows();
+        if (mFilterPool == null) mFilterPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        if (mDaltonizer == null || mDaltonizer.getMaxHeight() < h) mDaltonizer = new Daltonizer(mFilterPool, h);
+        if (mSquarePixels == null || mSquarePixels.length != 3 * w * h) {
+            mSquarePixels = new byte[3 * w * h];
+            mFilteredPixels = new int[w * h];
+        }
+        frame.square.get(0, 0, mSquarePixels);
+        mDaltonizer.apply(mSquarePixels, w, h, frame.filterLut, mFilteredPixels);
+        bitmap.setPixels(mFilteredPixels, 0, w, 0, 0, w, h);
+        mMetrics.record(FrameMetrics.DALTONIZATION, time);
+    }
 
-        int thickness = 7;
+    /**
+     * Draws the color map and hands it to the UI thread
+     *
+     * @param frame the frame whose color map is rendered
+     */
+    private void renderColorMap(@NotNull AnalysisFrame frame) {
+        long time = mMetrics.start();
+        int size = frame.mapSize;
+        if (mMapPixels == null || mMapPixels.length != size * size) mMapPixels = new int[size * size];
+        ColorSegmenter.render(frame.labels, size, frame.rotationDegrees, mMapPixels);
+
+        if (mMapBitmaps == null || mMapBitmaps.getBack().getWidth() != size) {
+            mMapBitmaps = new TripleBuffer<>(Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888));
+        }
+        mMapBitmaps.getBack().setPixels(mMapPixels, 0, size, 0, 0, size, size);
+        mMapBitmaps.publish();
+        mMetrics.record(FrameMetrics.SEGMENTATION_RENDER, time);
+    }
 
-        //read data of mat
-        byte[] data = new byte[3 * rgb.rows() * rgb.cols()];
-        rgb.get(0, 0, data);
+    /**
+     * Last stage of the pipeline, displays the frame on the UI thread
+     *
+     * @param frame the frame to process
+     */
+    private void publish(@NotNull AnalysisFrame frame) {
+        //the slowest thread of the frame limits the rate of the analysis
+        mQuality.onFrameProcessed(frame.processingTime);
+        logSample(frame);
+
+        //the frame is reused once this stage returns, its values are copied for the UI thread
+        mDisplayStates.getBack().copyFrom(frame);
+        mDisplayStates.publish();
+        //frames published before the next vsync are coalesced, only the last one is displayed
+        if (mDisplayScheduled.compareAndSet(false, true)) mPreviewView.postOnAnimation(mDisplay);
+    }
 
-        //read data to get the mean color in the area
-        meanCompleteColor.setBlack();
-        int sum = 0;
-        for (int i = midX - (thickness - 1) / 2; i < midX - (thickness - 1) / 2 + thickness; i++) {
-            for (int j = midY - (thickness - 1) / 2; j < midY - (thickness - 1) / 2 + thickness; j++) {
-                int idx = 3 * (i * rgb.cols() + j);
-                meanCompleteColor.setR(meanCompleteColor.getR() + (data[idx] & 0xff));
-                meanCompleteColor.setG(meanCompleteColor.getG() + (data[1 + idx] & 0xff));
-                meanCompleteColor.setB(meanCompleteColor.getB() + (data[2 + idx] & 0xff));
-                sum++;
+    /**
+     * Hands the reading of the main probe to the confirmer of the history
+     *
+     * @param frame the published frame
+     */
+    private void logSample(@NotNull AnalysisFrame frame) {
+        //the dominant colors are not the reading of the main probe
+        if (frame.dominantColors) {
+            mConfirmer.reset();
+            return;
+        }
+        mConfirmer.onPublished(mSampleLog, frame.timestamp, frame.meanColor, frame.h, frame.s, frame.v,
+                frame.nameIds[0], frame.variance);
+    }
+
+    /**
+     * Displays the last published frame, runs on the UI thread at most once per vsync.
+     * Only the views whose values changed are updated.
+     */
+    private void display() {
+        mDisplayScheduled.set(false);
+        long time = mMetrics.start();
+        DisplayState state = mDisplayStates.acquireFront();
+        if (state.renderPreview) {
+            //last rendered bitmap, kept untouched by the render stage until the next one
+            Bitmap bitmap = mBitmaps.acquireFront();
+            if (bitmap != mDisplayedBitmap) {
+                mPreviewView.setImageBitmap(bitmap);
+                mDisplayedBitmap = bitmap;
             }
+        } else {
+            mOverlayView.setColor(state.r << 16 | state.g << 8 | state.b);
+            mDisplayedBitmap = null;
+        }
+        mOverlayView.setProbes(state.probeCenters, state.probeColors, state.probeUniform, state.probeCount, state.patchSize);
+        mOverlayView.setDominantColors(state.clusterColors, state.clusterCoverages, state.clusterCount);
+        mOverlayView.setColorMap(state.segmentation ? mMapBitmaps.acquireFront() : null);
+        mReadout.show(state.r, state.g, state.b, state.h, state.s, state.v,
+                state.nameIds, state.dominantColors ? state.namePercents : null, state.nameCount);
+        mMetrics.record(FrameMetrics.UI_UPDATE, time);
+        mMetrics.recordCameraToDisplay(state.timestamp);
+        StartupTrace trace = mStartupTrace;
+        if (trace != null) {
+            mStartupTrace = null;
+            trace.mark(StartupTrace.FIRST_COLOR);
         }
+    }
 
-        meanCompleteColor.setR(meanCompleteColor.getR() / sum);
-        meanCompleteColor.setG(meanCompleteColor.getG() / sum);
-        meanCompleteColor.setB(meanCompleteColor.getB() / sum);
+    /**
+     * Displays a color sampled outside of the camera images, such as a point of a photo, must be called from the UI thread
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     */
+    public void showColor(int rgb) {
+        int hsv = PackedColor.toHsv(rgb);
+        mStillNameIds[0] = PackedColor.classify(getNamer(), rgb);
+        mReadout.show(PackedColor.getR(rgb), PackedColor.getG(rgb), PackedColor.getB(rgb), HsvConverter.getH(hsv),
+                (int) (HsvConverter.getS(hsv) * 100), (int) (HsvConverter.getV(hsv) * 100), mStillNameIds, null, 1);
     }
 
     /**
-     * Draws a square at the center of the image with its exterior contours in black and interior contours in white
+     * Computes the mean color of the patch of each probe, the integral image of the bounding box of
+     * the patches is built once so that each patch is then averaged in constant time
+     *
+     * @param planes          the Y, U and V planes of the image
+     * @param cropLeft        the first column of the crop rect in the buffer
+     * @param cropTop         the first row of the crop rect in the buffer
+     * @param w               the width of the crop rect in the buffer
+     * @param h               the height of the crop rect in the buffer
+     * @param rotationDegrees the clockwise rotation making the buffer upright
+     * @param probes          the centers of the probes relatively to the size of the upright crop rect
+     * @param patchSize       the side of the patches relatively to the size of the image
+     * @return the mean color of the main probe packed as 0xRRGGBB
      */
-    private void drawMiddleSquareOnImage() {
-        int midX = rgb.rows() / 2;
-        int midY = rgb.cols() / 2;
+    private int measureProbes(@NotNull ImageProxy.PlaneProxy[] planes, int cropLeft, int cropTop, int w, int h, int rotationDegrees,
+                              @NotNull float[] probes, float patchSize) {
+        int width = Math.max(1, (int) (patchSize * w));
+        int height = Math.max(1, (int) (patchSize * h));
+        int probeCount = probes.length / 2;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = 0;
+        int maxY = 0;
+        for (int p = 0; p < probeCount; p++) {
+            //patches are moved inside the crop rect near its borders, a patch keeps its size relatively to the rotated sides
+            float x = ImageRotation.toBufferX(probes[2 * p], probes[2 * p + 1], rotationDegrees);
+            float y = ImageRotation.toBufferY(probes[2 * p], probes[2 * p + 1], rotationDegrees);
+            int left = cropLeft + Math.max(0, Math.min(w - width, (int) (x * w) - width / 2));
+            int top = cropTop + Math.max(0, Math.min(h - height, (int) (y * h) - height / 2));
+            mPatchRects[4 * p] = left;
+            mPatchRects[4 * p + 1] = top;
+            minX = Math.min(minX, left);
+            minY = Math.min(minY, top);
+            maxX = Math.max(maxX, left + width);
+            maxY = Math.max(maxY, top + height);
+        }
+        mPatchRects[2] = width;
+        mPatchRects[3] = height;
 
-        int thickness = 7;
+        mIntegral.build(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                minX, minY, maxX - minX, maxY - minY);
+        return mIntegral.meanRgb(mPatchRects[0], mPatchRects[1], width, height);
+    }
 
-        //read data of mat
-        byte[] data = new byte[3 * rgb.rows() * rgb.cols()];
-        rgb.get(0, 0, data);
+    /**
+     * Stores the mean color of each probe and whether its patch is uniform in the frame,
+     * must be called after {@link #measureProbes(ImageProxy.PlaneProxy[], int, int, int, int, int, float[], float)}
+     *
+     * @param probes    the centers of the probes relatively to the size of the image
+     * @param patchSize the side of the patches relatively to the size of the image
+     * @param frame     the frame receiving the probes
+     */
+    private void copyProbes(@NotNull float[] probes, float patchSize, @NotNull AnalysisFrame frame) {
+        int width = mPatchRects[2];
+        int height = mPatchRects[3];
+        frame.probeCount = probes.length / 2;
+        frame.patchSize = patchSize;
+        System.arraycopy(probes, 0, frame.probeCenters, 0, probes.length);
+        for (int p = 0; p < frame.probeCount; p++) {
+            int left = mPatchRects[4 * p];
+            int top = mPatchRects[4 * p + 1];
+            frame.probeColors[p] = mIntegral.meanRgb(left, top, width, height);
+            float variance = mIntegral.variance(left, top, width, height);
+            frame.probeUniform[p] = variance <= MAX_UNIFORM_VARIANCE;
+            if (p == 0) frame.variance = variance;
+        }
+    }
+
+    /**
+     * Converts the pixels of the region of the dominant colors mode to RGB, the region is
+     * subsampled so that at most {@link AnalysisFrame#MAX_SAMPLES} pixels are read
+     *
+     * @param planes   the Y, U and V planes of the image
+     * @param cropLeft the first column of the crop rect in the buffer
+     * @param cropTop  the first row of the crop rect in the buffer
+     * @param width    the width of the crop rect in the buffer
+     * @param height   the height of the crop rect in the buffer
+     * @param frame    the frame receiving the sampled colors
+     */
+    private void sampleRegion(@NotNull ImageProxy.PlaneProxy[] planes, int cropLeft, int cropTop, int width, int height, @NotNull AnalysisFrame frame) {
+        int side = Math.max(1, (int) (mRegionSize * Math.min(width, height)));
+        int left = cropLeft + width / 2 - side / 2;
+        int top = cropTop + height / 2 - side / 2;
+        int step = YuvPixels.getSampleStep(side, side, AnalysisFrame.MAX_SAMPLES);
+        frame.sampleCount = YuvSampler.sampleRgb(planes, left, top, side, side, step, frame.samples);
+    }
+
+    /**
+     * Names every pixel of a square map of the crop rect, the map has the size of the preview image up to
+     * {@link AnalysisFrame#MAX_MAP_SIZE} so the quality controller also lowers the cost of the map
+     *
+     * @param planes   the Y, U and V planes of the image
+     * @param cropLeft the first column of the crop rect in the buffer
+     * @param cropTop  the first row of the crop rect in the buffer
+     * @param width    the width of the crop rect in the buffer
+     * @param height   the height of the crop rect in the buffer
+     * @param frame    the frame receiving the map
+     * @param mapSize  the side of the map
+     */
+    private void segmentImage(@NotNull ImageProxy.PlaneProxy[] planes, int cropLeft, int cropTop, int width, int height,
+                              @NotNull AnalysisFrame frame, int mapSize) {
+        long time = mMetrics.start();
+        if (mSegmenter == null) {
+            mSegmentationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            mSegmenter = new ColorSegmenter(mSegmentationPool, AnalysisFrame.MAX_MAP_SIZE);
+        }
+
+        frame.mapSize = Math.min(AnalysisFrame.MAX_MAP_SIZE, mapSize);
+        mSegmenter.segment(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                cropLeft, cropTop, width, height, frame.mapSize, getNamer(), frame.labels);
+        mMetrics.record(FrameMetrics.SEGMENTATION, time);
+    }
+
+    /**
+     * Clusters the colors sampled in the region, the largest cluster replaces the mean color
+     *
+     * @param frame the frame whose sampled colors are clustered
+     */
+    private void findDominantColors(@NotNull AnalysisFrame frame) {
+        int count = mClusterer.cluster(frame.samples, frame.sampleCount, DOMINANT_COLOR_COUNT, KMEANS_ITERATIONS);
+        for (int c = 0; c < count; c++) {
+            frame.clusterColors[c] = mClusterer.getColor(c);
+            frame.clusterCoverages[c] = mClusterer.getCoverage(c);
+        }
+        frame.clusterCount = count;
+        if (count == 0) return;
+
+        frame.meanColor = frame.clusterColors[0];
+    }
+
+    /**
+     * Draws a square at the main probe of the image with its exterior contours in black and interior contours in white,
+     * only the pixels of the square are written using the reusable area and buffer of the frame
+     *
+     * @param frame the frame whose square image is drawn on
+     */
+    private void drawMiddleSquareOnImage(@NotNull AnalysisFrame frame) {
+        //the marker covers the sampled area of the main probe whatever the size of the square image
+        int thickness = Math.max(MIN_THICKNESS, Math.round(frame.patchSize * frame.square.cols()));
+        Mat marker = frame.getMarker(thickness, frame.probeCenters[0], frame.probeCenters[1]);
+        byte[] data = frame.markerPixels;
+        byte r = (byte) PackedColor.getR(frame.meanColor);
+        byte g = (byte) PackedColor.getG(frame.meanColor);
+        byte b = (byte) PackedColor.getB(frame.meanColor);
 
         //update a square whose size is the thickness
-        for (int i = midX - (thickness - 1) / 2; i < midX - (thickness - 1) / 2 + thickness; i++) {
-            for (int j = midY - (thickness - 1) / 2; j < midY - (thickness - 1) / 2 + thickness; j++) {
-                int idx = 3 * (i * rgb.cols() + j);
-                if (i == midX - (thickness - 1) / 2 || i == midX - (thickness - 1) / 2 + thickness - 1 || j == midY - (thickness - 1) / 2 || j == midX - (thickness - 1) / 2 + thickness - 1) {
+        for (int i = 0; i < thickness; i++) {
+            for (int j = 0; j < thickness; j++) {
+                int idx = 3 * (i * thickness + j);
+                if (i == 0 || i == thickness - 1 || j == 0 || j == thickness - 1) {
                     //extern contours are in black
                     data[idx] = 0;
                     data[1 + idx] = 0;
                     data[2 + idx] = 0;
-                } else if (i == midX - (thickness - 1) / 2 + 1 || i == midX - (thickness - 1) / 2 + thickness - 2 || j == midY - (thickness - 1) / 2 + 1 || j == midX - (thickness - 1) / 2 + thickness - 2) {
+                } else if (i == 1 || i == thickness - 2 || j == 1 || j == thickness - 2) {
                     //intern contours are in white
                     data[idx] = (byte) 255;
                     data[1 + idx] = (byte) 255;
                     data[2 + idx] = (byte) 255;
                 } else {
                     //interior has the color of the mean color
-                    data[idx] = (byte) meanCompleteColor.getR();
-                    data[1 + idx] = (byte) meanCompleteColor.getG();
-                    data[2 + idx] = (byte) meanCompleteColor.getB();
+                    data[idx] = r;
+                    data[1 + idx] = g;
+                    data[2 + idx] = b;
                 }
             }
         }
 
         //update the image with the central square
-        rgb.put(0, 0, data);
+        marker.put(0, 0, data);
     }
 
     /**
-     * Displays RGB and HSV values of the mean color using the TextViews
+     * Computes the HSV values of the mean color of the frame and the names to display
+     *
+     * @param frame the frame whose values are updated
      */
-    private void displayColorValues() {
-        int r = meanCompleteColor.getR();
-        int g = meanCompleteColor.getG();
-        int b = meanCompleteColor.getB();
-
-        String nr = r < 100 ? r < 10 ? "00" + r : "0" + r : "" + r;
-        String ng = g < 100 ? g < 10 ? "00" + g : "0" + g : "" + g;
-        String nb = b < 100 ? b < 10 ? "00" + b : "0" + b : "" + b;
-
-        int h = meanCompleteColor.getH();
-        float s = meanCompleteColor.getS();
-        float v = meanCompleteColor.getV();
-
-        int is = (int) (s * 100);
-        int iv = (int) (v * 100);
-
-        String nh = h < 100 ? h < 10 ? "00" + h : "0" + h : "" + h;
-        String ns = is < 100 ? is < 10 ? "00" + is : "0" + is : "" + is;
-        String nv = iv < 100 ? iv < 10 ? "00" + iv : "0" + iv : "" + iv;
-
-        mTextViewRGB.setText(this.mContext.getString(R.string.rgb_color, nr, ng, nb));
-        mTextViewHSV.setText(this.mContext.getString(R.string.hsv_color, nh, ns, nv));
-    }
+    private void computeColorValues(@NotNull AnalysisFrame frame) {
+        int hsv = PackedColor.toHsv(frame.meanColor);
+        frame.h = HsvConverter.getH(hsv);
+        frame.s = (int) (HsvConverter.getS(hsv) * 100);
+        frame.v = (int) (HsvConverter.getV(hsv) * 100);
+        if (!frame.dominantColors) {
+            frame.nameIds[0] = PackedColor.classify(getNamer(), frame.meanColor);
+            frame.nameCount = 1;
+            return;
+        }
 
-    /**
-     * Displays the color name of the mean color using the TextView
-     */
-    private void displayColorName() {
-        mTextViewColor.setText(meanCompleteColor.getName());
+        //coverages of the dominant colors, the smallest clusters are not named
+        int count = 0;
+        while (count < frame.clusterCount && (count == 0 || frame.clusterCoverages[count] >= MIN_COVERAGE)) {
+            frame.namePercents[count] = Math.round(frame.clusterCoverages[count] * 100);
+            count++;
+        }
+        PackedColor.classify(getNamer(), frame.clusterColors, count, frame.nameIds);
+        frame.nameCount = count;
     }
 
 }
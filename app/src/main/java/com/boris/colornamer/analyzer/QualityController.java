@@ -0,0 +1,197 @@
+package com.boris.colornamer.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Chooses the resolution and the rate of the analysis from the time spent on each frame.
+ * The processing time is smoothed and compared to a budget: the quality is lowered when
+ * the frames take longer than the budget, and raised when the time predicted at the next
+ * level, proportional to its number of pixels, stays well below its budget. A level with a
+ * lower rate has a budget as long as the time between its frames. After a change, the
+ * controller waits for enough frames measured at the new quality before changing it again,
+ * so it does not oscillate between two levels.
+ */
+public class QualityController {
+
+    /**
+     * A quality of the analysis
+     */
+    public static final class Level {
+        /**
+         * The side of the square target resolution of the camera images
+         */
+        public final int resolution;
+        /**
+         * The side of the square image rendered in the preview
+         */
+        public final int squareSize;
+        /**
+         * The min time between two analyzed images in milliseconds, 0 to analyze every image
+         */
+        public final int minFrameIntervalMs;
+
+        /**
+         * Constructor
+         *
+         * @param resolution         the side of the square target resolution of the camera images
+         * @param squareSize         the side of the square image rendered in the preview
+         * @param minFrameIntervalMs the min time between two analyzed images in milliseconds
+         */
+        public Level(int resolution, int squareSize, int minFrameIntervalMs) {
+            this.resolution = resolution;
+            this.squareSize = squareSize;
+            this.minFrameIntervalMs = minFrameIntervalMs;
+        }
+    }
+
+    /**
+     * Notified when the resolution of the camera images must change
+     */
+    public interface Listener {
+        /**
+         * Called from the thread reporting the frame that changed the level
+         *
+         * @param level the new level, whose resolution differs from the previous one
+         */
+        void onResolutionChanged(@NotNull Level level);
+    }
+
+    /**
+     * The levels from the lowest to the highest quality
+     */
+    public static final Level[] LEVELS = new Level[]{
+            new Level(480, 300, 100),
+            new Level(720, 400, 66),
+            //the first step down only lowers the rate, the camera is not bound again
+            new Level(1000, 500, 50),
+            new Level(1000, 500, 0),
+            new Level(1440, 720, 0)
+    };
+    //the quality used before any measure, the one the app always used
+    public static final int DEFAULT_LEVEL = 3;
+    //one frame of a 30 fps camera
+    public static final long DEFAULT_BUDGET_NS = 33_000_000L;
+
+    //weight of the last frame in the smoothed processing time
+    private static final double SMOOTHING = 0.1;
+    //the quality is raised when the frames would take less than this part of the budget of the next level
+    private static final double RAISE_RATIO = 0.75;
+    //number of frames measured at a level before it can change
+    private static final int MIN_FRAMES = 30;
+
+    private final long mBudget;
+    private volatile int mLevel;
+    private volatile Listener mListener;
+
+    //only used while holding the lock of the controller
+    private double mSmoothedTime;
+    private int mFrameCount;
+
+    /**
+     * Constructor, the controller starts at the default level
+     *
+     * @param budget the target processing time of a frame in nanoseconds
+     */
+    public QualityController(long budget) {
+        this.mBudget = budget;
+        this.mLevel = DEFAULT_LEVEL;
+    }
+
+    /**
+     * Setter
+     *
+     * @param listener the listener notified when the resolution of the camera images must change
+     */
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the current quality of the analysis
+     */
+    @NotNull
+    public Level getLevel() {
+        return LEVELS[mLevel];
+    }
+
+    /**
+     * Getter
+     *
+     * @return the index of the current quality in {@link #LEVELS}
+     */
+    public int getLevelIndex() {
+        return mLevel;
+    }
+
+    /**
+     * Adds the processing time of a frame and changes the level if needed
+     *
+     * @param nanos the time spent on the frame by its slowest thread, in nanoseconds
+     */
+    public void onFrameProcessed(long nanos) {
+        Level changed;
+        synchronized (this) {
+            mSmoothedTime = mFrameCount == 0 ? nanos : mSmoothedTime + SMOOTHING * (nanos - mSmoothedTime);
+            mFrameCount++;
+            if (mFrameCount < MIN_FRAMES) return;
+
+            int level = mLevel;
+            if (mSmoothedTime > getBudget(LEVELS[level]) && level > 0) {
+                level--;
+            } else if (level < LEVELS.length - 1 && predictTime(LEVELS[level], LEVELS[level + 1]) < RAISE_RATIO * getBudget(LEVELS[level + 1])) {
+                level++;
+            } else {
+                return;
+            }
+            changed = setLevel(level);
+        }
+
+        Listener listener = mListener;
+        if (changed != null && listener != null) listener.onResolutionChanged(changed);
+    }
+
+    /**
+     * Counts a frame dropped because the analysis was too slow, as a frame taking twice the budget
+     */
+    public void onFrameDropped() {
+        onFrameProcessed(2 * mBudget);
+    }
+
+    /**
+     * Getter
+     *
+     * @param level a level
+     * @return the time a frame can take at the given level in nanoseconds
+     */
+    private long getBudget(@NotNull Level level) {
+        return Math.max(mBudget, level.minFrameIntervalMs * 1_000_000L);
+    }
+
+    /**
+     * Estimates the processing time at another level from the one measured at the current level
+     *
+     * @param current the current level
+     * @param next    the other level
+     * @return the estimated processing time of a frame at the other level in nanoseconds
+     */
+    private double predictTime(@NotNull Level current, @NotNull Level next) {
+        double ratio = (double) next.resolution * next.resolution / ((double) current.resolution * current.resolution);
+        return mSmoothedTime * ratio;
+    }
+
+    /**
+     * Changes the level and starts a new measure
+     *
+     * @param level the index of the new level
+     * @return the new level if the resolution changed, else null
+     */
+    private Level setLevel(int level) {
+        Level previous = LEVELS[mLevel];
+        mLevel = level;
+        mFrameCount = 0;
+        return previous.resolution != LEVELS[level].resolution ? LEVELS[level] : null;
+    }
+
+}
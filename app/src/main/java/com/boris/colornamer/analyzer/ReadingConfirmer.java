@@ -0,0 +1,91 @@
+package com.boris.colornamer.analyzer;
+
+import com.boris.colornamer.model.SampleLog;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decides which readings of the main probe are kept in the history. A reading is confirmed once
+ * its color name was displayed for the confirmation time, measured with the timestamps of the
+ * camera images, and it is logged only once until the name changes. The camera images skipped
+ * because the scene did not change keep the displayed reading, so they count toward its time:
+ * a still scene is confirmed even if only its first image was analyzed, while names flickering
+ * past during a pan are not. Called by the publishing stage and by the camera executor.
+ */
+class ReadingConfirmer {
+
+    //time a name must be displayed before its reading is logged
+    static final long DEFAULT_CONFIRMATION_NS = 500_000_000L;
+
+    private final long mConfirmationNs;
+
+    //reading displayed for the candidate name, and timestamp of the first image showing that name
+    private byte mNameId = -1;
+    private long mSince;
+    private boolean mLogged;
+    private int mRgb;
+    private int mH;
+    private int mS;
+    private int mV;
+    private float mVariance;
+
+    /**
+     * Constructor
+     *
+     * @param confirmationNs the time a name must be displayed before its reading is logged, in nanoseconds
+     */
+    ReadingConfirmer(long confirmationNs) {
+        this.mConfirmationNs = confirmationNs;
+    }
+
+    /**
+     * Takes the reading of a published frame, it becomes the candidate if its name changed
+     *
+     * @param log       the history receiving the confirmed reading, or null if it is not logged
+     * @param timestamp the timestamp of the camera image in nanoseconds
+     * @param rgb       the color packed as 0xRRGGBB
+     * @param h         the hue in degrees
+     * @param s         the saturation in percent
+     * @param v         the value in percent
+     * @param nameId    the id of the color name
+     * @param variance  the variance of the colors of the sampled patch
+     */
+    synchronized void onPublished(@Nullable SampleLog log, long timestamp, int rgb, int h, int s, int v, byte nameId, float variance) {
+        //a replay going back in time restarts the candidate
+        if (nameId != mNameId || timestamp < mSince) {
+            mNameId = nameId;
+            mSince = timestamp;
+            mLogged = false;
+        }
+        mRgb = rgb;
+        mH = h;
+        mS = s;
+        mV = v;
+        mVariance = variance;
+        confirm(log, timestamp);
+    }
+
+    /**
+     * Counts a camera image skipped because the scene did not change, the displayed reading is still valid
+     *
+     * @param log       the history receiving the confirmed reading, or null if it is not logged
+     * @param timestamp the timestamp of the camera image in nanoseconds
+     */
+    synchronized void onUnchanged(@Nullable SampleLog log, long timestamp) {
+        if (mNameId >= 0) confirm(log, timestamp);
+    }
+
+    /**
+     * Forgets the candidate, when the displayed values are not the reading of the main probe
+     */
+    synchronized void reset() {
+        mNameId = -1;
+    }
+
+    private void confirm(@Nullable SampleLog log, long timestamp) {
+        if (log == null || mLogged || timestamp - mSince < mConfirmationNs) return;
+        log.append(System.currentTimeMillis(), mRgb, mH, mS, mV, mNameId, mVariance);
+        mLogged = true;
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.boris.colornamer.analyzer;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times of the steps of the cold start of the app, from the start of the process to the first
+ * color named on screen. Each step is only recorded the first time it happens, from any thread.
+ */
+public class StartupTrace {
+
+    /**
+     * Receives the trace once the first color is displayed
+     */
+    public interface Listener {
+        /**
+         * Called by the thread recording the first displayed color
+         *
+         * @param trace the complete trace
+         */
+        void onFirstColor(@NotNull StartupTrace trace);
+    }
+
+    //steps of the startup, indices of the times
+    public static final int CREATE = 0;
+    public static final int CONTENT_VIEW = 1;
+    public static final int OPENCV_LOADED = 2;
+    public static final int CAMERA_PROVIDER = 3;
+    public static final int CAMERA_BOUND = 4;
+    public static final int FIRST_IMAGE = 5;
+    public static final int FIRST_COLOR = 6;
+    private static final int STEP_COUNT = 7;
+
+    private static final String[] STEP_NAMES = new String[]{
+            "create", "contentView", "openCvLoaded", "cameraProvider", "cameraBound", "firstImage", "firstColor"
+    };
+
+    //realtime of the start of the process, the times are relative to it
+    private final long mProcessStart = Process.getStartElapsedRealtime() * 1_000_000L;
+    //time of each step in nanoseconds since the start of the process, 0 until it happens
+    private final AtomicLongArray mTimes = new AtomicLongArray(STEP_COUNT);
+    private volatile Listener mListener;
+
+    /**
+     * Setter
+     *
+     * @param listener the listener called once the first color is displayed, or null
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Records the time of a step if it is its first time
+     *
+     * @param step the step that just happened
+     */
+    public void mark(int step) {
+        if (mTimes.get(step) != 0) return;
+        long time = Math.max(1, SystemClock.elapsedRealtimeNanos() - mProcessStart);
+        if (!mTimes.compareAndSet(step, 0, time)) return;
+        Listener listener = mListener;
+        if (step == FIRST_COLOR && listener != null) listener.onFirstColor(this);
+    }
+
+    /**
+     * Getter
+     *
+     * @param step the step of the startup
+     * @return the time of the step in milliseconds since the start of the process, -1 if it did not happen yet
+     */
+    public long getTimeMs(int step) {
+        long time = mTimes.get(step);
+        return time == 0 ? -1 : time / 1_000_000;
+    }
+
+    /**
+     * Formats the trace as a table, for the logs
+     *
+     * @return the text of the trace, times are in milliseconds since the start of the process
+     */
+    @NotNull
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "%-16s%7s%n", "startup (ms)", "time"));
+        for (int i = 0; i < STEP_COUNT; i++) {
+            builder.append(String.format(Locale.ROOT, "%-16s%7d%n", STEP_NAMES[i], getTimeMs(i)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats the trace as JSON, for the export
+     *
+     * @return the JSON of the trace, times are in milliseconds since the start of the process
+     */
+    @NotNull
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\"startupMs\":{");
+        for (int i = 0; i < STEP_COUNT; i++) {
+            if (i > 0) builder.append(',');
+            builder.append('"').append(STEP_NAMES[i]).append("\":").append(getTimeMs(i));
+        }
+        builder.append("}}");
+        return builder.toString();
+    }
+
+}
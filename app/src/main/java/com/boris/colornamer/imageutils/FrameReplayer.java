@@ -0,0 +1,75 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds the images of a capture file to an analysis as if they came from the camera,
+ * either as fast as possible for the performance measures or at the pace they were captured.
+ * The planes given to the analysis are views of the mapped file, no pixel is copied.
+ */
+public class FrameReplayer {
+
+    /**
+     * The analysis receiving the replayed images
+     */
+    public interface FrameConsumer {
+        /**
+         * Analyzes an image, its planes are only valid during the call
+         *
+         * @param planes          the Y, U and V planes of the image
+         * @param width           the width of the buffer
+         * @param height          the height of the buffer
+         * @param rotationDegrees the clockwise rotation making the buffer upright
+         * @param timestamp       the timestamp of the image in nanoseconds
+         */
+        void analyze(@NotNull ImageProxy.PlaneProxy[] planes, int width, int height, int rotationDegrees, long timestamp);
+    }
+
+    private final CaptureReader mReader;
+    private final CapturedFrame mFrame = new CapturedFrame();
+    private final ImageProxy.PlaneProxy[] mPlanes = new ImageProxy.PlaneProxy[3];
+
+    /**
+     * Constructor
+     *
+     * @param reader the reader of the capture file
+     */
+    public FrameReplayer(@NotNull CaptureReader reader) {
+        this.mReader = reader;
+    }
+
+    /**
+     * Replays all the images on the calling thread, the replay stops early if the thread is interrupted
+     *
+     * @param consumer the analysis receiving the images
+     * @param realTime true to wait between the images as long as between their captures, false to replay them as fast as possible
+     * @return the number of replayed images
+     */
+    public int replay(@NotNull FrameConsumer consumer, boolean realTime) {
+        int count = mReader.getFrameCount();
+        long firstTimestamp = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (Thread.currentThread().isInterrupted()) return i;
+            mReader.read(i, mFrame);
+            if (i == 0) firstTimestamp = mFrame.timestamp;
+            if (realTime) {
+                long deadline = start + mFrame.timestamp - firstTimestamp;
+                long delay;
+                while ((delay = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            mPlanes[0] = new YuvPlane(mFrame.y, mFrame.yRowStride, mFrame.yPixelStride);
+            mPlanes[1] = new YuvPlane(mFrame.u, mFrame.uvRowStride, mFrame.uvPixelStride);
+            mPlanes[2] = new YuvPlane(mFrame.v, mFrame.uvRowStride, mFrame.uvPixelStride);
+            consumer.analyze(mPlanes, mFrame.width, mFrame.height, mFrame.rotationDegrees, mFrame.timestamp);
+        }
+        return count;
+    }
+
+}
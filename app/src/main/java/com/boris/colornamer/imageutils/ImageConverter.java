@@ -30,9 +30,18 @@ public class ImageConverter {
      * @param dst the Mat that will contain the RGB version of the image
      */
     public static void convYUV2RGB(@NotNull ImageProxy src, @NotNull Mat dst) {
-        ImageProxy.PlaneProxy[] planes = src.getPlanes();
-        int w = src.getWidth();
-        int h = src.getHeight();
+        convYUV2RGB(src.getPlanes(), src.getWidth(), src.getHeight(), dst);
+    }
+
+    /**
+     * Converts the given YUV_420_888 planes into RGB to fill the given Mat
+     *
+     * @param planes the Y, U and V planes of the image to convert
+     * @param w      the width of the image
+     * @param h      the height of the image
+     * @param dst    the Mat that will contain the RGB version of the image
+     */
+    public static void convYUV2RGB(@NotNull ImageProxy.PlaneProxy[] planes, int w, int h, @NotNull Mat dst) {
         int chromaPixelStride = planes[1].getPixelStride();
 
         if (chromaPixelStride == 2) { // Chroma channels are interleaved
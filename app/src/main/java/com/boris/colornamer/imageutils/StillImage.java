@@ -0,0 +1,240 @@
+package com.boris.colornamer.imageutils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Photo opened from the gallery, it is never decoded whole: a small overview is decoded once,
+ * then only the tiles of the visible part of the image are decoded at the subsample level of the
+ * zoom, and the colors of the tapped points are measured on tiles at native resolution.
+ * The tiles are decoded on a single background thread and kept in a cache limited in bytes.
+ */
+public class StillImage {
+
+    private static final String TAG = "StillImage";
+
+    private final ParcelFileDescriptor mFileDescriptor;
+    private final BitmapRegionDecoder mDecoder;
+    private final int mWidth;
+    private final int mHeight;
+    private final Bitmap mOverview;
+    private final int mOverviewSampleSize;
+    //decoded tiles by key of the tile layout, the least recently drawn are evicted first
+    private final LruCache<Long, Bitmap> mTiles;
+    //keys of the tiles waiting for the decoder thread
+    private final Set<Long> mPendingTiles = ConcurrentHashMap.newKeySet();
+    //level of the last requested tile, the tiles of the other levels are no longer decoded
+    private volatile int mRequestedSampleSize = 1;
+    private final ExecutorService mDecoderExecutor = Executors.newSingleThreadExecutor();
+    //only used by the decoder thread
+    private final Rect mRegion = new Rect();
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+    private int[] mPixels = new int[0];
+
+    private StillImage(@NotNull ParcelFileDescriptor fileDescriptor, @NotNull BitmapRegionDecoder decoder, int maxOverviewSide, int maxCacheBytes) throws IOException {
+        this.mFileDescriptor = fileDescriptor;
+        this.mDecoder = decoder;
+        this.mWidth = decoder.getWidth();
+        this.mHeight = decoder.getHeight();
+        this.mOverviewSampleSize = TileLayout.getSampleSizeToFit(mWidth, mHeight, maxOverviewSide, maxOverviewSide);
+        this.mOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap overview = decode(0, 0, mWidth, mHeight, mOverviewSampleSize);
+        if (overview == null) throw new IOException("Image of " + mWidth + "x" + mHeight + " could not be decoded");
+        this.mOverview = overview;
+        this.mTiles = new LruCache<Long, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Opens an image and decodes its overview, must not be called from the UI thread
+     *
+     * @param resolver        the resolver of the content uri
+     * @param uri             the uri of the image
+     * @param maxOverviewSide the max side of the overview in pixels
+     * @param maxCacheBytes   the max size of the decoded tiles kept in memory
+     * @return the opened image
+     * @throws IOException if the image can not be read or decoded
+     */
+    @NotNull
+    public static StillImage open(@NotNull ContentResolver resolver, @NotNull Uri uri, int maxOverviewSide, int maxCacheBytes) throws IOException {
+        ParcelFileDescriptor fileDescriptor = resolver.openFileDescriptor(uri, "r");
+        if (fileDescriptor == null) throw new FileNotFoundException("No file for " + uri);
+        try {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(fileDescriptor.getFileDescriptor(), false);
+            if (decoder == null) throw new IOException("Unsupported image " + uri);
+            return new StillImage(fileDescriptor, decoder, maxOverviewSide, maxCacheBytes);
+        } catch (IOException | RuntimeException e) {
+            fileDescriptor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the width of the image
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the height of the image
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the whole image decoded at the subsample size of the overview
+     */
+    @NotNull
+    public Bitmap getOverview() {
+        return mOverview;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the subsample size of the overview, a power of two
+     */
+    public int getOverviewSampleSize() {
+        return mOverviewSampleSize;
+    }
+
+    /**
+     * Getter, a tile not decoded yet is scheduled for decoding
+     *
+     * @param sampleSize the subsample size of the level, a power of two
+     * @param column     the column of the tile in the level
+     * @param row        the row of the tile in the level
+     * @param onDecoded  called from the decoder thread once the tile is in the cache
+     * @return the decoded tile, or null if it is not decoded yet
+     */
+    @Nullable
+    public Bitmap getTile(int sampleSize, int column, int row, @NotNull Runnable onDecoded) {
+        long key = TileLayout.getKey(sampleSize, column, row);
+        Bitmap tile = mTiles.get(key);
+        mRequestedSampleSize = sampleSize;
+        if (tile != null || !mPendingTiles.add(key)) return tile;
+        mDecoderExecutor.execute(() -> {
+            //the zoom changed since the request, the tile would not be drawn
+            if (sampleSize == mRequestedSampleSize && decodeTile(key, sampleSize, column, row) != null) onDecoded.run();
+            mPendingTiles.remove(key);
+        });
+        return null;
+    }
+
+    /**
+     * Measures the mean color of a square patch at native resolution on the decoder thread,
+     * the tiles around the patch are decoded if they are not in the cache
+     *
+     * @param x        the horizontal center of the patch in pixels of the image
+     * @param y        the vertical center of the patch in pixels of the image
+     * @param side     the side of the patch in pixels
+     * @param consumer receives the mean color packed as 0xRRGGBB on the decoder thread
+     */
+    public void sample(int x, int y, int side, @NotNull IntConsumer consumer) {
+        mDecoderExecutor.execute(() -> {
+            int left = Math.max(0, Math.min(mWidth - side, x - side / 2));
+            int top = Math.max(0, Math.min(mHeight - side, y - side / 2));
+            int right = Math.min(mWidth, left + side);
+            int bottom = Math.min(mHeight, top + side);
+            int span = TileLayout.getTileSpan(1);
+            long sumR = 0;
+            long sumG = 0;
+            long sumB = 0;
+            //a patch smaller than a tile overlaps at most 4 of them
+            for (int row = top / span; row <= (bottom - 1) / span; row++) {
+                for (int column = left / span; column <= (right - 1) / span; column++) {
+                    long key = TileLayout.getKey(1, column, row);
+                    Bitmap tile = mTiles.get(key);
+                    if (tile == null) tile = decodeTile(key, 1, column, row);
+                    if (tile == null) continue;
+                    int tileLeft = Math.max(left, column * span) - column * span;
+                    int tileTop = Math.max(top, row * span) - row * span;
+                    int width = Math.min(right, (column + 1) * span) - column * span - tileLeft;
+                    int height = Math.min(bottom, (row + 1) * span) - row * span - tileTop;
+                    if (mPixels.length < width * height) mPixels = new int[width * height];
+                    tile.getPixels(mPixels, 0, width, tileLeft, tileTop, width, height);
+                    for (int i = 0; i < width * height; i++) {
+                        int pixel = mPixels[i];
+                        sumR += (pixel >> 16) & 0xff;
+                        sumG += (pixel >> 8) & 0xff;
+                        sumB += pixel & 0xff;
+                    }
+                }
+            }
+            int count = Math.max(1, (right - left) * (bottom - top));
+            consumer.accept((int) (sumR / count) << 16 | (int) (sumG / count) << 8 | (int) (sumB / count));
+        });
+    }
+
+    /**
+     * Releases the decoder and the tiles once the pending decodings are done, the image can not be used after
+     */
+    public void release() {
+        mDecoderExecutor.execute(() -> {
+            mTiles.evictAll();
+            mDecoder.recycle();
+            try {
+                mFileDescriptor.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Image file could not be closed", e);
+            }
+        });
+        mDecoderExecutor.shutdown();
+    }
+
+    /**
+     * Decodes a tile and puts it in the cache, runs on the decoder thread
+     */
+    @Nullable
+    private Bitmap decodeTile(long key, int sampleSize, int column, int row) {
+        int span = TileLayout.getTileSpan(sampleSize);
+        int left = column * span;
+        int top = row * span;
+        Bitmap tile = decode(left, top, Math.min(mWidth, left + span), Math.min(mHeight, top + span), sampleSize);
+        if (tile != null) mTiles.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Decodes a region of the image at a subsample size
+     */
+    @Nullable
+    private Bitmap decode(int left, int top, int right, int bottom, int sampleSize) {
+        mRegion.set(left, top, right, bottom);
+        mOptions.inSampleSize = sampleSize;
+        Bitmap bitmap = mDecoder.decodeRegion(mRegion, mOptions);
+        if (bitmap == null) Log.e(TAG, "Region " + left + ", " + top + ", " + right + ", " + bottom + " could not be decoded");
+        return bitmap;
+    }
+
+}
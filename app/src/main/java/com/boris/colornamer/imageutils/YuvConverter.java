@@ -0,0 +1,128 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts YUV_420_888 images into RGB, keeping its staging buffer and Mat from one frame to another.
+ * The planes are copied into a contiguous buffer with bulk copies when their strides allow it, then
+ * converted by OpenCV. The buffer and the Mat are only created again when the size, the strides
+ * or the chroma layout of the images change.
+ */
+public class YuvConverter {
+
+    //layouts of the chroma planes
+    static final int LAYOUT_I420 = YuvPixels.LAYOUT_I420;
+    static final int LAYOUT_NV12 = YuvPixels.LAYOUT_NV12;
+    static final int LAYOUT_NV21 = YuvPixels.LAYOUT_NV21;
+
+    //format of the images the converter is currently built for
+    private int mWidth;
+    private int mHeight;
+    private int mYRowStride;
+    private int mUvRowStride;
+    private int mUvPixelStride;
+    private int mLayout;
+
+    //contiguous copy of the planes and the Mat using its memory
+    private ByteBuffer mStaging;
+    private Mat mYuv;
+
+    /**
+     * Converts given ImageProxy YUV image into RGB to fill the given Mat
+     *
+     * @param src the YUV image to convert
+     * @param dst the Mat that will contain the RGB version of the image
+     */
+    public void convert(@NotNull ImageProxy src, @NotNull Mat dst) {
+        convert(src.getPlanes(), src.getWidth(), src.getHeight(), dst);
+    }
+
+    /**
+     * Converts the given YUV_420_888 planes into RGB to fill the given Mat
+     *
+     * @param planes the Y, U and V planes of the image to convert
+     * @param w      the width of the image
+     * @param h      the height of the image
+     * @param dst    the Mat that will contain the RGB version of the image
+     */
+    public void convert(@NotNull ImageProxy.PlaneProxy[] planes, int w, int h, @NotNull Mat dst) {
+        if (mYuv == null || w != mWidth || h != mHeight || planes[0].getRowStride() != mYRowStride
+                || planes[1].getRowStride() != mUvRowStride || planes[1].getPixelStride() != mUvPixelStride) {
+            rebuild(planes, w, h);
+        }
+
+        mStaging.clear();
+        stage(planes, w, h, mLayout, mStaging);
+
+        int code;
+        if (mLayout == LAYOUT_NV12) {
+            code = Imgproc.COLOR_YUV2RGB_NV12;
+        } else if (mLayout == LAYOUT_NV21) {
+            code = Imgproc.COLOR_YUV2RGB_NV21;
+        } else {
+            code = Imgproc.COLOR_YUV2RGB_I420;
+        }
+        Imgproc.cvtColor(mYuv, dst, code, 3);
+    }
+
+    /**
+     * Frees the staging Mat, the converter can still be used after
+     */
+    public void release() {
+        if (mYuv != null) mYuv.release();
+        mYuv = null;
+        mStaging = null;
+    }
+
+    /**
+     * Creates the staging buffer and Mat for the format of the given planes
+     *
+     * @param planes the Y, U and V planes of an image
+     * @param w      the width of the image
+     * @param h      the height of the image
+     */
+    private void rebuild(@NotNull ImageProxy.PlaneProxy[] planes, int w, int h) {
+        release();
+        mWidth = w;
+        mHeight = h;
+        mYRowStride = planes[0].getRowStride();
+        mUvRowStride = planes[1].getRowStride();
+        mUvPixelStride = planes[1].getPixelStride();
+
+        if (mUvPixelStride == 1) { // Chroma channels are not interleaved
+            mLayout = LAYOUT_I420;
+        } else { // Chroma channels are interleaved, the first one in memory gives the order
+            Mat u = new Mat(1, 1, CvType.CV_8UC1, planes[1].getBuffer(), mUvRowStride);
+            Mat v = new Mat(1, 1, CvType.CV_8UC1, planes[2].getBuffer(), mUvRowStride);
+            mLayout = v.dataAddr() > u.dataAddr() ? LAYOUT_NV12 : LAYOUT_NV21;
+            u.release();
+            v.release();
+        }
+
+        mStaging = ByteBuffer.allocateDirect(w * (h + h / 2));
+        mYuv = new Mat(h + h / 2, w, CvType.CV_8UC1, mStaging, w);
+    }
+
+    /**
+     * Copies the planes in the given buffer, the Y plane is followed by the U and V planes
+     * for the I420 layout, and by the interleaved chroma for the NV12 and NV21 layouts
+     *
+     * @param planes the Y, U and V planes of the image
+     * @param w      the width of the image
+     * @param h      the height of the image
+     * @param layout the layout of the chroma planes
+     * @param dst    the buffer that will contain the w * (h + h / 2) bytes of the image
+     */
+    static void stage(@NotNull ImageProxy.PlaneProxy[] planes, int w, int h, int layout, @NotNull ByteBuffer dst) {
+        YuvPixels.stage(planes[0].getBuffer(), planes[0].getRowStride(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), w, h, layout, dst);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plane of a YUV image that is not provided by the camera, such as a synthetic or a recorded image
+ */
+public class YuvPlane implements ImageProxy.PlaneProxy {
+
+    private final ByteBuffer mBuffer;
+    private final int mRowStride;
+    private final int mPixelStride;
+
+    /**
+     * Constructor
+     *
+     * @param buffer      the data of the plane
+     * @param rowStride   the number of bytes between the starts of two consecutive rows
+     * @param pixelStride the number of bytes between two consecutive pixels of a row
+     */
+    public YuvPlane(@NotNull ByteBuffer buffer, int rowStride, int pixelStride) {
+        this.mBuffer = buffer;
+        this.mRowStride = rowStride;
+        this.mPixelStride = pixelStride;
+    }
+
+    @Override
+    public int getRowStride() {
+        return mRowStride;
+    }
+
+    @Override
+    public int getPixelStride() {
+        return mPixelStride;
+    }
+
+    @NonNull
+    @Override
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+}
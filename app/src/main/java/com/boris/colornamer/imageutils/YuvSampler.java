@@ -0,0 +1,60 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reads RGB colors directly from the planes of a YUV_420_888 image,
+ * only the sampled pixels are converted
+ */
+public class YuvSampler {
+
+    /**
+     * Computes the mean color of a rectangle of the image, the strides of the planes are
+     * used so the same code reads NV12, NV21 and I420 layouts with or without padding
+     *
+     * @param planes the Y, U and V planes of the image
+     * @param left   the first column of the rectangle
+     * @param top    the first row of the rectangle
+     * @param width  the number of columns of the rectangle
+     * @param height the number of rows of the rectangle
+     * @return the mean color packed as 0xRRGGBB
+     */
+    public static int meanRgb(@NotNull ImageProxy.PlaneProxy[] planes, int left, int top, int width, int height) {
+        return YuvPixels.meanRgb(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                left, top, width, height);
+    }
+
+    /**
+     * Converts the pixels of a rectangle of the image to RGB, one pixel every step pixels in both directions
+     *
+     * @param planes the Y, U and V planes of the image
+     * @param left   the first column of the rectangle
+     * @param top    the first row of the rectangle
+     * @param width  the number of columns of the rectangle
+     * @param height the number of rows of the rectangle
+     * @param step   the distance between two sampled pixels
+     * @param dst    the array receiving the colors packed as 0xRRGGBB
+     * @return the number of sampled pixels
+     */
+    public static int sampleRgb(@NotNull ImageProxy.PlaneProxy[] planes, int left, int top, int width, int height, int step, @NotNull int[] dst) {
+        return YuvPixels.sampleRgb(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                left, top, width, height, step, dst);
+    }
+
+    /**
+     * Converts a YUV pixel to RGB with the same arithmetic as OpenCV
+     *
+     * @param y the luma of the pixel between 0 and 255
+     * @param u the blue-difference chroma of the pixel between 0 and 255
+     * @param v the red-difference chroma of the pixel between 0 and 255
+     * @return the color packed as 0xRRGGBB
+     */
+    public static int yuvToRgb(int y, int u, int v) {
+        return YuvPixels.yuvToRgb(y, u, v);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.boris.colornamer.model;
+
+import android.content.Context;
+
+import com.boris.colornamer.R;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Strings of the color names, read from the ids computed by {@link PackedColor} only when they are displayed
+ */
+public class ColorNames {
+
+    //string resources of the color names, indexed by their id
+    private static final int[] NAMES = new int[]{
+            R.string.red, R.string.brown, R.string.orange, R.string.yellow,
+            R.string.green, R.string.cyan, R.string.blue, R.string.purple,
+            R.string.pink, R.string.black, R.string.gray, R.string.white
+    };
+
+    /**
+     * Getter
+     *
+     * @param context the context from which the color name is extracted
+     * @param nameId  the id of the color name, as defined in {@link ColorClassifier}
+     * @return the name of the color in the locale of the context
+     */
+    @NotNull
+    public static String getName(@NotNull Context context, byte nameId) {
+        return context.getString(NAMES[nameId]);
+    }
+
+    /**
+     * Getter
+     *
+     * @param context the context from which the color names are extracted
+     * @return the names of all the colors in the locale of the context, indexed by their id
+     */
+    @NotNull
+    public static String[] getNames(@NotNull Context context) {
+        String[] names = new String[ColorClassifier.COUNT];
+        for (byte id = 0; id < ColorClassifier.COUNT; id++) names[id] = getName(context, id);
+        return names;
+    }
+
+}
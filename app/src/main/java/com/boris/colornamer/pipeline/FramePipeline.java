@@ -0,0 +1,187 @@
+package com.boris.colornamer.pipeline;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs frames through a sequence of stages, each stage on its own thread.
+ * Stages are connected by single-producer/single-consumer queues so that
+ * consecutive frames are processed at the same time by different stages.
+ * <p>
+ * Backpressure: the frames are taken from a fixed pool and every queue can hold the
+ * whole pool, so a stage never waits to hand a frame to the next one. When all the
+ * frames are in flight, {@link #acquire()} returns null and the producer drops its
+ * newest input, the same way the camera keeps only the latest image.
+ *
+ * @param <T> the type of the frames
+ */
+public class FramePipeline<T> {
+
+    /**
+     * A processing step applied to each frame
+     *
+     * @param <T> the type of the frames
+     */
+    public interface Stage<T> {
+        /**
+         * Processes the given frame, called from the thread of the stage
+         *
+         * @param frame the frame to process
+         */
+        void process(@NotNull T frame);
+    }
+
+    private final String mName;
+    private final List<Stage<T>> mStages;
+    //input queue of each stage
+    private final List<SpscQueue<T>> mQueues = new ArrayList<>();
+    //frames given back by the last stage
+    private final SpscQueue<T> mFreeFrames;
+    private final Thread[] mThreads;
+    private volatile boolean mRunning;
+
+    //only written by the producer thread
+    private volatile long mSubmittedCount;
+    private volatile long mDroppedCount;
+    //only written by the last stage thread
+    private volatile long mCompletedCount;
+
+    /**
+     * Constructor
+     *
+     * @param name   the name of the pipeline, used to name the threads
+     * @param frames the pool of frames, the max number of frames in flight
+     * @param stages the stages applied in order to each submitted frame
+     */
+    public FramePipeline(@NotNull String name, @NotNull List<T> frames, @NotNull List<Stage<T>> stages) {
+        if (frames.isEmpty()) throw new IllegalArgumentException("the pipeline needs at least one frame");
+        if (stages.isEmpty()) throw new IllegalArgumentException("the pipeline needs at least one stage");
+        this.mName = name;
+        this.mStages = new ArrayList<>(stages);
+        for (int i = 0; i < stages.size(); i++) mQueues.add(new SpscQueue<>(frames.size()));
+        this.mFreeFrames = new SpscQueue<>(frames.size());
+        for (T frame : frames) mFreeFrames.offer(frame);
+        this.mThreads = new Thread[stages.size()];
+    }
+
+    /**
+     * Starts the threads of the stages
+     */
+    public synchronized void start() {
+        if (mRunning) return;
+        mRunning = true;
+        for (int i = 0; i < mThreads.length; i++) {
+            final int index = i;
+            mThreads[i] = new Thread(() -> runStage(index), mName + "-stage" + i);
+        }
+        for (Thread thread : mThreads) thread.start();
+    }
+
+    /**
+     * Stops the threads of the stages and waits for them to end,
+     * the frames still in the queues are not processed
+     */
+    public synchronized void stop() {
+        if (!mRunning) return;
+        mRunning = false;
+        for (Thread thread : mThreads) LockSupport.unpark(thread);
+        for (Thread thread : mThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes a free frame from the pool, must only be called by the producer thread
+     *
+     * @return a frame to fill and submit, or null if all the frames are in flight and the input must be dropped
+     */
+    public T acquire() {
+        T frame = mFreeFrames.poll();
+        if (frame == null) mDroppedCount++;
+        return frame;
+    }
+
+    /**
+     * Sends a frame given by {@link #acquire()} to the first stage, must only be called by the producer thread
+     *
+     * @param frame the frame to process
+     */
+    public void submit(@NotNull T frame) {
+        mSubmittedCount++;
+        mQueues.get(0).offer(frame);
+        LockSupport.unpark(mThreads[0]);
+    }
+
+    /**
+     * Loop of the thread of a stage
+     *
+     * @param index the index of the stage
+     */
+    private void runStage(int index) {
+        boolean last = index == mStages.size() - 1;
+        Stage<T> stage = mStages.get(index);
+        SpscQueue<T> in = mQueues.get(index);
+        SpscQueue<T> out = last ? mFreeFrames : mQueues.get(index + 1);
+        Thread next = last ? null : mThreads[index + 1];
+
+        while (mRunning) {
+            T frame = in.poll();
+            if (frame == null) {
+                //woken up by the previous stage when a frame is available
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                stage.process(frame);
+            } catch (RuntimeException e) {
+                //a failing frame must not stop the pipeline
+                e.printStackTrace();
+            }
+
+            //never fails as every queue can hold all the frames
+            out.offer(frame);
+            if (last) {
+                mCompletedCount++;
+            } else {
+                LockSupport.unpark(next);
+            }
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of frames submitted to the first stage
+     */
+    public long getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of inputs dropped because all the frames were in flight
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of frames that went through all the stages
+     */
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+}
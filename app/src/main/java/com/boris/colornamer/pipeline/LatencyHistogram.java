@@ -0,0 +1,130 @@
+package com.boris.colornamer.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in microseconds. Durations below 16 us have their own
+ * bucket, above each power of two is split in 8 buckets so a percentile is at most
+ * 12.5% above the real value. Recording never allocates nor blocks, so it can be done
+ * from any thread while another thread reads the percentiles.
+ */
+public class LatencyHistogram {
+
+    //number of buckets for each power of two
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    //values below this one have their own bucket
+    private static final int LINEAR_COUNT = 2 * SUB_COUNT;
+    //longest duration recorded, about 38 hours
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = LINEAR_COUNT + (MAX_EXPONENT - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Adds a duration to the histogram
+     *
+     * @param nanos the duration in nanoseconds, negative durations are ignored
+     */
+    public void record(long nanos) {
+        if (nanos < 0) return;
+        long micros = Math.min(nanos / 1000, MAX_VALUE);
+        mBuckets.incrementAndGet(indexOf(micros));
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+        long max = mMax.get();
+        while (micros > max && !mMax.compareAndSet(max, micros)) max = mMax.get();
+    }
+
+    /**
+     * Empties the histogram, the durations recorded during the reset may be partially kept
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) mBuckets.set(i, 0);
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the longest recorded duration in microseconds
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the mean of the recorded durations in microseconds, 0 if none was recorded
+     */
+    public long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSum.get() / count;
+    }
+
+    /**
+     * Getter
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the duration in microseconds below which the given percentage of the durations are,
+     * rounded up to the upper bound of its bucket, 0 if none was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) count += mBuckets.get(i);
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) return Math.min(upperBoundOf(i), mMax.get());
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @param micros a duration in microseconds between 0 and the max value
+     * @return the index of the bucket of the duration
+     */
+    static int indexOf(long micros) {
+        if (micros < LINEAR_COUNT) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR_COUNT + (exponent - SUB_BITS - 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Getter
+     *
+     * @param index the index of a bucket
+     * @return the longest duration in microseconds of the bucket
+     */
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_COUNT) return index;
+        int exponent = (index - LINEAR_COUNT) / SUB_COUNT + SUB_BITS + 1;
+        int sub = (index - LINEAR_COUNT) % SUB_COUNT;
+        int shift = exponent - SUB_BITS;
+        return ((long) (SUB_COUNT + sub) << shift) + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.boris.colornamer.pipeline;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread
+ *
+ * @param <T> the type of the elements
+ */
+public class SpscQueue<T> {
+
+    private final Object[] mBuffer;
+    private final int mMask;
+
+    //next index to read, only written by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+    //next index to write, only written by the producer
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param capacity the max number of elements, rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.mBuffer = new Object[size];
+        this.mMask = size - 1;
+    }
+
+    /**
+     * Adds an element at the end of the queue, must only be called by the producer thread
+     *
+     * @param element the element to add
+     * @return false if the queue is full, the element is then not added
+     */
+    public boolean offer(@NotNull T element) {
+        long tail = mTail.get();
+        if (tail - mHead.get() == mBuffer.length) return false;
+        mBuffer[(int) tail & mMask] = element;
+        //publish the element to the consumer
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the element at the head of the queue, must only be called by the consumer thread
+     *
+     * @return the removed element or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long head = mHead.get();
+        if (head == mTail.get()) return null;
+        int index = (int) head & mMask;
+        T element = (T) mBuffer[index];
+        mBuffer[index] = null;
+        //give the slot back to the producer
+        mHead.lazySet(head + 1);
+        return element;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of elements in the queue, only an estimate if called concurrently
+     */
+    public int size() {
+        long head = mHead.get();
+        return (int) (mTail.get() - head);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the max number of elements of the queue
+     */
+    public int capacity() {
+        return mBuffer.length;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.boris.colornamer.pipeline;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free hand-off of buffers between one producer thread and one consumer thread.
+ * The producer writes in the back buffer while the consumer reads the front buffer,
+ * the third buffer holds the last published one. They are exchanged with a single
+ * atomic operation, so neither thread waits for the other and the consumer never
+ * reads a buffer being written.
+ *
+ * @param <T> the type of the buffers
+ */
+public class TripleBuffer<T> {
+
+    //set in the state when the middle buffer has not been read yet
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] mBuffers;
+    //index of the middle buffer and fresh flag
+    private final AtomicInteger mState = new AtomicInteger(1);
+    //only used by the producer thread
+    private int mBack = 0;
+    //only used by the consumer thread
+    private int mFront = 2;
+
+    /**
+     * Constructor
+     *
+     * @param first  a buffer
+     * @param second another buffer
+     * @param third  a last buffer, initially given to the consumer
+     */
+    public TripleBuffer(@NotNull T first, @NotNull T second, @NotNull T third) {
+        this.mBuffers = new Object[]{first, second, third};
+    }
+
+    /**
+     * Getter, must only be called by the producer thread
+     *
+     * @return the buffer to write in before calling {@link #publish()}
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mBuffers[mBack];
+    }
+
+    /**
+     * Makes the back buffer available to the consumer, must only be called by the producer thread.
+     * If the previously published buffer was not read, it is replaced.
+     */
+    public void publish() {
+        mBack = mState.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Getter, must only be called by the consumer thread. The returned buffer
+     * is not written by the producer until the next call of this method.
+     *
+     * @return the last published buffer
+     */
+    @SuppressWarnings("unchecked")
+    public T acquireFront() {
+        if ((mState.get() & FRESH) != 0) {
+            mFront = mState.getAndSet(mFront) & INDEX_MASK;
+        }
+        return (T) mBuffers[mFront];
+    }
+
+}
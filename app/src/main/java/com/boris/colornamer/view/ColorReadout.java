@@ -0,0 +1,132 @@
+package com.boris.colornamer.view;
+
+import android.content.Context;
+import android.widget.TextView;
+
+import com.boris.colornamer.R;
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.ColorNames;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Texts of the color name and of the RGB and HSV values, updated without creating any String.
+ * The formats of the locale and the color names are read once, then each update is written
+ * in the char buffers of the texts, and a TextView is only set again if its text changed.
+ * Must only be used by the UI thread.
+ */
+public class ColorReadout {
+
+    //placeholders of the numbers in the formats, the numbers must appear in this order in the translations
+    private static final String[] PLACEHOLDERS = new String[]{"\u0001", "\u0002", "\u0003"};
+    //separator of the dominant colors, such as RED 60%  -  WHITE 38%
+    private static final String NAME_SEPARATOR = "  -  ";
+
+    private final TextView mNameView;
+    private final TextView mRgbView;
+    private final TextView mHsvView;
+    private final ReadoutText mName = new ReadoutText();
+    private final ReadoutText mRgb = new ReadoutText();
+    private final ReadoutText mHsv = new ReadoutText();
+
+    //texts around the numbers and color names in the locale of the context
+    private String[] mRgbFormat;
+    private String[] mHsvFormat;
+    private final String[] mNames = new String[ColorClassifier.COUNT];
+
+    /**
+     * Constructor
+     *
+     * @param nameView the TextView of the color name
+     * @param rgbView  the TextView of the RGB values
+     * @param hsvView  the TextView of the HSV values
+     * @param context  the context of the formats and of the color names
+     */
+    public ColorReadout(@NotNull TextView nameView, @NotNull TextView rgbView, @NotNull TextView hsvView, @NotNull Context context) {
+        this.mNameView = nameView;
+        this.mRgbView = rgbView;
+        this.mHsvView = hsvView;
+        setContext(context);
+    }
+
+    /**
+     * Setter, the texts are written again at the next update
+     *
+     * @param context the context of the formats and of the color names
+     */
+    public void setContext(@NotNull Context context) {
+        mRgbFormat = split(context.getString(R.string.rgb_color, (Object[]) PLACEHOLDERS));
+        mHsvFormat = split(context.getString(R.string.hsv_color, (Object[]) PLACEHOLDERS));
+        for (byte id = 0; id < ColorClassifier.COUNT; id++) mNames[id] = ColorNames.getName(context, id);
+        mName.invalidate();
+        mRgb.invalidate();
+        mHsv.invalidate();
+    }
+
+    /**
+     * Displays the values of a color and its names
+     *
+     * @param r         the red value between 0 and 255
+     * @param g         the green value between 0 and 255
+     * @param b         the blue value between 0 and 255
+     * @param h         the hue between 0 and 360
+     * @param s         the saturation in percent
+     * @param v         the value in percent
+     * @param nameIds   the ids of the color names
+     * @param percents  the part of the region covered by each color in percent, or null to only show the first name
+     * @param nameCount the number of names to display
+     */
+    public void show(int r, int g, int b, int h, int s, int v, @NotNull byte[] nameIds, @Nullable int[] percents, int nameCount) {
+        write(mRgb, mRgbFormat, r, g, b);
+        if (mRgb.end()) mRgbView.setText(mRgb.getChars(), 0, mRgb.length());
+        write(mHsv, mHsvFormat, h, s, v);
+        if (mHsv.end()) mHsvView.setText(mHsv.getChars(), 0, mHsv.length());
+
+        mName.begin();
+        if (percents == null) {
+            mName.append(mNames[nameIds[0]]);
+        } else {
+            for (int i = 0; i < nameCount; i++) {
+                if (i > 0) mName.append(NAME_SEPARATOR);
+                mName.append(mNames[nameIds[i]]);
+                mName.append(" ");
+                mName.appendNumber(percents[i], 0);
+                mName.append("%");
+            }
+        }
+        if (mName.end()) mNameView.setText(mName.getChars(), 0, mName.length());
+    }
+
+    private static void write(@NotNull ReadoutText text, @NotNull String[] format, int first, int second, int third) {
+        text.begin();
+        text.append(format[0]);
+        text.appendNumber(first, 3);
+        text.append(format[1]);
+        text.appendNumber(second, 3);
+        text.append(format[2]);
+        text.appendNumber(third, 3);
+        text.append(format[3]);
+    }
+
+    /**
+     * Splits a formatted text around its placeholders
+     *
+     * @param text the text formatted with the placeholders
+     * @return the texts before, between and after the placeholders
+     */
+    @NotNull
+    private static String[] split(@NotNull String text) {
+        String[] segments = new String[PLACEHOLDERS.length + 1];
+        int start = 0;
+        for (int i = 0; i < PLACEHOLDERS.length; i++) {
+            int end = text.indexOf(PLACEHOLDERS[i], start);
+            if (end < 0) throw new IllegalArgumentException("Numbers out of order in the format " + text);
+            segments[i] = text.substring(start, end);
+            start = end + PLACEHOLDERS[i].length();
+        }
+        segments[PLACEHOLDERS.length] = text.substring(start);
+        return segments;
+    }
+
+}
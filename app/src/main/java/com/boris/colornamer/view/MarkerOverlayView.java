@@ -0,0 +1,253 @@
+package com.boris.colornamer.view;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Transparent view drawn over the camera preview, it shows the sampled area of the main probe
+ * and a swatch of its mean color, so that no pixel of the camera image has to be rewritten.
+ * The other probes are drawn as small markers of their colors, and the probes whose patch
+ * is not uniform are circled.
+ * In the dominant colors mode it also outlines the clustered region and splits the swatch
+ * between the dominant colors, and in the color map mode it draws the map under the marker.
+ */
+public class MarkerOverlayView extends View {
+
+    //size of the swatch relatively to the width of the view
+    private static final float SWATCH_RATIO = 0.12f;
+    //color of the circle around the probes whose patch is not uniform
+    private static final int NON_UNIFORM_COLOR = 0xffffd600;
+
+    private final Paint mPaint = new Paint();
+    private final Paint mStrokePaint = new Paint();
+    private int mColor = Color.BLACK;
+    //centers of the probes relatively to the size of the view, the first one is the main probe
+    //the arrays are only replaced when they are too small for the values given to the setters
+    private float[] mProbeCenters = new float[]{0.5f, 0.5f};
+    private int[] mProbeColors = new int[1];
+    private boolean[] mProbeUniform = new boolean[]{true};
+    private int mProbeCount = 1;
+    //side of the patches relatively to the width of the view
+    private float mPatchSize = 7f / 500f;
+    //side of the clustered region relatively to the width of the view, 0 when it is not shown
+    private float mRegionSize;
+    //dominant colors sorted by coverage, null when the mean color is shown
+    private int[] mDominantColors = new int[0];
+    private float[] mCoverages = new float[0];
+    private int mDominantCount;
+    //color name of every pixel drawn over the whole view, null when it is not shown
+    private Bitmap mColorMap;
+    private final RectF mColorMapRect = new RectF();
+
+    /**
+     * Constructor
+     *
+     * @param context the context of the view
+     */
+    public MarkerOverlayView(@NonNull Context context) {
+        super(context);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * Constructor used when inflating the view from a layout
+     *
+     * @param context the context of the view
+     * @param attrs   the attributes of the view in the layout
+     */
+    public MarkerOverlayView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * Setter, must be called from the UI thread
+     *
+     * @param rgb the mean color of the sampled area packed as 0xRRGGBB
+     */
+    public void setColor(int rgb) {
+        int color = 0xff000000 | rgb;
+        if (color == mColor) return;
+        mColor = color;
+        invalidate();
+    }
+
+    /**
+     * Setter, must be called from the UI thread
+     *
+     * @param centers   the centers of the probes relatively to the size of the view as x, y pairs, the first one is the main probe
+     * @param colors    the mean colors of the probes packed as 0xRRGGBB
+     * @param uniform   true for the probes whose patch is uniform
+     * @param count     the number of probes, at least 1
+     * @param patchSize the side of the patches relatively to the width of the view
+     */
+    public void setProbes(@NonNull float[] centers, @NonNull int[] colors, @NonNull boolean[] uniform, int count, float patchSize) {
+        if (count == mProbeCount && patchSize == mPatchSize && equals(centers, mProbeCenters, 2 * count)
+                && equals(colors, mProbeColors, count) && equals(uniform, mProbeUniform, count)) return;
+        if (mProbeColors.length < count) {
+            mProbeCenters = new float[2 * count];
+            mProbeColors = new int[count];
+            mProbeUniform = new boolean[count];
+        }
+        System.arraycopy(centers, 0, mProbeCenters, 0, 2 * count);
+        System.arraycopy(colors, 0, mProbeColors, 0, count);
+        System.arraycopy(uniform, 0, mProbeUniform, 0, count);
+        mProbeCount = count;
+        mPatchSize = patchSize;
+        invalidate();
+    }
+
+    /**
+     * Setter, must be called from the UI thread
+     *
+     * @param regionSize the side of the clustered region relatively to the width of the view, 0 to hide it
+     */
+    public void setRegionSize(float regionSize) {
+        if (regionSize == mRegionSize) return;
+        mRegionSize = regionSize;
+        invalidate();
+    }
+
+    /**
+     * Setter, must be called from the UI thread
+     *
+     * @param colors    the dominant colors packed as 0xRRGGBB sorted by coverage
+     * @param coverages the part of the region covered by each dominant color
+     * @param count     the number of dominant colors, 0 to show the mean color
+     */
+    public void setDominantColors(@NonNull int[] colors, @NonNull float[] coverages, int count) {
+        if (count == mDominantCount && equals(colors, mDominantColors, count) && equals(coverages, mCoverages, count)) return;
+        if (mDominantColors.length < count) {
+            mDominantColors = new int[count];
+            mCoverages = new float[count];
+        }
+        System.arraycopy(colors, 0, mDominantColors, 0, count);
+        System.arraycopy(coverages, 0, mCoverages, 0, count);
+        mDominantCount = count;
+        invalidate();
+    }
+
+    /**
+     * Shows the mean color instead of the dominant colors, must be called from the UI thread
+     */
+    public void clearDominantColors() {
+        setDominantColors(mDominantColors, mCoverages, 0);
+    }
+
+    /**
+     * Setter, must be called from the UI thread
+     *
+     * @param colorMap the translucent map of the color names of the image, or null to hide it
+     */
+    public void setColorMap(@Nullable Bitmap colorMap) {
+        if (colorMap == null && mColorMap == null) return;
+        mColorMap = colorMap;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        float cx = getWidth() / 2f;
+        float cy = getHeight() / 2f;
+        float cell = getWidth() * mPatchSize / 7f;
+
+        //the map covers the crop rect displayed by the preview, which fills the view,
+        //its pixels are scaled without filtering to keep the outlines sharp
+        if (mColorMap != null) {
+            mColorMapRect.set(0, 0, getWidth(), getHeight());
+            canvas.drawBitmap(mColorMap, null, mColorMapRect, null);
+        }
+
+        //markers of the other probes, smaller than the main one
+        for (int p = 1; p < mProbeCount; p++) {
+            float x = getWidth() * mProbeCenters[2 * p];
+            float y = getHeight() * mProbeCenters[2 * p + 1];
+            drawSquare(canvas, x, y, 2.5f * cell, Color.BLACK);
+            drawSquare(canvas, x, y, 1.5f * cell, 0xff000000 | mProbeColors[p]);
+            if (!mProbeUniform[p]) drawCircle(canvas, x, y, 5f * cell);
+        }
+
+        //marker of the main probe with the same black and white contours as the rendered preview
+        float mx = getWidth() * mProbeCenters[0];
+        float my = getHeight() * mProbeCenters[1];
+        drawSquare(canvas, mx, my, 3.5f * cell, Color.BLACK);
+        drawSquare(canvas, mx, my, 2.5f * cell, Color.WHITE);
+        drawSquare(canvas, mx, my, 1.5f * cell, mColor);
+        if (!mProbeUniform[0]) drawCircle(canvas, mx, my, 6f * cell);
+
+        //outline of the clustered region, black then white to be seen on any color
+        if (mRegionSize > 0) {
+            float half = getWidth() * mRegionSize / 2f;
+            mStrokePaint.setStrokeWidth(4);
+            mStrokePaint.setColor(Color.BLACK);
+            canvas.drawRect(cx - half, cy - half, cx + half, cy + half, mStrokePaint);
+            mStrokePaint.setStrokeWidth(2);
+            mStrokePaint.setColor(Color.WHITE);
+            canvas.drawRect(cx - half, cy - half, cx + half, cy + half, mStrokePaint);
+        }
+
+        //swatch of the mean color in the bottom corner
+        float swatch = getWidth() * SWATCH_RATIO;
+        float margin = swatch / 4f;
+        float left = getWidth() - margin - swatch;
+        float top = getHeight() - margin - swatch;
+        mPaint.setColor(Color.WHITE);
+        canvas.drawRect(left - 2, top - 2, left + swatch + 2, top + swatch + 2, mPaint);
+        if (mDominantCount == 0) {
+            mPaint.setColor(mColor);
+            canvas.drawRect(left, top, left + swatch, top + swatch, mPaint);
+            return;
+        }
+
+        //one band per dominant color, as high as its coverage
+        float total = 0;
+        for (int i = 0; i < mDominantCount; i++) total += mCoverages[i];
+        float bandTop = top;
+        for (int i = 0; i < mDominantCount; i++) {
+            float bandBottom = i == mDominantCount - 1 ? top + swatch : bandTop + swatch * mCoverages[i] / total;
+            mPaint.setColor(0xff000000 | mDominantColors[i]);
+            canvas.drawRect(left, bandTop, left + swatch, bandBottom, mPaint);
+            bandTop = bandBottom;
+        }
+    }
+
+    private static boolean equals(@NonNull int[] a, @NonNull int[] b, int count) {
+        if (b.length < count) return false;
+        for (int i = 0; i < count; i++) if (a[i] != b[i]) return false;
+        return true;
+    }
+
+    private static boolean equals(@NonNull float[] a, @NonNull float[] b, int count) {
+        if (b.length < count) return false;
+        for (int i = 0; i < count; i++) if (a[i] != b[i]) return false;
+        return true;
+    }
+
+    private static boolean equals(@NonNull boolean[] a, @NonNull boolean[] b, int count) {
+        if (b.length < count) return false;
+        for (int i = 0; i < count; i++) if (a[i] != b[i]) return false;
+        return true;
+    }
+
+    private void drawCircle(@NonNull Canvas canvas, float cx, float cy, float radius) {
+        mStrokePaint.setStrokeWidth(3);
+        mStrokePaint.setColor(NON_UNIFORM_COLOR);
+        canvas.drawCircle(cx, cy, radius, mStrokePaint);
+    }
+
+    private void drawSquare(@NonNull Canvas canvas, float cx, float cy, float halfSize, int color) {
+        mPaint.setColor(color);
+        canvas.drawRect(cx - halfSize, cy - halfSize, cx + halfSize, cy + halfSize, mPaint);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.boris.colornamer.view;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Text of a readout written in reusable char buffers, so that updating it creates no String.
+ * Two buffers are used in turn: the text is written in the one that is not displayed, then
+ * kept only if it differs from the displayed one, since a TextView displaying a char array
+ * must not see it change. An instance must only be used by one thread.
+ */
+public class ReadoutText {
+
+    private char[] mShown = new char[32];
+    private int mShownLength;
+    private char[] mNext = new char[32];
+    private int mNextLength;
+
+    /**
+     * Starts writing a new text
+     */
+    public void begin() {
+        mNextLength = 0;
+    }
+
+    /**
+     * Appends characters to the new text
+     *
+     * @param text the characters to append
+     */
+    public void append(@NotNull CharSequence text) {
+        ensureCapacity(mNextLength + text.length());
+        for (int i = 0; i < text.length(); i++) mNext[mNextLength++] = text.charAt(i);
+    }
+
+    /**
+     * Appends a positive number to the new text
+     *
+     * @param value  the number to append
+     * @param digits the min number of digits, the number is padded with zeros
+     */
+    public void appendNumber(int value, int digits) {
+        int length = 1;
+        for (int v = value / 10; v > 0; v /= 10) length++;
+        length = Math.max(length, digits);
+        ensureCapacity(mNextLength + length);
+        for (int i = mNextLength + length - 1; i >= mNextLength; i--) {
+            mNext[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        mNextLength += length;
+    }
+
+    /**
+     * Ends the new text, it replaces the displayed one if they differ
+     *
+     * @return true if the text changed and must be displayed again
+     */
+    public boolean end() {
+        if (mNextLength == mShownLength) {
+            boolean same = true;
+            for (int i = 0; i < mNextLength && same; i++) same = mNext[i] == mShown[i];
+            if (same) return false;
+        }
+        char[] chars = mShown;
+        mShown = mNext;
+        mShownLength = mNextLength;
+        mNext = chars;
+        return true;
+    }
+
+    /**
+     * Forgets the displayed text, so that the next one is displayed even if it is the same
+     */
+    public void invalidate() {
+        mShownLength = -1;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the characters of the displayed text, they do not change until a call to {@link #end()} returns true
+     */
+    @NotNull
+    public char[] getChars() {
+        return mShown;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of characters of the displayed text
+     */
+    public int length() {
+        return Math.max(0, mShownLength);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mNext.length) return;
+        char[] chars = new char[Math.max(capacity, 2 * mNext.length)];
+        System.arraycopy(mNext, 0, chars, 0, mNextLength);
+        mNext = chars;
+    }
+
+}
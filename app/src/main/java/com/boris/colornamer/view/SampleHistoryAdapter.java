@@ -0,0 +1,79 @@
+package com.boris.colornamer.view;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import com.boris.colornamer.R;
+import com.boris.colornamer.model.ColorNames;
+import com.boris.colornamer.model.ColorSample;
+import com.boris.colornamer.model.SampleLogReader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * Rows of the color history, from the newest reading to the oldest one. Only the displayed
+ * readings are read from the mapped log, and their names are resolved in the locale of the context.
+ * Must only be used by the UI thread.
+ */
+public class SampleHistoryAdapter extends BaseAdapter {
+
+    private final SampleLogReader mReader;
+    private final Context mContext;
+    private final String[] mNames;
+    private final DateFormat mDateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+    private final ColorSample mSample = new ColorSample();
+    private final Date mDate = new Date();
+
+    /**
+     * Constructor
+     *
+     * @param reader  the readings of the history
+     * @param context the context of the color names and of the RGB format
+     */
+    public SampleHistoryAdapter(@NotNull SampleLogReader reader, @NotNull Context context) {
+        this.mReader = reader;
+        this.mContext = context;
+        this.mNames = ColorNames.getNames(context);
+    }
+
+    @Override
+    public int getCount() {
+        return mReader.getCount();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        ColorSample sample = new ColorSample();
+        mReader.read(getCount() - 1 - position, sample);
+        return sample;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) convertView;
+        if (view == null) {
+            view = new TextView(parent.getContext());
+            view.setTextColor(Color.WHITE);
+            view.setPadding(16, 8, 16, 8);
+        }
+        mReader.read(getCount() - 1 - position, mSample);
+        mDate.setTime(mSample.time);
+        int rgb = mSample.rgb;
+        view.setText(mDateFormat.format(mDate) + "  " + mNames[mSample.nameId] + "\n"
+                + mContext.getString(R.string.rgb_color, rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff));
+        return view;
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.boris.colornamer.view;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.boris.colornamer.imageutils.StillImage;
+import com.boris.colornamer.imageutils.TileLayout;
+
+/**
+ * View of a photo opened from the gallery, it can be panned and zoomed and a tap samples the tapped point.
+ * The overview of the photo is drawn first, then the visible tiles of the level of the zoom over it,
+ * so the view is never empty while the tiles are decoded.
+ */
+public class StillImageView extends View {
+
+    /**
+     * Receives the points tapped on the photo
+     */
+    public interface OnSampleListener {
+        /**
+         * Called from the UI thread when a point of the photo is tapped
+         *
+         * @param x the horizontal position of the point in pixels of the photo
+         * @param y the vertical position of the point in pixels of the photo
+         */
+        void onSample(int x, int y);
+    }
+
+    //max zoom in screen pixels per pixel of the photo
+    private static final float MAX_SCALE = 4f;
+    //radius of the marker of the tapped point relatively to the width of the view
+    private static final float MARKER_RATIO = 0.02f;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mDst = new RectF();
+    private final ScaleGestureDetector mScaleDetector;
+    private final int mTouchSlop;
+    //redraws the view once a tile is decoded, called from the decoder thread
+    private final Runnable mInvalidate = this::postInvalidateOnAnimation;
+    private StillImage mImage;
+    private OnSampleListener mListener;
+    //screen pixels per pixel of the photo, and position of the top left corner of the photo in the view
+    private float mScale;
+    private float mMinScale;
+    private float mOffsetX;
+    private float mOffsetY;
+    //last tapped point in pixels of the photo, negative when there is none
+    private float mMarkerX = -1;
+    private float mMarkerY = -1;
+    //touch tracking, a gesture moving less than the touch slop is a tap
+    private float mLastX;
+    private float mLastY;
+    private float mDownX;
+    private float mDownY;
+    private boolean mDragged;
+
+    /**
+     * Constructor
+     *
+     * @param context the context of the view
+     */
+    public StillImageView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor used when inflating the view from a layout
+     *
+     * @param context the context of the view
+     * @param attrs   the attributes of the view in the layout
+     */
+    public StillImageView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                zoom(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Setter, must be called from the UI thread, the photo is fitted in the view
+     *
+     * @param image the photo to display, or null to display nothing
+     */
+    public void setImage(@Nullable StillImage image) {
+        mImage = image;
+        mMarkerX = -1;
+        mMarkerY = -1;
+        fit();
+        invalidate();
+    }
+
+    /**
+     * Setter
+     *
+     * @param listener the listener of the tapped points
+     */
+    public void setOnSampleListener(@Nullable OnSampleListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        fit();
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(@NonNull MotionEvent event) {
+        if (mImage == null) return false;
+        mScaleDetector.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = mLastX = event.getX();
+                mDownY = mLastY = event.getY();
+                mDragged = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (Math.abs(event.getX() - mDownX) > mTouchSlop || Math.abs(event.getY() - mDownY) > mTouchSlop) mDragged = true;
+                //the photo is only panned with one finger, two fingers zoom around their focus
+                if (mDragged && event.getPointerCount() == 1 && !mScaleDetector.isInProgress()) {
+                    mOffsetX += event.getX() - mLastX;
+                    mOffsetY += event.getY() - mLastY;
+                    clampOffsets();
+                    invalidate();
+                }
+                mLastX = event.getX();
+                mLastY = event.getY();
+                break;
+            case MotionEvent.ACTION_UP:
+                if (!mDragged) {
+                    tap(event.getX(), event.getY());
+                    performClick();
+                }
+                break;
+            default:
+                //a second finger is a zoom, not a tap
+                if (event.getPointerCount() > 1) mDragged = true;
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        StillImage image = mImage;
+        if (image == null) return;
+
+        //the overview covers the whole photo, it is scaled up until the tiles are decoded
+        setDst(0, 0, image.getWidth(), image.getHeight());
+        canvas.drawBitmap(image.getOverview(), null, mDst, mPaint);
+
+        //only the tiles of the visible part are drawn, at the coarsest level sharp enough for the zoom
+        int sampleSize = TileLayout.getSampleSize(mScale);
+        if (sampleSize < image.getOverviewSampleSize()) {
+            int span = TileLayout.getTileSpan(sampleSize);
+            int left = Math.max(0, (int) (-mOffsetX / mScale));
+            int top = Math.max(0, (int) (-mOffsetY / mScale));
+            int right = Math.min(image.getWidth(), (int) Math.ceil((getWidth() - mOffsetX) / mScale));
+            int bottom = Math.min(image.getHeight(), (int) Math.ceil((getHeight() - mOffsetY) / mScale));
+            for (int row = top / span; row * span < bottom; row++) {
+                for (int column = left / span; column * span < right; column++) {
+                    Bitmap tile = image.getTile(sampleSize, column, row, mInvalidate);
+                    if (tile == null) continue;
+                    setDst(column * span, row * span, Math.min(image.getWidth(), (column + 1) * span), Math.min(image.getHeight(), (row + 1) * span));
+                    canvas.drawBitmap(tile, null, mDst, mPaint);
+                }
+            }
+        }
+
+        //marker of the tapped point, black then white to be seen on any color
+        if (mMarkerX >= 0) {
+            float x = mOffsetX + mMarkerX * mScale;
+            float y = mOffsetY + mMarkerY * mScale;
+            float radius = getWidth() * MARKER_RATIO;
+            mStrokePaint.setStrokeWidth(4);
+            mStrokePaint.setColor(Color.BLACK);
+            canvas.drawCircle(x, y, radius, mStrokePaint);
+            mStrokePaint.setStrokeWidth(2);
+            mStrokePaint.setColor(Color.WHITE);
+            canvas.drawCircle(x, y, radius, mStrokePaint);
+        }
+    }
+
+    /**
+     * Reports a tap inside the photo to the listener and marks the tapped point
+     */
+    private void tap(float viewX, float viewY) {
+        StillImage image = mImage;
+        float x = (viewX - mOffsetX) / mScale;
+        float y = (viewY - mOffsetY) / mScale;
+        if (x < 0 || y < 0 || x >= image.getWidth() || y >= image.getHeight()) return;
+        mMarkerX = x;
+        mMarkerY = y;
+        invalidate();
+        if (mListener != null) mListener.onSample((int) x, (int) y);
+    }
+
+    /**
+     * Scales the photo around a fixed point of the view, the photo is never smaller than the view
+     */
+    private void zoom(float factor, float focusX, float focusY) {
+        float scale = Math.max(mMinScale, Math.min(MAX_SCALE, mScale * factor));
+        mOffsetX = focusX - (focusX - mOffsetX) * scale / mScale;
+        mOffsetY = focusY - (focusY - mOffsetY) * scale / mScale;
+        mScale = scale;
+        clampOffsets();
+        invalidate();
+    }
+
+    /**
+     * Fits the whole photo in the view
+     */
+    private void fit() {
+        if (mImage == null || getWidth() == 0 || getHeight() == 0) return;
+        mMinScale = Math.min((float) getWidth() / mImage.getWidth(), (float) getHeight() / mImage.getHeight());
+        mScale = mMinScale;
+        mOffsetX = 0;
+        mOffsetY = 0;
+        clampOffsets();
+    }
+
+    /**
+     * Keeps the photo over the view, centered along the sides where it is smaller than the view
+     */
+    private void clampOffsets() {
+        float width = mImage.getWidth() * mScale;
+        float height = mImage.getHeight() * mScale;
+        mOffsetX = width <= getWidth() ? (getWidth() - width) / 2 : Math.max(getWidth() - width, Math.min(0, mOffsetX));
+        mOffsetY = height <= getHeight() ? (getHeight() - height) / 2 : Math.max(getHeight() - height, Math.min(0, mOffsetY));
+    }
+
+    /**
+     * Sets the destination rectangle of a region of the photo in the view
+     */
+    private void setDst(int left, int top, int right, int bottom) {
+        mDst.set(mOffsetX + left * mScale, mOffsetY + top * mScale, mOffsetX + right * mScale, mOffsetY + bottom * mScale);
+    }
+
+}
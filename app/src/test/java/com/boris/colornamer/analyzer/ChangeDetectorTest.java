@@ -0,0 +1,69 @@
+package com.boris.colornamer.analyzer;
+
+import androidx.camera.core.ImageProxy;
+
+import com.boris.colornamer.imageutils.YuvPlane;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ChangeDetectorTest {
+
+    private static final int W = 320;
+    private static final int H = 240;
+
+    private static ImageProxy.PlaneProxy plane(int offset) {
+        ByteBuffer buffer = ByteBuffer.allocate(W * H);
+        for (int i = 0; i < W * H; i++) buffer.put(i, (byte) ((i % 200) + offset));
+        return new YuvPlane(buffer, W, 1);
+    }
+
+    @Test
+    public void stillImages_areSkipped() {
+        ChangeDetector detector = new ChangeDetector(16, 3);
+        assertTrue(detector.hasChanged(plane(0), W, H, 0x808080));
+        assertFalse(detector.hasChanged(plane(0), W, H, 0x808080));
+        //noise below the threshold
+        assertFalse(detector.hasChanged(plane(2), W, H, 0x828181));
+        assertEquals(1, detector.getProcessedCount());
+        assertEquals(2, detector.getSkippedCount());
+    }
+
+    @Test
+    public void lumaOrColorChanges_areProcessed() {
+        ChangeDetector detector = new ChangeDetector(16, 3);
+        assertTrue(detector.hasChanged(plane(0), W, H, 0x808080));
+        assertTrue(detector.hasChanged(plane(20), W, H, 0x808080));
+        assertTrue(detector.hasChanged(plane(20), W, H, 0x808090));
+        assertFalse(detector.hasChanged(plane(20), W, H, 0x808090));
+        assertEquals(3, detector.getProcessedCount());
+    }
+
+    @Test
+    public void resetAndNegativeThreshold_forceProcessing() {
+        ChangeDetector detector = new ChangeDetector(16, 3);
+        assertTrue(detector.hasChanged(plane(0), W, H, 0));
+        detector.reset();
+        assertTrue(detector.hasChanged(plane(0), W, H, 0));
+        detector.setThreshold(-1);
+        assertTrue(detector.hasChanged(plane(0), W, H, 0));
+        assertEquals(0, detector.getSkippedCount());
+    }
+
+    @Test
+    public void changesOutsideTheArea_areSkipped() {
+        ChangeDetector detector = new ChangeDetector(16, 3);
+        ImageProxy.PlaneProxy plane = plane(0);
+        assertTrue(detector.hasChanged(plane, 40, 0, H, H, 0x808080));
+        //the left band of the image is not displayed
+        for (int row = 0; row < H; row++) {
+            for (int column = 0; column < 40; column++) plane.getBuffer().put(row * W + column, (byte) 255);
+        }
+        assertFalse(detector.hasChanged(plane, 40, 0, H, H, 0x808080));
+        assertTrue(detector.hasChanged(plane, W, H, 0x808080));
+    }
+
+}
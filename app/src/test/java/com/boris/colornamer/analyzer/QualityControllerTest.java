@@ -0,0 +1,80 @@
+package com.boris.colornamer.analyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QualityControllerTest {
+
+    private static final long BUDGET = 33_000_000L;
+
+    @Test
+    public void slowFrames_lowerTheQualityOneLevelAtATime() {
+        QualityController controller = new QualityController(BUDGET);
+        List<Integer> resolutions = new ArrayList<>();
+        controller.setListener(level -> resolutions.add(level.resolution));
+
+        //a few slow frames are not enough
+        for (int i = 0; i < 10; i++) controller.onFrameProcessed(3 * BUDGET);
+        assertEquals(QualityController.DEFAULT_LEVEL, controller.getLevelIndex());
+
+        for (int i = 0; i < 20; i++) controller.onFrameProcessed(3 * BUDGET);
+        //the rate is lowered first, the resolution is kept
+        assertEquals(QualityController.DEFAULT_LEVEL - 1, controller.getLevelIndex());
+        assertTrue(resolutions.isEmpty());
+
+        for (int i = 0; i < 30; i++) controller.onFrameProcessed(3 * BUDGET);
+        assertEquals(QualityController.DEFAULT_LEVEL - 2, controller.getLevelIndex());
+        assertEquals(1, resolutions.size());
+        assertEquals(controller.getLevel().resolution, (int) resolutions.get(0));
+
+        for (int i = 0; i < 1000; i++) controller.onFrameProcessed(3 * BUDGET);
+        assertEquals(0, controller.getLevelIndex());
+    }
+
+    @Test
+    public void fastFrames_raiseTheQualityUpToTheHighestLevel() {
+        QualityController controller = new QualityController(BUDGET);
+        for (int i = 0; i < 30; i++) controller.onFrameProcessed(BUDGET / 10);
+        assertEquals(QualityController.DEFAULT_LEVEL + 1, controller.getLevelIndex());
+        for (int i = 0; i < 1000; i++) controller.onFrameProcessed(BUDGET / 10);
+        assertEquals(QualityController.LEVELS.length - 1, controller.getLevelIndex());
+    }
+
+    @Test
+    public void framesCloseToTheBudget_keepTheQuality() {
+        QualityController controller = new QualityController(BUDGET);
+        //too slow to raise the resolution, fast enough to keep it
+        for (int i = 0; i < 1000; i++) controller.onFrameProcessed(BUDGET * 2 / 3);
+        assertEquals(QualityController.DEFAULT_LEVEL, controller.getLevelIndex());
+    }
+
+    @Test
+    public void costProportionalToPixels_settlesWithoutOscillating() {
+        QualityController controller = new QualityController(BUDGET);
+        //a device taking 60 ms for a 1000x1000 image
+        double nanosPerPixel = 60_000_000.0 / (1000 * 1000);
+        List<Integer> levels = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            QualityController.Level level = controller.getLevel();
+            controller.onFrameProcessed((long) (nanosPerPixel * level.resolution * level.resolution));
+            if (levels.isEmpty() || levels.get(levels.size() - 1) != controller.getLevelIndex()) {
+                levels.add(controller.getLevelIndex());
+            }
+        }
+        //720x720 takes 31 ms, then the level never changes again
+        assertEquals(1, controller.getLevelIndex());
+        assertEquals(3, levels.size());
+    }
+
+    @Test
+    public void droppedFrames_countAsSlowFrames() {
+        QualityController controller = new QualityController(BUDGET);
+        for (int i = 0; i < 30; i++) controller.onFrameDropped();
+        assertEquals(QualityController.DEFAULT_LEVEL - 1, controller.getLevelIndex());
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.boris.colornamer.analyzer;
+
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.ColorSample;
+import com.boris.colornamer.model.SampleLog;
+import com.boris.colornamer.model.SampleLogReader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ReadingConfirmerTest {
+
+    //camera images 33 ms apart
+    private static final long FRAME_NS = 33_000_000L;
+
+    private static File createDirectory() throws IOException {
+        File directory = Files.createTempDirectory("history").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    @Test
+    public void stillScene_isLoggedOnceFromTheSkippedImages() throws IOException {
+        File directory = createDirectory();
+        ReadingConfirmer confirmer = new ReadingConfirmer(ReadingConfirmer.DEFAULT_CONFIRMATION_NS);
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            //only the first image of the still scene is analyzed, the next ones are skipped as unchanged
+            confirmer.onPublished(log, 0, 0xc02020, 0, 83, 75, ColorClassifier.RED, 12f);
+            for (int i = 1; i < 60; i++) confirmer.onUnchanged(log, i * FRAME_NS);
+        }
+
+        SampleLogReader reader = SampleLogReader.open(directory);
+        assertEquals(1, reader.getCount());
+        ColorSample sample = new ColorSample();
+        reader.read(0, sample);
+        assertEquals(0xc02020, sample.rgb);
+        assertEquals(ColorClassifier.RED, sample.nameId);
+        assertEquals(83, sample.s);
+        assertEquals(12f, sample.variance, 0);
+    }
+
+    @Test
+    public void flickeringNames_areNotLogged() throws IOException {
+        File directory = createDirectory();
+        ReadingConfirmer confirmer = new ReadingConfirmer(ReadingConfirmer.DEFAULT_CONFIRMATION_NS);
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            //a pan over alternating colors, every image is analyzed
+            for (int i = 0; i < 60; i++) {
+                byte nameId = i % 2 == 0 ? ColorClassifier.RED : ColorClassifier.ORANGE;
+                confirmer.onPublished(log, i * FRAME_NS, 0xc02020, 0, 83, 75, nameId, 12f);
+            }
+        }
+        assertEquals(0, SampleLogReader.open(directory).getCount());
+    }
+
+    @Test
+    public void newName_isLoggedAgainOnceConfirmed() throws IOException {
+        File directory = createDirectory();
+        ReadingConfirmer confirmer = new ReadingConfirmer(ReadingConfirmer.DEFAULT_CONFIRMATION_NS);
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            long time = 0;
+            for (int i = 0; i < 30; i++, time += FRAME_NS) confirmer.onPublished(log, time, 0xc02020, 0, 83, 75, ColorClassifier.RED, 12f);
+            for (int i = 0; i < 30; i++, time += FRAME_NS) confirmer.onPublished(log, time, 0x20c020, 120, 83, 75, ColorClassifier.GREEN, 12f);
+            //the dominant colors mode is not logged, even for a still scene
+            confirmer.reset();
+            for (int i = 0; i < 30; i++, time += FRAME_NS) confirmer.onUnchanged(log, time);
+        }
+
+        SampleLogReader reader = SampleLogReader.open(directory);
+        assertEquals(2, reader.getCount());
+        ColorSample sample = new ColorSample();
+        reader.read(1, sample);
+        assertEquals(ColorClassifier.GREEN, sample.nameId);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.boris.colornamer.imageutils.YuvFixtures.*;
+import static org.junit.Assert.*;
+
+public class FrameReplayerTest {
+
+    private static final int W = 64;
+    private static final int H = 48;
+    private static final long FRAME_INTERVAL_NS = 20_000_000L;
+
+    private static File record(ImageProxy.PlaneProxy[] planes, int count) throws IOException {
+        File file = File.createTempFile("capture", ".yuv");
+        file.deleteOnExit();
+        try (CaptureWriter writer = new CaptureWriter(file, CaptureWriter.DEFAULT_BATCH_SIZE)) {
+            for (int i = 0; i < count; i++) {
+                writer.append(1_000_000_000L + i * FRAME_INTERVAL_NS, W, H, 0,
+                        planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                        planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride());
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void replay_givesTheRecordedImagesToTheAnalysis() throws IOException {
+        ImageProxy.PlaneProxy[] recorded = create(YuvConverter.LAYOUT_NV21, W, H, W + 16, W + 8);
+        FrameReplayer replayer = new FrameReplayer(CaptureReader.open(record(recorded, 3)));
+        long[] timestamps = new long[3];
+        int[] count = new int[1];
+        int replayed = replayer.replay((planes, width, height, rotationDegrees, timestamp) -> {
+            assertEquals(W, width);
+            assertEquals(H, height);
+            //the same pixels are read through the same strides
+            assertEquals(YuvSampler.meanRgb(recorded, 0, 0, W, H), YuvSampler.meanRgb(planes, 0, 0, W, H));
+            assertEquals(YuvSampler.meanRgb(recorded, 10, 6, 8, 8), YuvSampler.meanRgb(planes, 10, 6, 8, 8));
+            timestamps[count[0]++] = timestamp;
+        }, false);
+        assertEquals(3, replayed);
+        assertArrayEquals(new long[]{1_000_000_000L, 1_020_000_000L, 1_040_000_000L}, timestamps);
+    }
+
+    @Test
+    public void replay_keepsTheOriginalPaceInRealTime() throws IOException {
+        ImageProxy.PlaneProxy[] recorded = create(YuvConverter.LAYOUT_I420, W, H, W + 16, W / 2 + 8);
+        FrameReplayer replayer = new FrameReplayer(CaptureReader.open(record(recorded, 4)));
+        long start = System.nanoTime();
+        long[] delays = new long[4];
+        int[] count = new int[1];
+        replayer.replay((planes, width, height, rotationDegrees, timestamp) -> delays[count[0]++] = System.nanoTime() - start, true);
+        for (int i = 1; i < 4; i++) assertTrue("image " + i, delays[i] >= i * FRAME_INTERVAL_NS);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static com.boris.colornamer.imageutils.YuvFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the staging copy of the converter for the NV12, NV21 and I420 layouts, with and without padded strides
+ */
+public class YuvConverterTest {
+
+    private static final int W = 64;
+    private static final int H = 48;
+
+    /**
+     * Expected contiguous copy of a synthetic image, as read by OpenCV
+     */
+    private static byte[] expected(int layout) {
+        byte[] data = new byte[W * (H + H / 2)];
+        int idx = 0;
+        for (int i = 0; i < H; i++) for (int j = 0; j < W; j++) data[idx++] = (byte) lumaAt(i, j);
+        if (layout == YuvConverter.LAYOUT_I420) {
+            for (int i = 0; i < H / 2; i++) for (int j = 0; j < W / 2; j++) data[idx++] = (byte) uAt(i, j);
+            for (int i = 0; i < H / 2; i++) for (int j = 0; j < W / 2; j++) data[idx++] = (byte) vAt(i, j);
+        } else {
+            for (int i = 0; i < H / 2; i++) {
+                for (int j = 0; j < W / 2; j++) {
+                    int u = uAt(i, j);
+                    int v = vAt(i, j);
+                    data[idx++] = (byte) (layout == YuvConverter.LAYOUT_NV12 ? u : v);
+                    data[idx++] = (byte) (layout == YuvConverter.LAYOUT_NV12 ? v : u);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static void assertStaged(int layout, int yRowStride, int uvRowStride) {
+        ImageProxy.PlaneProxy[] planes = create(layout, W, H, yRowStride, uvRowStride);
+        int[] limits = new int[3];
+        for (int p = 0; p < 3; p++) limits[p] = planes[p].getBuffer().limit();
+
+        ByteBuffer staging = ByteBuffer.allocateDirect(W * (H + H / 2));
+        YuvConverter.stage(planes, W, H, layout, staging);
+
+        assertFalse(staging.hasRemaining());
+        byte[] actual = new byte[staging.capacity()];
+        staging.flip();
+        staging.get(actual);
+        assertArrayEquals(expected(layout), actual);
+
+        //the planes are left as they were given
+        for (int p = 0; p < 3; p++) {
+            assertEquals(0, planes[p].getBuffer().position());
+            assertEquals(limits[p], planes[p].getBuffer().limit());
+        }
+    }
+
+    @Test
+    public void stage_nv12() {
+        assertStaged(YuvConverter.LAYOUT_NV12, W, W);
+        assertStaged(YuvConverter.LAYOUT_NV12, W + 32, W + 32);
+    }
+
+    @Test
+    public void stage_nv21() {
+        assertStaged(YuvConverter.LAYOUT_NV21, W, W);
+        assertStaged(YuvConverter.LAYOUT_NV21, W + 32, W + 32);
+    }
+
+    @Test
+    public void stage_i420() {
+        assertStaged(YuvConverter.LAYOUT_I420, W, W / 2);
+        assertStaged(YuvConverter.LAYOUT_I420, W + 32, W / 2 + 16);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Synthetic YUV_420_888 images laid out like camera images, with padded rows
+ */
+class YuvFixtures {
+
+    static int lumaAt(int i, int j) {
+        return (i * 5 + j * 3) & 0xff;
+    }
+
+    static int uAt(int i, int j) {
+        return (64 + i * 7 + j) & 0xff;
+    }
+
+    static int vAt(int i, int j) {
+        return (200 - i - j * 5) & 0xff;
+    }
+
+    /**
+     * Creates the planes of a synthetic image, the interleaved chroma buffers end one byte
+     * before the end of their last row, as the buffers of the camera do
+     *
+     * @param layout      one of the layouts of {@link YuvConverter}
+     * @param w           the width of the image
+     * @param h           the height of the image
+     * @param yRowStride  the row stride of the Y plane
+     * @param uvRowStride the row stride of the chroma planes
+     */
+    static ImageProxy.PlaneProxy[] create(int layout, int w, int h, int yRowStride, int uvRowStride) {
+        ByteBuffer y = ByteBuffer.allocateDirect(yRowStride * (h - 1) + w);
+        for (int i = 0; i < h; i++) for (int j = 0; j < w; j++) y.put(i * yRowStride + j, (byte) lumaAt(i, j));
+
+        if (layout == YuvConverter.LAYOUT_I420) {
+            ByteBuffer u = ByteBuffer.allocateDirect(uvRowStride * (h / 2 - 1) + w / 2);
+            ByteBuffer v = ByteBuffer.allocateDirect(uvRowStride * (h / 2 - 1) + w / 2);
+            for (int i = 0; i < h / 2; i++) {
+                for (int j = 0; j < w / 2; j++) {
+                    u.put(i * uvRowStride + j, (byte) uAt(i, j));
+                    v.put(i * uvRowStride + j, (byte) vAt(i, j));
+                }
+            }
+            return new ImageProxy.PlaneProxy[]{new YuvPlane(y, yRowStride, 1), new YuvPlane(u, uvRowStride, 1), new YuvPlane(v, uvRowStride, 1)};
+        }
+
+        boolean vFirst = layout == YuvConverter.LAYOUT_NV21;
+        ByteBuffer interleaved = ByteBuffer.allocateDirect(uvRowStride * (h / 2 - 1) + w);
+        for (int i = 0; i < h / 2; i++) {
+            for (int j = 0; j < w / 2; j++) {
+                interleaved.put(i * uvRowStride + 2 * j + (vFirst ? 1 : 0), (byte) uAt(i, j));
+                interleaved.put(i * uvRowStride + 2 * j + (vFirst ? 0 : 1), (byte) vAt(i, j));
+            }
+        }
+        int length = interleaved.capacity() - 1;
+        interleaved.position(vFirst ? 1 : 0).limit((vFirst ? 1 : 0) + length);
+        ByteBuffer u = interleaved.slice();
+        interleaved.clear();
+        interleaved.position(vFirst ? 0 : 1).limit((vFirst ? 0 : 1) + length);
+        ByteBuffer v = interleaved.slice();
+        return new ImageProxy.PlaneProxy[]{new YuvPlane(y, yRowStride, 1), new YuvPlane(u, uvRowStride, 2), new YuvPlane(v, uvRowStride, 2)};
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.boris.colornamer.imageutils;
+
+import androidx.camera.core.ImageProxy;
+
+import org.junit.Test;
+
+import static com.boris.colornamer.imageutils.YuvFixtures.*;
+import static org.junit.Assert.*;
+
+public class YuvSamplerTest {
+
+    private static final int W = 64;
+    private static final int H = 48;
+
+    private static ImageProxy.PlaneProxy[] createPlanes(int layout) {
+        return create(layout, W, H, W + 16, (layout == YuvConverter.LAYOUT_I420 ? W / 2 : W) + 8);
+    }
+
+    private static int expectedMean(int left, int top, int width, int height) {
+        int r = 0, g = 0, b = 0;
+        for (int i = top; i < top + height; i++) {
+            for (int j = left; j < left + width; j++) {
+                int rgb = YuvSampler.yuvToRgb(lumaAt(i, j), uAt(i / 2, j / 2), vAt(i / 2, j / 2));
+                r += rgb >> 16;
+                g += (rgb >> 8) & 0xff;
+                b += rgb & 0xff;
+            }
+        }
+        int n = width * height;
+        return (r / n) << 16 | (g / n) << 8 | (b / n);
+    }
+
+    @Test
+    public void yuvToRgb_matchesOpenCvReferenceValues() {
+        assertEquals(0x000000, YuvSampler.yuvToRgb(16, 128, 128));
+        assertEquals(0xffffff, YuvSampler.yuvToRgb(235, 128, 128));
+        assertEquals(0x000000, YuvSampler.yuvToRgb(0, 128, 128));
+        //saturated red, green and blue
+        assertEquals(0xff, YuvSampler.yuvToRgb(82, 90, 240) >> 16);
+        assertEquals(0xff, (YuvSampler.yuvToRgb(145, 54, 34) >> 8) & 0xff);
+        assertEquals(0xff, YuvSampler.yuvToRgb(41, 240, 110) & 0xff);
+    }
+
+    @Test
+    public void meanRgb_readsAllLayoutsWithPaddedStrides() {
+        int expected = expectedMean(29, 21, 7, 7);
+        assertEquals(expected, YuvSampler.meanRgb(createPlanes(YuvConverter.LAYOUT_NV12), 29, 21, 7, 7));
+        assertEquals(expected, YuvSampler.meanRgb(createPlanes(YuvConverter.LAYOUT_NV21), 29, 21, 7, 7));
+        assertEquals(expected, YuvSampler.meanRgb(createPlanes(YuvConverter.LAYOUT_I420), 29, 21, 7, 7));
+    }
+
+    @Test
+    public void meanRgb_singlePixel() {
+        int expected = YuvSampler.yuvToRgb(lumaAt(5, 9), uAt(2, 4), vAt(2, 4));
+        assertEquals(expected, YuvSampler.meanRgb(createPlanes(YuvConverter.LAYOUT_I420), 9, 5, 1, 1));
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.boris.colornamer.pipeline;
+
+import androidx.camera.core.ImageProxy;
+
+import com.boris.colornamer.imageutils.YuvPlane;
+import com.boris.colornamer.imageutils.YuvSampler;
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.HsvConverter;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Headless harness driving synthetic frames through a pipeline shaped like the image analysis one
+ */
+public class FramePipelineTest {
+
+    private static final int SIZE = 500;
+    private static final int THICKNESS = 7;
+
+    /**
+     * Synthetic frame: a packed RGB image and the results of the stages
+     */
+    private static class Frame {
+        final int[] pixels = new int[SIZE * SIZE];
+        long index;
+        int meanColor;
+        byte nameId;
+        long checksum;
+    }
+
+    /**
+     * Runs the given number of frames and prints the throughput, the producer never waits for the pipeline
+     */
+    private static void run(FramePipeline<Frame> pipeline, int frameCount) throws InterruptedException {
+        pipeline.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < frameCount; i++) {
+            Frame frame = pipeline.acquire();
+            if (frame == null) {
+                //dropped like a camera image with STRATEGY_KEEP_ONLY_LATEST
+                Thread.sleep(0, 100_000);
+                continue;
+            }
+            //convert stage, run by the producer like the camera executor
+            frame.index = i;
+            for (int p = 0; p < frame.pixels.length; p++) frame.pixels[p] = (i * 31 + p * 7) & 0xffffff;
+            pipeline.submit(frame);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (pipeline.getCompletedCount() < pipeline.getSubmittedCount() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        pipeline.stop();
+
+        System.out.printf("pipeline: %d frames completed, %d dropped, %.1f frames/s%n",
+                pipeline.getCompletedCount(), pipeline.getDroppedCount(),
+                pipeline.getCompletedCount() * 1e9 / elapsed);
+    }
+
+    private static FramePipeline<Frame> createPipeline(int frames, List<Long> published) {
+        List<Frame> pool = new ArrayList<>();
+        for (int i = 0; i < frames; i++) pool.add(new Frame());
+
+        List<FramePipeline.Stage<Frame>> stages = new ArrayList<>();
+        //sample and classify the center patch
+        stages.add(frame -> {
+            int r = 0, g = 0, b = 0;
+            int mid = SIZE / 2;
+            for (int i = mid - THICKNESS / 2; i <= mid + THICKNESS / 2; i++) {
+                for (int j = mid - THICKNESS / 2; j <= mid + THICKNESS / 2; j++) {
+                    int c = frame.pixels[i * SIZE + j];
+                    r += c >> 16;
+                    g += (c >> 8) & 0xff;
+                    b += c & 0xff;
+                }
+            }
+            int n = THICKNESS * THICKNESS;
+            frame.meanColor = (r / n) << 16 | (g / n) << 8 | (b / n);
+            frame.nameId = ColorClassifier.classify(r / n, g / n, b / n);
+        });
+        //render the whole frame
+        stages.add(frame -> {
+            long checksum = 0;
+            for (int c : frame.pixels) checksum += c;
+            frame.checksum = checksum;
+        });
+        //publish
+        stages.add(frame -> published.add(frame.index));
+        return new FramePipeline<>("test", pool, stages);
+    }
+
+    @Test
+    public void frames_arePublishedInOrderAndAccounted() throws InterruptedException {
+        int frameCount = 2000;
+        List<Long> published = new ArrayList<>();
+        FramePipeline<Frame> pipeline = createPipeline(4, published);
+        run(pipeline, frameCount);
+
+        assertEquals(pipeline.getSubmittedCount(), pipeline.getCompletedCount());
+        assertEquals(frameCount, pipeline.getSubmittedCount() + pipeline.getDroppedCount());
+        assertEquals(pipeline.getCompletedCount(), published.size());
+        for (int i = 1; i < published.size(); i++) {
+            assertTrue(published.get(i - 1) < published.get(i));
+        }
+    }
+
+    @Test
+    public void singleFrame_dropsInputsWhileInFlight() {
+        FramePipeline<Frame> pipeline = createPipeline(1, new ArrayList<>());
+        assertNotNull(pipeline.acquire());
+        assertNull(pipeline.acquire());
+        assertEquals(1, pipeline.getDroppedCount());
+    }
+
+    /**
+     * Checks the hand-off of the frames between the producer and the stage threads, with the YUV sampling
+     * and the classification of the mean color as stages. The stages of ImageAnalyzer need OpenCV and
+     * the views, they are checked on a device by the instrumented ImageAnalyzerAllocationTest.
+     */
+    @Test
+    public void pipelineHandOff_allocatesNothing() throws InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final int warmup = 20_000;
+        final int frameCount = 40_000;
+
+        //same planes for all the frames, like the buffers reused by the camera
+        int w = 1000;
+        ByteBuffer y = ByteBuffer.allocateDirect(w * w);
+        ByteBuffer vu = ByteBuffer.allocateDirect(w * w / 2);
+        ImageProxy.PlaneProxy[] planes = {new YuvPlane(y, w, 1), new YuvPlane(vu, w, 2), new YuvPlane(vu, w, 2)};
+
+        List<Frame> pool = new ArrayList<>();
+        for (int i = 0; i < 4; i++) pool.add(new Frame());
+
+        //allocated bytes of each stage thread after the warm-up and at the end
+        long[][] allocated = new long[3][2];
+        List<FramePipeline.Stage<Frame>> stages = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            final int stage = s;
+            final long[] processed = new long[1];
+            stages.add(frame -> {
+                if (stage == 0) {
+                    frame.meanColor = YuvSampler.meanRgb(planes, w / 2 - 7, w / 2 - 7, 14, 14);
+                } else if (stage == 1) {
+                    int hsv = HsvConverter.toHsv(frame.meanColor >> 16, (frame.meanColor >> 8) & 0xff, frame.meanColor & 0xff);
+                    frame.nameId = ColorClassifier.classify(hsv);
+                } else {
+                    frame.checksum += frame.nameId;
+                }
+                processed[0]++;
+                if (processed[0] == warmup || processed[0] == frameCount) {
+                    allocated[stage][processed[0] == warmup ? 0 : 1] = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            });
+        }
+        FramePipeline<Frame> pipeline = new FramePipeline<>("allocation", pool, stages);
+        pipeline.start();
+
+        long producerStart = 0;
+        for (int i = 0; i < frameCount; i++) {
+            if (i == warmup) producerStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            Frame frame;
+            //the producer waits here so that all the frames go through the pipeline
+            while ((frame = pipeline.acquire()) == null) Thread.yield();
+            frame.index = i;
+            pipeline.submit(frame);
+        }
+        long producerAllocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - producerStart;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (pipeline.getCompletedCount() < frameCount && System.nanoTime() < deadline) Thread.sleep(1);
+        pipeline.stop();
+
+        assertEquals("frames stuck in the pipeline", frameCount, pipeline.getCompletedCount());
+        assertEquals(0, producerAllocated);
+        for (int stage = 0; stage < 3; stage++) {
+            assertEquals("stage " + stage, 0, allocated[stage][1] - allocated[stage][0]);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.boris.colornamer.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverAllDurationsWithoutGaps() {
+        long previousBound = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            long bound = LatencyHistogram.upperBoundOf(index);
+            assertTrue(micros <= bound);
+            //the bucket is at most 12.5% wider than its lower values
+            assertTrue(bound - micros <= Math.max(0, micros / 8));
+            if (bound != previousBound) {
+                //a new bucket starts right after the previous one
+                assertEquals(previousBound + 1, micros);
+                previousBound = bound;
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_areCloseToTheRecordedDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) histogram.record(i * 1000L);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getMean());
+        assertEquals(500, histogram.getPercentile(50), 500 / 8);
+        assertEquals(950, histogram.getPercentile(95), 950 / 8);
+        assertEquals(990, histogram.getPercentile(99), 990 / 8);
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long duration = (t + 1) * 10_000L;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) histogram.record(duration);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(40, histogram.getMax());
+        assertEquals(25, histogram.getMean());
+    }
+
+}
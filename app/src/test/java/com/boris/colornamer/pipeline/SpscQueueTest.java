@@ -0,0 +1,46 @@
+package com.boris.colornamer.pipeline;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpscQueueTest {
+
+    @Test
+    public void capacity_isRoundedToPowerOfTwo() {
+        assertEquals(1, new SpscQueue<Integer>(1).capacity());
+        assertEquals(4, new SpscQueue<Integer>(3).capacity());
+        assertEquals(8, new SpscQueue<Integer>(8).capacity());
+    }
+
+    @Test
+    public void offerAndPoll_keepOrderAndBounds() {
+        SpscQueue<Integer> queue = new SpscQueue<>(4);
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        for (int i = 0; i < 4; i++) assertEquals(Integer.valueOf(i), queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void producerAndConsumerThreads_transferAllElementsInOrder() throws InterruptedException {
+        final int count = 1_000_000;
+        SpscQueue<Integer> queue = new SpscQueue<>(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(i)) Thread.yield();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            Integer element;
+            while ((element = queue.poll()) == null) Thread.yield();
+            assertEquals(i, element.intValue());
+        }
+        producer.join();
+    }
+
+}
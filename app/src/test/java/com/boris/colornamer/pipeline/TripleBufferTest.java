@@ -0,0 +1,55 @@
+package com.boris.colornamer.pipeline;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest {
+
+    @Test
+    public void acquireFront_returnsLastPublished() {
+        TripleBuffer<int[]> buffers = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+        int[] initial = buffers.acquireFront();
+
+        buffers.getBack()[0] = 1;
+        buffers.publish();
+        buffers.getBack()[0] = 2;
+        buffers.publish();
+
+        int[] front = buffers.acquireFront();
+        assertEquals(2, front[0]);
+        assertNotSame(initial, front);
+        //nothing new was published
+        assertSame(front, buffers.acquireFront());
+        //the producer never writes in the front buffer
+        assertNotSame(front, buffers.getBack());
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_neverSeeTornBuffers() throws InterruptedException {
+        final int size = 4096;
+        final int count = 200_000;
+        TripleBuffer<int[]> buffers = new TripleBuffer<>(new int[size], new int[size], new int[size]);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+                Arrays.fill(buffers.getBack(), i);
+                buffers.publish();
+            }
+        });
+        producer.start();
+
+        int last = 0;
+        while (last < count) {
+            int[] front = buffers.acquireFront();
+            int value = front[0];
+            for (int v : front) assertEquals(value, v);
+            assertTrue(value >= last);
+            last = value;
+        }
+        producer.join();
+    }
+
+}
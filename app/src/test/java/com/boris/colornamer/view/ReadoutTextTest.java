@@ -0,0 +1,60 @@
+package com.boris.colornamer.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReadoutTextTest {
+
+    private static String write(ReadoutText text, int r, int g, int b) {
+        text.begin();
+        text.append("R: ");
+        text.appendNumber(r, 3);
+        text.append("  -  G: ");
+        text.appendNumber(g, 3);
+        text.append("  -  B: ");
+        text.appendNumber(b, 3);
+        return text.end() ? new String(text.getChars(), 0, text.length()) : null;
+    }
+
+    @Test
+    public void end_onlyReportsChangedTexts() {
+        ReadoutText text = new ReadoutText();
+        assertEquals("R: 007  -  G: 042  -  B: 255", write(text, 7, 42, 255));
+        assertNull(write(text, 7, 42, 255));
+        assertEquals("R: 007  -  G: 043  -  B: 255", write(text, 7, 43, 255));
+
+        //a forgotten text is displayed again
+        text.invalidate();
+        assertEquals("R: 007  -  G: 043  -  B: 255", write(text, 7, 43, 255));
+    }
+
+    @Test
+    public void end_neverWritesInTheDisplayedChars() {
+        ReadoutText text = new ReadoutText();
+        write(text, 1, 2, 3);
+        char[] shown = text.getChars();
+        String before = new String(shown, 0, text.length());
+
+        //the next text is written in the other buffer
+        text.begin();
+        text.append("a longer text than the first one, so that the buffer grows");
+        assertEquals(before, new String(shown, 0, before.length()));
+        assertTrue(text.end());
+        assertNotSame(shown, text.getChars());
+    }
+
+    @Test
+    public void appendNumber_padsAndKeepsLargeNumbers() {
+        ReadoutText text = new ReadoutText();
+        text.begin();
+        text.appendNumber(0, 3);
+        text.append(" ");
+        text.appendNumber(100, 0);
+        text.append(" ");
+        text.appendNumber(12345, 3);
+        assertTrue(text.end());
+        assertEquals("000 100 12345", new String(text.getChars(), 0, text.length()));
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.boris.colornamer.batch;
+
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.HsvConverter;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Command line tool classifying the colors of all the images of a directory with the rules of the app.
+ * The images are decoded and classified in parallel on all the cores, and the results are written to a
+ * CSV file as soon as they are available. When an image is in a directory named after a color, such as
+ * "red" or "gray", the color is used as its label and the tool reports how many samples match it.
+ */
+public class BatchClassifier {
+
+    private static final String USAGE = "usage: batch <images dir> <output.csv> [--patch <size>] [--points <x:y,x:y,...>] [--threads <count>]\n"
+            + "  --patch   size of the sampled area on the image resized to 500x500, default " + ImageSampler.DEFAULT_PATCH + "\n"
+            + "  --points  centers of the sampled areas as fractions of the width and height, default 0.5:0.5\n"
+            + "  --threads number of threads, default the number of cores";
+
+    private static final String[] EXTENSIONS = new String[]{".jpg", ".jpeg", ".png", ".bmp", ".gif"};
+
+    private final List<File> mImages;
+    private final double[] mPoints;
+    private final int mPatch;
+    private final Writer mOutput;
+
+    private final AtomicLong mSampleCount = new AtomicLong();
+    private final AtomicLong mLabeledCount = new AtomicLong();
+    private final AtomicLong mMatchCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param images the images to classify
+     * @param points the centers of the sampled areas, as x and y fractions one after the other
+     * @param patch  the size of the sampled areas on the images resized to 500x500
+     * @param output the writer of the CSV results, the header is written by {@link #run(ForkJoinPool)}
+     */
+    public BatchClassifier(@NotNull List<File> images, @NotNull double[] points, int patch, @NotNull Writer output) {
+        this.mImages = images;
+        this.mPoints = points;
+        this.mPatch = patch;
+        this.mOutput = output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        int patch = ImageSampler.DEFAULT_PATCH;
+        double[] points = new double[]{0.5, 0.5};
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("missing value of " + args[i]);
+                switch (args[i]) {
+                    case "--patch":
+                        patch = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--points":
+                        points = parsePoints(args[i + 1]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        List<File> images = new ArrayList<>();
+        listImages(new File(args[0]), images);
+        images.sort(null);
+
+        try (Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8))) {
+            BatchClassifier classifier = new BatchClassifier(images, points, patch, output);
+            long start = System.nanoTime();
+            classifier.run(new ForkJoinPool(threads));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.err.printf(Locale.ROOT, "%d images, %d samples in %.2f s: %.1f images/s%n",
+                    images.size(), classifier.getSampleCount(), seconds, images.size() / seconds);
+            if (classifier.getLabeledCount() > 0) {
+                System.err.printf(Locale.ROOT, "%d/%d labeled samples match their label (%.1f%%)%n",
+                        classifier.getMatchCount(), classifier.getLabeledCount(),
+                        100.0 * classifier.getMatchCount() / classifier.getLabeledCount());
+            }
+            if (classifier.getErrorCount() > 0) {
+                System.err.println(classifier.getErrorCount() + " images could not be decoded");
+            }
+        }
+    }
+
+    /**
+     * Parses a list of points such as "0.5:0.5,0.25:0.75"
+     *
+     * @param value the list of points
+     * @return the x and y fractions of the points one after the other
+     */
+    static double[] parsePoints(@NotNull String value) {
+        String[] points = value.split(",");
+        double[] result = new double[2 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            String[] xy = points[i].split(":");
+            if (xy.length != 2) throw new IllegalArgumentException("invalid point " + points[i]);
+            result[2 * i] = Double.parseDouble(xy[0]);
+            result[2 * i + 1] = Double.parseDouble(xy[1]);
+            if (result[2 * i] < 0 || result[2 * i] > 1 || result[2 * i + 1] < 0 || result[2 * i + 1] > 1) {
+                throw new IllegalArgumentException("point out of the image " + points[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the images of a directory and its sub-directories to the given list
+     *
+     * @param dir    the directory to explore
+     * @param images the list of images
+     */
+    static void listImages(@NotNull File dir, @NotNull List<File> images) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listImages(file, images);
+            } else {
+                String name = file.getName().toLowerCase(Locale.ROOT);
+                for (String extension : EXTENSIONS) {
+                    if (name.endsWith(extension)) {
+                        images.add(file);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Classifies all the images and writes the results
+     *
+     * @param pool the pool of threads classifying the images
+     * @throws IOException if the results can not be written
+     */
+    public void run(@NotNull ForkJoinPool pool) throws IOException {
+        mOutput.write("file,label,x,y,r,g,b,h,s,v,name,match\n");
+        pool.invoke(new ClassifyTask(0, mImages.size()));
+        mOutput.flush();
+    }
+
+    /**
+     * Splits the images in halves until a single image is left, classified by the current thread
+     */
+    private class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mStart;
+        private final int mEnd;
+
+        ClassifyTask(int start, int end) {
+            this.mStart = start;
+            this.mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart > 1) {
+                int middle = (mStart + mEnd) >>> 1;
+                invokeAll(new ClassifyTask(mStart, middle), new ClassifyTask(middle, mEnd));
+            } else if (mEnd > mStart) {
+                classify(mImages.get(mStart));
+            }
+        }
+    }
+
+    /**
+     * Samples and classifies the points of an image, then writes its results
+     *
+     * @param file the image file
+     */
+    private void classify(@NotNull File file) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(file);
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            mErrorCount.incrementAndGet();
+            return;
+        }
+
+        //the parent directory gives the label of the image
+        byte label = ColorClassifier.getId(file.getParentFile() == null ? "" : file.getParentFile().getName());
+
+        ImageSampler sampler = new ImageSampler(mPatch);
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < mPoints.length; i += 2) {
+            int rgb = sampler.meanRgb(image, mPoints[i], mPoints[i + 1]);
+            int r = rgb >> 16;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int hsv = HsvConverter.toHsv(r, g, b);
+            byte name = ColorClassifier.classify(hsv);
+
+            rows.append(csv(file.getPath())).append(',')
+                    .append(label < 0 ? "" : ColorClassifier.getKey(label)).append(',')
+                    .append(mPoints[i]).append(',').append(mPoints[i + 1]).append(',')
+                    .append(r).append(',').append(g).append(',').append(b).append(',')
+                    .append(HsvConverter.getH(hsv)).append(',')
+                    .append((int) (HsvConverter.getS(hsv) * 100)).append(',')
+                    .append((int) (HsvConverter.getV(hsv) * 100)).append(',')
+                    .append(ColorClassifier.getKey(name)).append(',')
+                    .append(label < 0 ? "" : label == name).append('\n');
+
+            mSampleCount.incrementAndGet();
+            if (label >= 0) {
+                mLabeledCount.incrementAndGet();
+                if (label == name) mMatchCount.incrementAndGet();
+            }
+        }
+
+        //the rows of an image are kept together
+        try {
+            synchronized (mOutput) {
+                mOutput.write(rows.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Quotes a CSV value if needed
+     *
+     * @param value the value to write
+     * @return the value as written in the CSV file
+     */
+    private static String csv(@NotNull String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of classified samples
+     */
+    public long getSampleCount() {
+        return mSampleCount.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of samples of images having a label
+     */
+    public long getLabeledCount() {
+        return mLabeledCount.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of samples classified as the label of their image
+     */
+    public long getMatchCount() {
+        return mMatchCount.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of files that could not be decoded
+     */
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.boris.colornamer.batch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Computes the mean color of an area of a decoded image, the area has the
+ * same size relatively to the image as the one sampled by the app
+ */
+public class ImageSampler {
+
+    //the app samples a 7x7 square of the camera image resized to 500x500
+    public static final int DEFAULT_PATCH = 7;
+    private static final int SQUARE_SIZE = 500;
+
+    private final int mPatch;
+    //buffer of a row of the area, reused between samples
+    private int[] mRow = new int[0];
+
+    /**
+     * Constructor
+     *
+     * @param patch the size of the sampled area on the image resized to 500x500
+     */
+    public ImageSampler(int patch) {
+        this.mPatch = patch;
+    }
+
+    /**
+     * Computes the mean color of the area centered on the given point
+     *
+     * @param image the image to sample
+     * @param fx    the abscissa of the center of the area, between 0 and 1
+     * @param fy    the ordinate of the center of the area, between 0 and 1
+     * @return the mean color packed as 0xRRGGBB
+     */
+    public int meanRgb(@NotNull BufferedImage image, double fx, double fy) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int width = Math.max(1, mPatch * w / SQUARE_SIZE);
+        int height = Math.max(1, mPatch * h / SQUARE_SIZE);
+        int left = Math.min(Math.max(0, (int) (fx * w) - width / 2), w - width);
+        int top = Math.min(Math.max(0, (int) (fy * h) - height / 2), h - height);
+
+        if (mRow.length < width) mRow = new int[width];
+        long sumR = 0;
+        long sumG = 0;
+        long sumB = 0;
+        for (int i = top; i < top + height; i++) {
+            image.getRGB(left, i, width, 1, mRow, 0, width);
+            for (int j = 0; j < width; j++) {
+                int rgb = mRow[j];
+                sumR += (rgb >> 16) & 0xff;
+                sumG += (rgb >> 8) & 0xff;
+                sumB += rgb & 0xff;
+            }
+        }
+
+        long count = (long) width * height;
+        return (int) (sumR / count) << 16 | (int) (sumG / count) << 8 | (int) (sumB / count);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.boris.colornamer.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Classifies generated images stored in directories named after their color
+ */
+public class BatchClassifierTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void run_writesOneRowPerSampleAndCountsMatches() throws IOException {
+        writeImage("red", "a.png", 0xff0000, 640, 480);
+        writeImage("blue", "b.png", 0x0000ff, 320, 240);
+        //labeled green but actually white
+        writeImage("green", "c.png", 0xffffff, 100, 100);
+        writeImage("unlabeled", "d.png", 0x000000, 50, 80);
+
+        List<File> images = new ArrayList<>();
+        BatchClassifier.listImages(mFolder.getRoot(), images);
+        assertEquals(4, images.size());
+
+        StringWriter output = new StringWriter();
+        double[] points = BatchClassifier.parsePoints("0.5:0.5,0:1");
+        BatchClassifier classifier = new BatchClassifier(images, points, ImageSampler.DEFAULT_PATCH, output);
+        classifier.run(new ForkJoinPool(3));
+
+        String[] rows = output.toString().split("\n");
+        assertEquals(1 + 4 * 2, rows.length);
+        assertEquals("file,label,x,y,r,g,b,h,s,v,name,match", rows[0]);
+        assertEquals(8, classifier.getSampleCount());
+        assertEquals(6, classifier.getLabeledCount());
+        assertEquals(4, classifier.getMatchCount());
+        assertEquals(0, classifier.getErrorCount());
+
+        for (int i = 1; i < rows.length; i++) {
+            String[] values = rows[i].split(",");
+            if (values[0].endsWith("a.png")) assertEquals("red,red,true", values[1] + "," + values[10] + "," + values[11]);
+            if (values[0].endsWith("c.png")) assertEquals("white,false", values[10] + "," + values[11]);
+            if (values[0].endsWith("d.png")) assertEquals("black,", values[10] + "," + (values.length > 11 ? values[11] : ""));
+        }
+    }
+
+    @Test
+    public void meanRgb_averagesTheAreaAroundThePoint() {
+        BufferedImage image = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+        //left half black, right half white, the 14x14 area at the center is half of each
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 500; j < 1000; j++) image.setRGB(j, i, 0xffffff);
+        }
+        ImageSampler sampler = new ImageSampler(ImageSampler.DEFAULT_PATCH);
+        assertEquals(0x7f7f7f, sampler.meanRgb(image, 0.5, 0.5));
+        assertEquals(0x000000, sampler.meanRgb(image, 0, 0));
+        assertEquals(0xffffff, sampler.meanRgb(image, 1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parsePoints_rejectsPointsOutOfTheImage() {
+        BatchClassifier.parsePoints("0.5:1.5");
+    }
+
+    private void writeImage(String dir, String name, int rgb, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) image.setRGB(j, i, rgb);
+        }
+        File folder = new File(mFolder.getRoot(), dir);
+        assertTrue(folder.isDirectory() || folder.mkdirs());
+        ImageIO.write(image, "png", new File(folder, name));
+    }
+
+}
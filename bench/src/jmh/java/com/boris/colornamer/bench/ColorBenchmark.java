@@ -0,0 +1,94 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.ColorNameTable;
+import com.boris.colornamer.model.HsvConverter;
+import com.boris.colornamer.model.PackedColor;
+import com.boris.colornamer.model.PaletteClassifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done by PackedColor for each displayed color: the color is converted to HSV, and its
+ * name id is looked up in the table, or classified while the table is not loaded, one color at
+ * a time or for a whole array. The resource lookup of the name is not measured.
+ * The perceptual engine is measured with its grid and with the exact search in the palette.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColorBenchmark {
+
+    //power of two so the index wraps with a mask
+    private static final int COLOR_COUNT = 1024;
+
+    private final int[] mColors = new int[COLOR_COUNT];
+    private final byte[] mNameIds = new byte[COLOR_COUNT];
+    private ColorNameTable mTable;
+    private PaletteClassifier mPalette;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < COLOR_COUNT; i++) mColors[i] = random.nextInt(1 << 24);
+        mTable = ColorNameTable.build();
+        mPalette = PaletteClassifier.getDefault();
+    }
+
+    private int nextColor() {
+        mIndex = (mIndex + 1) & (COLOR_COUNT - 1);
+        return mColors[mIndex];
+    }
+
+    @Benchmark
+    public void hsv(Blackhole blackhole) {
+        int rgb = nextColor();
+        int hsv = HsvConverter.toHsv(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+        blackhole.consume(HsvConverter.getH(hsv));
+        blackhole.consume(HsvConverter.getS(hsv));
+        blackhole.consume(HsvConverter.getV(hsv));
+    }
+
+    @Benchmark
+    public byte classify() {
+        int rgb = nextColor();
+        return ColorClassifier.classify(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    @Benchmark
+    public byte[] classifyBulk() {
+        //without namer, every color is classified with the rules
+        PackedColor.classify(null, mColors, mNameIds);
+        return mNameIds;
+    }
+
+    @Benchmark
+    public byte tableLookup() {
+        int rgb = nextColor();
+        return mTable.getNameId(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    @Benchmark
+    public byte paletteLookup() {
+        int rgb = nextColor();
+        return mPalette.getNameId(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    @Benchmark
+    public byte paletteExact() {
+        int rgb = nextColor();
+        return mPalette.classifyExact(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+}
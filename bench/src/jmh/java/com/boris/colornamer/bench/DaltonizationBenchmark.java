@@ -0,0 +1,89 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.Daltonizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daltonization of the rendered preview: a 3x3 matrix applied to each pixel in gamma space,
+ * compared with the lookup table of the exact transform in linear space, on one core and on all of them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DaltonizationBenchmark {
+
+    //protanopia daltonization of the table combined in one matrix, applied to the sRGB values
+    private static final float[] MATRIX = new float[]{
+            1, 0, 0,
+            0.4789f, 0.4769f, 0.0442f,
+            0.5973f, -0.6887f, 1.0914f
+    };
+
+    @Param({"500"})
+    public int size;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private byte[] mSquare;
+    private int[] mPixels;
+    private int[] mLut;
+    private ForkJoinPool mPool;
+    private Daltonizer mDaltonizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mSquare = new byte[3 * size * size];
+        new Random(7).nextBytes(mSquare);
+        mPixels = new int[size * size];
+        mLut = Daltonizer.createLut(Daltonizer.PROTANOPIA, true);
+        //0 uses all the cores, like the analyzer
+        mPool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        mDaltonizer = new Daltonizer(mPool, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Benchmark
+    public int[] matrix() {
+        float[] m = MATRIX;
+        for (int idx = 0; idx < size * size; idx++) {
+            float r = mSquare[3 * idx] & 0xff;
+            float g = mSquare[3 * idx + 1] & 0xff;
+            float b = mSquare[3 * idx + 2] & 0xff;
+            int dr = clamp(m[0] * r + m[1] * g + m[2] * b);
+            int dg = clamp(m[3] * r + m[4] * g + m[5] * b);
+            int db = clamp(m[6] * r + m[7] * g + m[8] * b);
+            mPixels[idx] = 0xff000000 | dr << 16 | dg << 8 | db;
+        }
+        return mPixels;
+    }
+
+    @Benchmark
+    public int[] lut() {
+        mDaltonizer.apply(mSquare, size, size, mLut, mPixels);
+        return mPixels;
+    }
+
+    private static int clamp(float value) {
+        return value <= 0 ? 0 : value >= 255 ? 255 : (int) value;
+    }
+
+}
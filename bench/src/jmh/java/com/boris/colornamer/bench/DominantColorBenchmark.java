@@ -0,0 +1,74 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.YuvPixels;
+import com.boris.colornamer.model.ColorClusterer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dominant colors mode of the analyzer: sampling of the region around the center
+ * then clustering of the sampled colors, with the same limits as ImageAnalyzer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DominantColorBenchmark {
+
+    private static final int MAX_SAMPLES = 1024;
+    private static final int MAX_CLUSTERS = 4;
+    private static final int ITERATIONS = 5;
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"0.05", "0.2", "0.5"})
+    public float regionSize;
+
+    @Param({"3", "4"})
+    public int k;
+
+    private SyntheticYuv mImage;
+    private final int[] mSamples = new int[MAX_SAMPLES];
+    private final ColorClusterer mClusterer = new ColorClusterer(MAX_SAMPLES, MAX_CLUSTERS);
+    private int mSide;
+    private int mStep;
+    private int mSampleCount;
+
+    @Setup
+    public void setUp() {
+        mImage = new SyntheticYuv(resolution, YuvPixels.LAYOUT_NV21, 0);
+        mSide = Math.max(1, (int) (regionSize * Math.min(mImage.width, mImage.height)));
+        mStep = YuvPixels.getSampleStep(mSide, mSide, MAX_SAMPLES);
+        mSampleCount = sample();
+    }
+
+    private int sample() {
+        return YuvPixels.sampleRgb(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                mImage.width / 2 - mSide / 2, mImage.height / 2 - mSide / 2, mSide, mSide, mStep, mSamples);
+    }
+
+    @Benchmark
+    public int sampleRegion() {
+        return sample();
+    }
+
+    @Benchmark
+    public int cluster() {
+        return mClusterer.cluster(mSamples, mSampleCount, k, ITERATIONS);
+    }
+
+    @Benchmark
+    public int sampleAndCluster() {
+        return mClusterer.cluster(mSamples, sample(), k, ITERATIONS);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.YuvPixels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mean color of the center of a camera image, the area is computed the same way
+ * as in ImageAnalyzer.computeMeanColorOfImage so it grows with the resolution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeanColorBenchmark {
+
+    //size of the marker on the image resized to 500x500
+    private static final int THICKNESS = 7;
+    private static final int SQUARE_SIZE = 500;
+
+    @Param({"640x480", "1280x720", "1920x1080", "4032x3024"})
+    public String resolution;
+
+    @Param({"I420", "NV12", "NV21"})
+    public String layout;
+
+    @Param({"0", "64"})
+    public int padding;
+
+    private SyntheticYuv mImage;
+    private int mLeft;
+    private int mTop;
+    private int mWidth;
+    private int mHeight;
+
+    @Setup
+    public void setUp() {
+        mImage = new SyntheticYuv(resolution, SyntheticYuv.parseLayout(layout), padding);
+        mWidth = Math.max(1, THICKNESS * mImage.width / SQUARE_SIZE);
+        mHeight = Math.max(1, THICKNESS * mImage.height / SQUARE_SIZE);
+        mLeft = mImage.width / 2 - mWidth / 2;
+        mTop = mImage.height / 2 - mHeight / 2;
+    }
+
+    @Benchmark
+    public int meanRgb() {
+        return YuvPixels.meanRgb(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                mLeft, mTop, mWidth, mHeight);
+    }
+
+}
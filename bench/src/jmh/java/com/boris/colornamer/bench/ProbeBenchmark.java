@@ -0,0 +1,93 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.IntegralImage;
+import com.boris.colornamer.imageutils.YuvPixels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes of the analyzer: mean colors of a grid of patches computed with one integral image
+ * of their bounding box, compared with averaging every pixel of each patch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProbeBenchmark {
+
+    //same capacity as the analyzer
+    private static final int MAX_INTEGRAL_PIXELS = 1 << 16;
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"0.014", "0.05", "0.1"})
+    public float patchSize;
+
+    @Param({"1", "3"})
+    public int grid;
+
+    private SyntheticYuv mImage;
+    private final IntegralImage mIntegral = new IntegralImage(MAX_INTEGRAL_PIXELS);
+    private int[] mLefts;
+    private int[] mTops;
+    private int mWidth;
+    private int mHeight;
+    private int mMinX;
+    private int mMinY;
+    private int mMaxX;
+    private int mMaxY;
+
+    @Setup
+    public void setUp() {
+        mImage = new SyntheticYuv(resolution, YuvPixels.LAYOUT_NV21, 0);
+        mWidth = Math.max(1, (int) (patchSize * mImage.width));
+        mHeight = Math.max(1, (int) (patchSize * mImage.height));
+        mLefts = new int[grid * grid];
+        mTops = new int[grid * grid];
+        mMinX = Integer.MAX_VALUE;
+        mMinY = Integer.MAX_VALUE;
+        for (int i = 0; i < grid; i++) {
+            for (int j = 0; j < grid; j++) {
+                int p = i * grid + j;
+                mLefts[p] = (int) ((j + 0.5f) / grid * mImage.width) - mWidth / 2;
+                mTops[p] = (int) ((i + 0.5f) / grid * mImage.height) - mHeight / 2;
+                mMinX = Math.min(mMinX, mLefts[p]);
+                mMinY = Math.min(mMinY, mTops[p]);
+                mMaxX = Math.max(mMaxX, mLefts[p] + mWidth);
+                mMaxY = Math.max(mMaxY, mTops[p] + mHeight);
+            }
+        }
+    }
+
+    @Benchmark
+    public int integral() {
+        mIntegral.build(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                mMinX, mMinY, mMaxX - mMinX, mMaxY - mMinY);
+        int sum = 0;
+        for (int p = 0; p < mLefts.length; p++) {
+            sum += mIntegral.meanRgb(mLefts[p], mTops[p], mWidth, mHeight);
+            sum += (int) mIntegral.variance(mLefts[p], mTops[p], mWidth, mHeight);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int direct() {
+        int sum = 0;
+        for (int p = 0; p < mLefts.length; p++) {
+            sum += YuvPixels.meanRgb(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                    mLefts[p], mTops[p], mWidth, mHeight);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.ImageRotation;
+import com.boris.colornamer.imageutils.IntegralImage;
+import com.boris.colornamer.imageutils.YuvPixels;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time saved per frame by reading the camera buffers in their orientation: the probes of the analyzer
+ * measured on a buffer first rotated on the CPU into I420 planes, as the analysis does when its output
+ * rotation is enabled, compared with the same probes mapped to the unrotated buffer. The rotation is
+ * done in Java here, a lower bound of the saved time on devices where it is done by native code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RotationBenchmark {
+
+    //same capacity and probe size as the analyzer
+    private static final int MAX_INTEGRAL_PIXELS = 1 << 16;
+    private static final float PATCH_SIZE = 7f / 500;
+
+    @Param({"1000x1000"})
+    public String resolution;
+
+    @Param({"90", "270"})
+    public int rotationDegrees;
+
+    @Param({"1", "3"})
+    public int grid;
+
+    private SyntheticYuv mImage;
+    private final IntegralImage mIntegral = new IntegralImage(MAX_INTEGRAL_PIXELS);
+    private float[] mProbes;
+    private int[] mLefts;
+    private int[] mTops;
+    //planes of the rotated image
+    private ByteBuffer mRotatedY;
+    private ByteBuffer mRotatedU;
+    private ByteBuffer mRotatedV;
+
+    @Setup
+    public void setUp() {
+        mImage = new SyntheticYuv(resolution, YuvPixels.LAYOUT_NV21, 0);
+        mProbes = new float[2 * grid * grid];
+        for (int i = 0; i < grid; i++) {
+            for (int j = 0; j < grid; j++) {
+                mProbes[2 * (i * grid + j)] = (j + 0.5f) / grid;
+                mProbes[2 * (i * grid + j) + 1] = (i + 0.5f) / grid;
+            }
+        }
+        mLefts = new int[grid * grid];
+        mTops = new int[grid * grid];
+        mRotatedY = ByteBuffer.allocateDirect(mImage.width * mImage.height);
+        mRotatedU = ByteBuffer.allocateDirect(mImage.width * mImage.height / 4);
+        mRotatedV = ByteBuffer.allocateDirect(mImage.width * mImage.height / 4);
+    }
+
+    @Benchmark
+    public int rotatedBuffer() {
+        rotate(mImage.y, mImage.yRowStride, 1, mImage.width, mImage.height, mRotatedY);
+        rotate(mImage.u, mImage.uvRowStride, mImage.uvPixelStride, mImage.width / 2, mImage.height / 2, mRotatedU);
+        rotate(mImage.v, mImage.uvRowStride, mImage.uvPixelStride, mImage.width / 2, mImage.height / 2, mRotatedV);
+        //the rotated image is upright, its sides are swapped
+        return measure(mRotatedY, mImage.height, 1, mRotatedU, mRotatedV, mImage.height / 2, 1, mImage.height, mImage.width, 0);
+    }
+
+    @Benchmark
+    public int rotationAware() {
+        return measure(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                mImage.width, mImage.height, rotationDegrees);
+    }
+
+    /**
+     * Measures the probes as the analyzer does, the integral image of the bounding box of the patches then their mean colors
+     */
+    private int measure(@NotNull ByteBuffer y, int yRowStride, int yPixelStride, @NotNull ByteBuffer u, @NotNull ByteBuffer v,
+                        int uvRowStride, int uvPixelStride, int w, int h, int rotation) {
+        int width = Math.max(1, (int) (PATCH_SIZE * w));
+        int height = Math.max(1, (int) (PATCH_SIZE * h));
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = 0;
+        int maxY = 0;
+        for (int p = 0; p < mLefts.length; p++) {
+            float x = ImageRotation.toBufferX(mProbes[2 * p], mProbes[2 * p + 1], rotation);
+            float yc = ImageRotation.toBufferY(mProbes[2 * p], mProbes[2 * p + 1], rotation);
+            mLefts[p] = Math.max(0, Math.min(w - width, (int) (x * w) - width / 2));
+            mTops[p] = Math.max(0, Math.min(h - height, (int) (yc * h) - height / 2));
+            minX = Math.min(minX, mLefts[p]);
+            minY = Math.min(minY, mTops[p]);
+            maxX = Math.max(maxX, mLefts[p] + width);
+            maxY = Math.max(maxY, mTops[p] + height);
+        }
+        mIntegral.build(y, yRowStride, yPixelStride, u, v, uvRowStride, uvPixelStride, minX, minY, maxX - minX, maxY - minY);
+        int sum = 0;
+        for (int p = 0; p < mLefts.length; p++) sum += mIntegral.meanRgb(mLefts[p], mTops[p], width, height);
+        return sum;
+    }
+
+    /**
+     * Rotates a plane clockwise by the rotation of the benchmark into a packed plane
+     */
+    private void rotate(@NotNull ByteBuffer src, int rowStride, int pixelStride, int w, int h, @NotNull ByteBuffer dst) {
+        boolean clockwise = rotationDegrees == 90;
+        //the rows of the rotated plane are the columns of the source
+        for (int i = 0; i < w; i++) {
+            int column = clockwise ? i : w - 1 - i;
+            int row = i * h;
+            for (int j = 0; j < h; j++) {
+                int sourceRow = clockwise ? h - 1 - j : j;
+                dst.put(row + j, src.get(sourceRow * rowStride + column * pixelStride));
+            }
+        }
+    }
+
+}
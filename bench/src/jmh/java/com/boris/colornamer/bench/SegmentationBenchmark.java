@@ -0,0 +1,76 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.ColorSegmenter;
+import com.boris.colornamer.imageutils.YuvPixels;
+import com.boris.colornamer.model.ColorNameTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color map mode of the analyzer: naming of every pixel of the map with the lookup table,
+ * on one core and on all of them, then drawing of the map
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SegmentationBenchmark {
+
+    private static final int MAX_SIZE = 500;
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"300", "500"})
+    public int size;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private SyntheticYuv mImage;
+    private ForkJoinPool mPool;
+    private ColorSegmenter mSegmenter;
+    private ColorNameTable mTable;
+    private final byte[] mLabels = new byte[MAX_SIZE * MAX_SIZE];
+    private final int[] mPixels = new int[MAX_SIZE * MAX_SIZE];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mImage = new SyntheticYuv(resolution, YuvPixels.LAYOUT_NV21, 0);
+        //0 uses all the cores, like the analyzer
+        mPool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        mSegmenter = new ColorSegmenter(mPool, MAX_SIZE);
+        mTable = ColorNameTable.build();
+        segment();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] segment() {
+        mSegmenter.segment(mImage.y, mImage.yRowStride, 1, mImage.u, mImage.v, mImage.uvRowStride, mImage.uvPixelStride,
+                mImage.width, mImage.height, size, mTable, mLabels);
+        return mLabels;
+    }
+
+    @Benchmark
+    public int[] render() {
+        ColorSegmenter.render(mLabels, size, 0, mPixels);
+        return mPixels;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.YuvPixels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy of the planes of a camera image into the contiguous buffer converted by OpenCV,
+ * the padded rows are copied one by one while unpadded planes are copied at once
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StagingBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "4032x3024"})
+    public String resolution;
+
+    @Param({"I420", "NV12", "NV21"})
+    public String layout;
+
+    @Param({"0", "64"})
+    public int padding;
+
+    private SyntheticYuv mImage;
+    private int mLayout;
+    private ByteBuffer mStaging;
+
+    @Setup
+    public void setUp() {
+        mLayout = SyntheticYuv.parseLayout(layout);
+        mImage = new SyntheticYuv(resolution, mLayout, padding);
+        mStaging = ByteBuffer.allocateDirect(mImage.width * (mImage.height + mImage.height / 2));
+    }
+
+    @Benchmark
+    public ByteBuffer stage() {
+        mStaging.clear();
+        YuvPixels.stage(mImage.y, mImage.yRowStride, mImage.u, mImage.v, mImage.uvRowStride,
+                mImage.width, mImage.height, mLayout, mStaging);
+        return mStaging;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.boris.colornamer.bench;
+
+import com.boris.colornamer.imageutils.YuvPixels;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic YUV_420_888 image laid out like a camera image: direct buffers, rows padded
+ * to the given stride and interleaved chroma planes ending one byte before their last row
+ */
+class SyntheticYuv {
+
+    final int width;
+    final int height;
+    final int yRowStride;
+    final int uvRowStride;
+    final int uvPixelStride;
+    final ByteBuffer y;
+    final ByteBuffer u;
+    final ByteBuffer v;
+
+    /**
+     * Constructor
+     *
+     * @param resolution the size of the image, such as "1280x720"
+     * @param layout     the layout of the chroma planes, one of the layouts of {@link YuvPixels}
+     * @param padding    the number of bytes added at the end of each row
+     */
+    SyntheticYuv(@NotNull String resolution, int layout, int padding) {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        yRowStride = width + padding;
+        Random random = new Random(42);
+
+        y = ByteBuffer.allocateDirect(yRowStride * (height - 1) + width);
+        fill(y, random);
+
+        if (layout == YuvPixels.LAYOUT_I420) {
+            uvRowStride = width / 2 + padding / 2;
+            uvPixelStride = 1;
+            u = ByteBuffer.allocateDirect(uvRowStride * (height / 2 - 1) + width / 2);
+            v = ByteBuffer.allocateDirect(uvRowStride * (height / 2 - 1) + width / 2);
+            fill(u, random);
+            fill(v, random);
+        } else {
+            uvRowStride = yRowStride;
+            uvPixelStride = 2;
+            ByteBuffer interleaved = ByteBuffer.allocateDirect(uvRowStride * (height / 2 - 1) + width);
+            fill(interleaved, random);
+            int first = layout == YuvPixels.LAYOUT_NV21 ? 1 : 0;
+            int length = interleaved.capacity() - 1;
+            interleaved.position(first).limit(first + length);
+            u = interleaved.slice();
+            interleaved.clear();
+            interleaved.position(1 - first).limit(1 - first + length);
+            v = interleaved.slice();
+        }
+    }
+
+    static int parseLayout(@NotNull String layout) {
+        switch (layout) {
+            case "NV12":
+                return YuvPixels.LAYOUT_NV12;
+            case "NV21":
+                return YuvPixels.LAYOUT_NV21;
+            default:
+                return YuvPixels.LAYOUT_I420;
+        }
+    }
+
+    private static void fill(@NotNull ByteBuffer buffer, @NotNull Random random) {
+        byte[] bytes = new byte[buffer.capacity()];
+        random.nextBytes(bytes);
+        buffer.put(bytes).clear();
+    }
+
+}
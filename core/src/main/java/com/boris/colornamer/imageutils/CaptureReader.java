@@ -0,0 +1,147 @@
+package com.boris.colornamer.imageutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the images of a capture file written by {@link CaptureWriter}. The file is memory-mapped
+ * so the planes of the read images are views of the file, no pixel is copied. An image cut by the
+ * end of the file, when the capture was interrupted, is ignored. The reader is immutable once
+ * opened and can be shared between threads, each one reading in its own {@link CapturedFrame}.
+ */
+public class CaptureReader {
+
+    //a mapping can not exceed 2 GB, a long capture is mapped in several segments
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    //offset of each image in the file, and segment containing it
+    private final long[] mOffsets;
+    private final int[] mSegmentIndices;
+    private final long[] mSegmentStarts;
+    private final MappedByteBuffer[] mSegments;
+
+    private CaptureReader(@NotNull long[] offsets, @NotNull int[] segmentIndices, @NotNull long[] segmentStarts, @NotNull MappedByteBuffer[] segments) {
+        this.mOffsets = offsets;
+        this.mSegmentIndices = segmentIndices;
+        this.mSegmentStarts = segmentStarts;
+        this.mSegments = segments;
+    }
+
+    /**
+     * Finds the images of a capture file then maps it, the mapping stays valid after the file is closed
+     *
+     * @param file the capture file
+     * @return the reader of the images of the file
+     * @throws IOException if the file can not be read or is not a capture file
+     */
+    @NotNull
+    public static CaptureReader open(@NotNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(CaptureWriter.FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.limit(CaptureWriter.FILE_HEADER_SIZE);
+            read(channel, header, 0);
+            if (header.getInt(0) != CaptureWriter.MAGIC) throw new IOException("Not a capture file: " + file);
+            if (header.getInt(4) != CaptureWriter.VERSION) throw new IOException("Unsupported capture version " + header.getInt(4) + ": " + file);
+
+            //only the headers of the images are read to find them
+            long[] offsets = new long[64];
+            int count = 0;
+            long offset = CaptureWriter.FILE_HEADER_SIZE;
+            while (offset + CaptureWriter.FRAME_HEADER_SIZE <= size) {
+                header.clear();
+                read(channel, header, offset);
+                long yLength = header.getInt(36);
+                long uLength = header.getInt(40);
+                long vLength = header.getInt(44);
+                if (yLength < 0 || uLength < 0 || vLength < 0) throw new IOException("Corrupted capture image at " + offset + ": " + file);
+                long end = offset + CaptureWriter.FRAME_HEADER_SIZE + yLength + uLength + vLength;
+                if (end > size) break;
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, 2 * count);
+                offsets[count++] = offset;
+                offset = end;
+            }
+            //end of the last complete image
+            long end = offset;
+
+            //each segment maps whole images
+            int[] segmentIndices = new int[count];
+            long[] segmentStarts = new long[count + 1];
+            int segmentCount = 0;
+            for (int i = 0; i < count; i++) {
+                long imageEnd = i + 1 < count ? offsets[i + 1] : end;
+                if (segmentCount == 0 || imageEnd - segmentStarts[segmentCount - 1] > MAX_SEGMENT_SIZE) {
+                    segmentStarts[segmentCount++] = offsets[i];
+                }
+                segmentIndices[i] = segmentCount - 1;
+            }
+            segmentStarts[segmentCount] = end;
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[s], segmentStarts[s + 1] - segmentStarts[s]);
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new CaptureReader(Arrays.copyOf(offsets, count), segmentIndices, segmentStarts, segments);
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of complete images of the file
+     */
+    public int getFrameCount() {
+        return mOffsets.length;
+    }
+
+    /**
+     * Reads an image, its planes are views of the mapped file
+     *
+     * @param index the index of the image in the file
+     * @param dst   the frame receiving the image
+     */
+    public void read(int index, @NotNull CapturedFrame dst) {
+        int segment = mSegmentIndices[index];
+        MappedByteBuffer buffer = mSegments[segment];
+        int position = (int) (mOffsets[index] - mSegmentStarts[segment]);
+        dst.timestamp = buffer.getLong(position);
+        dst.width = buffer.getInt(position + 8);
+        dst.height = buffer.getInt(position + 12);
+        dst.rotationDegrees = buffer.getInt(position + 16);
+        dst.yRowStride = buffer.getInt(position + 20);
+        dst.yPixelStride = buffer.getInt(position + 24);
+        dst.uvRowStride = buffer.getInt(position + 28);
+        dst.uvPixelStride = buffer.getInt(position + 32);
+        int yLength = buffer.getInt(position + 36);
+        int uLength = buffer.getInt(position + 40);
+        int vLength = buffer.getInt(position + 44);
+        position += CaptureWriter.FRAME_HEADER_SIZE;
+        dst.y = slice(buffer, position, yLength);
+        dst.u = slice(buffer, position + yLength, uLength);
+        dst.v = slice(buffer, position + yLength + uLength, vLength);
+    }
+
+    private static ByteBuffer slice(@NotNull ByteBuffer buffer, int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.limit(position + length);
+        return view.slice();
+    }
+
+    private static void read(@NotNull FileChannel channel, @NotNull ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, position + dst.position()) < 0) throw new EOFException();
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.boris.colornamer.imageutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends raw YUV_420_888 images to a capture file that {@link CaptureReader} replays.
+ * The planes are copied with their strides and timestamp into large batches written by a
+ * background thread, so the producer never waits for the disk: when every batch is still
+ * being written the image is dropped and counted. The file starts with a magic number and a
+ * version, then each image is a header of {@link #FRAME_HEADER_SIZE} bytes followed by the
+ * bytes of its Y, U and V planes, all numbers being little endian.
+ * {@link #append} and {@link #close()} must only be called by one thread.
+ */
+public class CaptureWriter implements Closeable {
+
+    //"CNYV" read as a little endian int
+    static final int MAGIC = 0x56594e43;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    //timestamp, size, rotation, strides and lengths of the planes
+    static final int FRAME_HEADER_SIZE = 48;
+
+    public static final int DEFAULT_BATCH_SIZE = 4 << 20;
+    //one batch being filled while the others are written
+    private static final int BATCH_COUNT = 3;
+    //sent to the writing thread after the last batch
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel mChannel;
+    private final BlockingQueue<ByteBuffer> mFreeBatches = new ArrayBlockingQueue<>(BATCH_COUNT);
+    private final BlockingQueue<ByteBuffer> mFullBatches = new ArrayBlockingQueue<>(BATCH_COUNT + 1);
+    private final Thread mThread;
+    //only used by the producer
+    private ByteBuffer mBatch;
+    private boolean mClosed;
+
+    private volatile IOException mError;
+    private volatile long mFrameCount;
+    private volatile long mDroppedCount;
+
+    /**
+     * Constructor, creates the file or empties it and starts the writing thread
+     *
+     * @param file      the capture file
+     * @param batchSize the number of bytes written at once, a larger image is written in its own batch
+     * @throws IOException if the file can not be created
+     */
+    public CaptureWriter(@NotNull File file, int batchSize) throws IOException {
+        this.mChannel = new FileOutputStream(file).getChannel();
+        for (int i = 0; i < BATCH_COUNT; i++) mFreeBatches.add(createBatch(batchSize));
+        this.mBatch = mFreeBatches.poll();
+        this.mBatch.putInt(MAGIC).putInt(VERSION);
+        this.mThread = new Thread(this::write, "CaptureWriter");
+        this.mThread.start();
+    }
+
+    /**
+     * Copies an image at the end of the current batch, the positions of the planes are kept
+     *
+     * @param timestamp       the timestamp of the image in nanoseconds
+     * @param width           the width of the image
+     * @param height          the height of the image
+     * @param rotationDegrees the rotation of the image relatively to the sensor
+     * @param yBuffer         the Y plane, its bytes from 0 to its limit are copied
+     * @param yRowStride      the row stride of the Y plane
+     * @param yPixelStride    the pixel stride of the Y plane
+     * @param uBuffer         the U plane
+     * @param vBuffer         the V plane
+     * @param uvRowStride     the row stride of the U and V planes
+     * @param uvPixelStride   the pixel stride of the U and V planes
+     * @return true if the image was copied, false if it was dropped or the writer failed
+     */
+    public boolean append(long timestamp, int width, int height, int rotationDegrees,
+                          @NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                          @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride) {
+        if (mClosed || mError != null) return false;
+        int size = FRAME_HEADER_SIZE + yBuffer.limit() + uBuffer.limit() + vBuffer.limit();
+        if (mBatch != null && mBatch.remaining() < size && mBatch.position() > 0) submit();
+        if (mBatch == null) mBatch = mFreeBatches.poll();
+        if (mBatch == null) {
+            //the disk is slower than the camera
+            mDroppedCount++;
+            return false;
+        }
+        if (mBatch.capacity() < size) mBatch = createBatch(size);
+
+        mBatch.putLong(timestamp).putInt(width).putInt(height).putInt(rotationDegrees)
+                .putInt(yRowStride).putInt(yPixelStride).putInt(uvRowStride).putInt(uvPixelStride)
+                .putInt(yBuffer.limit()).putInt(uBuffer.limit()).putInt(vBuffer.limit());
+        copy(yBuffer);
+        copy(uBuffer);
+        copy(vBuffer);
+        mFrameCount++;
+        return true;
+    }
+
+    /**
+     * Writes the last batch then closes the file once every batch is written
+     *
+     * @throws IOException if a batch could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) return;
+        mClosed = true;
+        if (mBatch != null && mBatch.position() > 0) submit();
+        mFullBatches.add(END);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mChannel.close();
+        if (mError != null) throw mError;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of images appended
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of images dropped because the disk was too slow
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    private static ByteBuffer createBatch(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void copy(@NotNull ByteBuffer plane) {
+        int position = plane.position();
+        plane.position(0);
+        mBatch.put(plane);
+        plane.position(position);
+    }
+
+    /**
+     * Hands the current batch to the writing thread, there is always room for it
+     */
+    private void submit() {
+        mBatch.flip();
+        mFullBatches.add(mBatch);
+        mBatch = null;
+    }
+
+    /**
+     * Loop of the writing thread, the written batches are given back to the producer
+     */
+    private void write() {
+        try {
+            while (true) {
+                ByteBuffer batch = mFullBatches.take();
+                if (batch == END) return;
+                try {
+                    while (batch.hasRemaining()) mChannel.write(batch);
+                } catch (IOException e) {
+                    mError = e;
+                }
+                batch.clear();
+                mFreeBatches.add(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
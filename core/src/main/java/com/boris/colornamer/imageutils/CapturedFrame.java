@@ -0,0 +1,25 @@
+package com.boris.colornamer.imageutils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A YUV_420_888 image read from a capture file, its planes are views of the mapped file
+ * so they stay valid until the reader is closed. The U and V planes have the same strides.
+ */
+public class CapturedFrame {
+
+    //timestamp of the camera image in nanoseconds
+    public long timestamp;
+    public int width;
+    public int height;
+    public int rotationDegrees;
+
+    public ByteBuffer y;
+    public ByteBuffer u;
+    public ByteBuffer v;
+    public int yRowStride;
+    public int yPixelStride;
+    public int uvRowStride;
+    public int uvPixelStride;
+
+}
@@ -0,0 +1,219 @@
+package com.boris.colornamer.imageutils;
+
+import com.boris.colornamer.model.ColorClassifier;
+import com.boris.colornamer.model.ColorNamer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Labels every pixel of a square map of a YUV_420_888 image with the id of its color name.
+ * The rows of the map are split in tiles classified in parallel by a fork-join pool, each pixel
+ * is converted to RGB then named by the given engine, such as the lookup table, or by the
+ * classification rules when there is none. The tasks are created once and reused, so segmenting a frame does not allocate.
+ * An instance must only be used by one thread at a time.
+ */
+public class ColorSegmenter {
+
+    //number of rows of the map classified by a task
+    private static final int TILE_ROWS = 32;
+    //opacity of the inside of the regions and of their outline in the rendered map
+    private static final int FILL_ALPHA = 0x50;
+    private static final int OUTLINE_ALPHA = 0xff;
+
+    //colors drawn for each color name, indexed by its id
+    private static final int[] DISPLAY_COLORS = new int[]{
+            0xff0000, 0x8b4513, 0xffa500, 0xffff00, 0x00c000, 0x00ffff,
+            0x0000ff, 0x800080, 0xff69b4, 0x000000, 0x808080, 0xffffff
+    };
+
+    private final ForkJoinPool mPool;
+    private final int mMaxSize;
+    private final TileTask[] mTiles;
+    private final RecursiveAction mRoot;
+    private int mTileCount;
+
+    //image being segmented, written before the tasks are invoked
+    private ByteBuffer mY;
+    private ByteBuffer mU;
+    private ByteBuffer mV;
+    private int mYRowStride;
+    private int mYPixelStride;
+    private int mUvRowStride;
+    private int mUvPixelStride;
+    private int mSize;
+    private ColorNamer mNamer;
+    private byte[] mLabels;
+    //columns and rows of the image read for each column and row of the map
+    private final int[] mSourceColumns;
+    private final int[] mSourceRows;
+
+    /**
+     * Constructor
+     *
+     * @param pool    the pool running the tiles
+     * @param maxSize the max side of the maps
+     */
+    public ColorSegmenter(@NotNull ForkJoinPool pool, int maxSize) {
+        this.mPool = pool;
+        this.mMaxSize = maxSize;
+        this.mSourceColumns = new int[maxSize];
+        this.mSourceRows = new int[maxSize];
+        this.mTiles = new TileTask[(maxSize + TILE_ROWS - 1) / TILE_ROWS];
+        for (int i = 0; i < mTiles.length; i++) mTiles[i] = new TileTask();
+        this.mRoot = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                //the first tile is classified by this thread while the others are stolen
+                for (int i = 1; i < mTileCount; i++) mTiles[i].fork();
+                mTiles[0].invoke();
+                for (int i = 1; i < mTileCount; i++) mTiles[i].join();
+            }
+        };
+    }
+
+    /**
+     * Labels each pixel of a square map covering the whole image, a pixel of the
+     * map takes the name of the nearest pixel of the image
+     *
+     * @param yBuffer       the Y plane
+     * @param yRowStride    the row stride of the Y plane
+     * @param yPixelStride  the pixel stride of the Y plane
+     * @param uBuffer       the U plane
+     * @param vBuffer       the V plane
+     * @param uvRowStride   the row stride of the U and V planes
+     * @param uvPixelStride the pixel stride of the U and V planes
+     * @param width         the width of the image
+     * @param height        the height of the image
+     * @param size          the side of the map, at most the max size
+     * @param namer         the engine naming the colors, or null to classify each pixel with the rules
+     * @param dst           the map receiving size * size ids, row by row
+     */
+    public void segment(@NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                        @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                        int width, int height, int size, @Nullable ColorNamer namer, @NotNull byte[] dst) {
+        segment(yBuffer, yRowStride, yPixelStride, uBuffer, vBuffer, uvRowStride, uvPixelStride, 0, 0, width, height, size, namer, dst);
+    }
+
+    /**
+     * Labels each pixel of a square map covering an area of the image, such as the crop rect
+     * displayed by the preview
+     *
+     * @param yBuffer       the Y plane
+     * @param yRowStride    the row stride of the Y plane
+     * @param yPixelStride  the pixel stride of the Y plane
+     * @param uBuffer       the U plane
+     * @param vBuffer       the V plane
+     * @param uvRowStride   the row stride of the U and V planes
+     * @param uvPixelStride the pixel stride of the U and V planes
+     * @param left          the first column of the area
+     * @param top           the first row of the area
+     * @param width         the width of the area
+     * @param height        the height of the area
+     * @param size          the side of the map, at most the max size
+     * @param namer         the engine naming the colors, or null to classify each pixel with the rules
+     * @param dst           the map receiving size * size ids, row by row
+     */
+    public void segment(@NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                        @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                        int left, int top, int width, int height, int size, @Nullable ColorNamer namer, @NotNull byte[] dst) {
+        if (size > mMaxSize) throw new IllegalArgumentException("map larger than " + mMaxSize);
+        mY = yBuffer;
+        mU = uBuffer;
+        mV = vBuffer;
+        mYRowStride = yRowStride;
+        mYPixelStride = yPixelStride;
+        mUvRowStride = uvRowStride;
+        mUvPixelStride = uvPixelStride;
+        mSize = size;
+        mNamer = namer;
+        mLabels = dst;
+        for (int i = 0; i < size; i++) {
+            mSourceColumns[i] = left + i * width / size;
+            mSourceRows[i] = top + i * height / size;
+        }
+
+        mTileCount = (size + TILE_ROWS - 1) / TILE_ROWS;
+        for (int i = 0; i < mTileCount; i++) {
+            mTiles[i].reinitialize();
+            mTiles[i].mStart = i * TILE_ROWS;
+            mTiles[i].mEnd = Math.min(size, (i + 1) * TILE_ROWS);
+        }
+        mRoot.reinitialize();
+        mPool.invoke(mRoot);
+
+        //the buffers of the image must not be kept
+        mY = null;
+        mU = null;
+        mV = null;
+        mLabels = null;
+    }
+
+    /**
+     * Rows of the map classified by one task
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int mStart;
+        private int mEnd;
+
+        @Override
+        protected void compute() {
+            for (int i = mStart; i < mEnd; i++) {
+                int yRow = mSourceRows[i] * mYRowStride;
+                int uvRow = (mSourceRows[i] / 2) * mUvRowStride;
+                int idx = i * mSize;
+                for (int j = 0; j < mSize; j++) {
+                    int column = mSourceColumns[j];
+                    int uvIdx = uvRow + (column / 2) * mUvPixelStride;
+                    int rgb = YuvPixels.yuvToRgb(mY.get(yRow + column * mYPixelStride) & 0xff, mU.get(uvIdx) & 0xff, mV.get(uvIdx) & 0xff);
+                    mLabels[idx + j] = mNamer != null ? mNamer.getNameId(rgb)
+                            : ColorClassifier.classify(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a map of labels as translucent regions with opaque outlines, each region has the color of its name.
+     * The map of an image read in the orientation of the camera buffer is drawn upright.
+     *
+     * @param labels          the map of the ids of the color names
+     * @param size            the side of the map
+     * @param rotationDegrees the clockwise rotation making the map upright, 0, 90, 180 or 270
+     * @param dst             the colors of the pixels of the upright map packed as 0xAARRGGBB, row by row
+     */
+    public static void render(@NotNull byte[] labels, int size, int rotationDegrees, @NotNull int[] dst) {
+        for (int i = 0; i < size; i++) {
+            int row = i * size;
+            //a row of the map is a row or a column of the upright map
+            int start = ImageRotation.toUprightIndex(i, 0, size, rotationDegrees);
+            int step = size > 1 ? ImageRotation.toUprightIndex(i, 1, size, rotationDegrees) - start : 0;
+            for (int j = 0; j < size; j++) {
+                int idx = row + j;
+                byte label = labels[idx];
+                //a pixel having a neighbor with another name is on an outline
+                boolean outline = (j + 1 < size && labels[idx + 1] != label) || (i + 1 < size && labels[idx + size] != label)
+                        || (j > 0 && labels[idx - 1] != label) || (i > 0 && labels[idx - size] != label);
+                dst[start + j * step] = (outline ? OUTLINE_ALPHA : FILL_ALPHA) << 24 | DISPLAY_COLORS[label];
+            }
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @param id the id of a color name
+     * @return the color drawn for the color name in the rendered maps, packed as 0xRRGGBB
+     */
+    public static int getDisplayColor(byte id) {
+        return DISPLAY_COLORS[id];
+    }
+
+}
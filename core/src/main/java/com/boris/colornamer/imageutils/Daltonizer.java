@@ -0,0 +1,205 @@
+package com.boris.colornamer.imageutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Remaps the colors of RGB images for a color vision deficiency, either to simulate how they are seen
+ * or to daltonize them, moving the differences that are not seen to the channels that are.
+ * The remapping is computed once for every color in a 3D lookup table, so filtering a pixel is a
+ * single lookup whatever the transform. The rows of an image are split in strips filtered in parallel
+ * by a fork-join pool, the tasks are created once and reused so filtering a frame does not allocate.
+ * An instance must only be used by one thread at a time.
+ */
+public class Daltonizer {
+
+    //color vision deficiencies
+    public static final int PROTANOPIA = 0;
+    public static final int DEUTERANOPIA = 1;
+    public static final int TRITANOPIA = 2;
+    public static final int DEFICIENCY_COUNT = 3;
+
+    //bits of each channel indexing the lookup table, the 6 highest bits of a channel select the same entry
+    public static final int LUT_BITS = 6;
+    private static final int LUT_SHIFT = 8 - LUT_BITS;
+    public static final int LUT_SIZE = 1 << (3 * LUT_BITS);
+
+    //simulation of each deficiency in linear RGB, from Machado et al. 2009 at full severity
+    private static final double[][] SIMULATIONS = new double[][]{
+            {0.152286, 1.052583, -0.204868, 0.114503, 0.786281, 0.099216, -0.003882, -0.048116, 1.051998},
+            {0.367322, 0.860646, -0.227968, 0.280085, 0.672501, 0.047413, -0.011820, 0.042940, 0.968881},
+            {1.255528, -0.076749, -0.178779, -0.078411, 0.930809, 0.147602, 0.004733, 0.691367, 0.303900}
+    };
+    //shift of the colors lost by each deficiency to the channels still seen, from Fidaner et al. 2005
+    private static final double[][] CORRECTIONS = new double[][]{
+            {0, 0, 0, 0.7, 1, 0, 0.7, 0, 1},
+            {0, 0, 0, 0.7, 1, 0, 0.7, 0, 1},
+            {1, 0, 0.7, 0, 1, 0.7, 0, 0, 0}
+    };
+
+    //number of rows of an image filtered by a task
+    private static final int STRIP_ROWS = 32;
+
+    private final ForkJoinPool mPool;
+    private final int mMaxHeight;
+    private final StripTask[] mStrips;
+    private final RecursiveAction mRoot;
+    private int mStripCount;
+
+    //image being filtered, written before the tasks are invoked
+    private byte[] mSrc;
+    private int[] mDst;
+    private int[] mLut;
+    private int mWidth;
+
+    /**
+     * Constructor
+     *
+     * @param pool      the pool running the strips
+     * @param maxHeight the max height of the images
+     */
+    public Daltonizer(@NotNull ForkJoinPool pool, int maxHeight) {
+        this.mPool = pool;
+        this.mMaxHeight = maxHeight;
+        this.mStrips = new StripTask[(maxHeight + STRIP_ROWS - 1) / STRIP_ROWS];
+        for (int i = 0; i < mStrips.length; i++) mStrips[i] = new StripTask();
+        this.mRoot = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                //the first strip is filtered by this thread while the others are stolen
+                for (int i = 1; i < mStripCount; i++) mStrips[i].fork();
+                mStrips[0].invoke();
+                for (int i = 1; i < mStripCount; i++) mStrips[i].join();
+            }
+        };
+    }
+
+    /**
+     * Creates the lookup table of a filter, about 250 000 colors are transformed so it must not be created on the UI thread
+     *
+     * @param deficiency the color vision deficiency, {@link #PROTANOPIA}, {@link #DEUTERANOPIA} or {@link #TRITANOPIA}
+     * @param daltonize  true to daltonize the colors, false to simulate how they are seen
+     * @return the filtered colors packed as 0xRRGGBB, indexed by {@link #getIndex(int, int, int)}
+     */
+    @NotNull
+    public static int[] createLut(int deficiency, boolean daltonize) {
+        if (deficiency < 0 || deficiency >= DEFICIENCY_COUNT) throw new IllegalArgumentException("Unknown deficiency " + deficiency);
+        double[] simulation = SIMULATIONS[deficiency];
+        double[] correction = CORRECTIONS[deficiency];
+        int levels = 1 << LUT_BITS;
+        //linear value of the center of the channel values selecting each entry
+        double[] linear = new double[levels];
+        for (int i = 0; i < levels; i++) linear[i] = toLinear(((i << LUT_SHIFT) + ((1 << LUT_SHIFT) - 1) / 2.0) / 255);
+
+        int[] lut = new int[LUT_SIZE];
+        double[] color = new double[3];
+        double[] seen = new double[3];
+        double[] error = new double[3];
+        for (int r = 0; r < levels; r++) {
+            for (int g = 0; g < levels; g++) {
+                for (int b = 0; b < levels; b++) {
+                    color[0] = linear[r];
+                    color[1] = linear[g];
+                    color[2] = linear[b];
+                    multiply(simulation, color, seen);
+                    if (daltonize) {
+                        for (int c = 0; c < 3; c++) error[c] = color[c] - seen[c];
+                        multiply(correction, error, seen);
+                        for (int c = 0; c < 3; c++) seen[c] += color[c];
+                    }
+                    lut[(r << (2 * LUT_BITS)) | (g << LUT_BITS) | b] = toSrgb(seen[0]) << 16 | toSrgb(seen[1]) << 8 | toSrgb(seen[2]);
+                }
+            }
+        }
+        return lut;
+    }
+
+    /**
+     * Getter
+     *
+     * @param r the red value between 0 and 255
+     * @param g the green value between 0 and 255
+     * @param b the blue value between 0 and 255
+     * @return the index of the color in the lookup tables
+     */
+    public static int getIndex(int r, int g, int b) {
+        return (r >> LUT_SHIFT) << (2 * LUT_BITS) | (g >> LUT_SHIFT) << LUT_BITS | (b >> LUT_SHIFT);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the max height of the filtered images
+     */
+    public int getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    /**
+     * Filters an image, each pixel is looked up in the table
+     *
+     * @param src    the pixels of the image as R, G, B bytes, row by row
+     * @param width  the width of the image
+     * @param height the height of the image, at most the max height
+     * @param lut    the lookup table of the filter
+     * @param dst    the filtered pixels packed as opaque 0xAARRGGBB, row by row
+     */
+    public void apply(@NotNull byte[] src, int width, int height, @NotNull int[] lut, @NotNull int[] dst) {
+        if (height > mMaxHeight) throw new IllegalArgumentException("image higher than " + mMaxHeight);
+        mSrc = src;
+        mDst = dst;
+        mLut = lut;
+        mWidth = width;
+
+        mStripCount = (height + STRIP_ROWS - 1) / STRIP_ROWS;
+        for (int i = 0; i < mStripCount; i++) {
+            mStrips[i].reinitialize();
+            mStrips[i].mStart = i * STRIP_ROWS;
+            mStrips[i].mEnd = Math.min(height, (i + 1) * STRIP_ROWS);
+        }
+        mRoot.reinitialize();
+        mPool.invoke(mRoot);
+
+        mSrc = null;
+        mDst = null;
+    }
+
+    /**
+     * Rows of the image filtered by one task
+     */
+    private class StripTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int mStart;
+        private int mEnd;
+
+        @Override
+        protected void compute() {
+            byte[] src = mSrc;
+            int[] dst = mDst;
+            int[] lut = mLut;
+            for (int idx = mStart * mWidth, end = mEnd * mWidth; idx < end; idx++) {
+                int i = 3 * idx;
+                dst[idx] = 0xff000000 | lut[getIndex(src[i] & 0xff, src[i + 1] & 0xff, src[i + 2] & 0xff)];
+            }
+        }
+    }
+
+    private static void multiply(@NotNull double[] matrix, @NotNull double[] vector, @NotNull double[] dst) {
+        for (int i = 0; i < 3; i++) dst[i] = matrix[3 * i] * vector[0] + matrix[3 * i + 1] * vector[1] + matrix[3 * i + 2] * vector[2];
+    }
+
+    private static double toLinear(double c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static int toSrgb(double c) {
+        c = Math.max(0, Math.min(1, c));
+        double v = c <= 0.0031308 ? 12.92 * c : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+        return (int) Math.round(255 * v);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.boris.colornamer.imageutils;
+
+/**
+ * Maps the coordinates of an upright image to the buffer of the camera, which has to be rotated
+ * clockwise by the rotation of the image to be upright. The camera buffers are read where they
+ * are instead of being rotated, so only the few sampled coordinates are transformed.
+ * The coordinates are relative to the size of the image, between 0 and 1.
+ */
+public class ImageRotation {
+
+    /**
+     * Getter
+     *
+     * @param x               the column of a point of the upright image
+     * @param y               the row of the point of the upright image
+     * @param rotationDegrees the clockwise rotation making the buffer upright, 0, 90, 180 or 270
+     * @return the column of the point in the buffer
+     */
+    public static float toBufferX(float x, float y, int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                return y;
+            case 180:
+                return 1 - x;
+            case 270:
+                return 1 - y;
+            default:
+                return x;
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @param x               the column of a point of the upright image
+     * @param y               the row of the point of the upright image
+     * @param rotationDegrees the clockwise rotation making the buffer upright, 0, 90, 180 or 270
+     * @return the row of the point in the buffer
+     */
+    public static float toBufferY(float x, float y, int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                return 1 - x;
+            case 180:
+                return 1 - y;
+            case 270:
+                return x;
+            default:
+                return y;
+        }
+    }
+
+    /**
+     * Getter, the inverse of the mapping of the coordinates for the pixels of a square grid
+     *
+     * @param i               the row of a cell of a square grid laid out as the buffer
+     * @param j               the column of the cell
+     * @param size            the side of the grid
+     * @param rotationDegrees the clockwise rotation making the buffer upright, 0, 90, 180 or 270
+     * @return the index of the cell in the upright grid, row by row
+     */
+    public static int toUprightIndex(int i, int j, int size, int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                return j * size + size - 1 - i;
+            case 180:
+                return (size - 1 - i) * size + size - 1 - j;
+            case 270:
+                return (size - 1 - j) * size + i;
+            default:
+                return i * size + j;
+        }
+    }
+
+}
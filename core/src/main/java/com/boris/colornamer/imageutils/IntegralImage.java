@@ -0,0 +1,200 @@
+package com.boris.colornamer.imageutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Summed-area tables of the red, green and blue values of a rectangle of a YUV_420_888 image,
+ * and of their squares. Once built, the mean color and the variance of any patch of the
+ * rectangle are computed in constant time whatever the size of the patch. A large rectangle
+ * is subsampled so that the tables never hold more cells than the capacity given to the
+ * constructor, the tables are created once so building them never allocates.
+ * An instance must only be used by one thread at a time.
+ */
+public class IntegralImage {
+
+    private final int mMaxPixels;
+    //sums of the red, green and blue values of the cells above and left of each entry, interleaved
+    private final int[] mSums;
+    //sums of the squared red, green and blue values of the cells above and left of each entry
+    private final long[] mSquareSums;
+
+    //rectangle of the image covered by the tables, and distance between two sampled pixels
+    private int mLeft;
+    private int mTop;
+    private int mStep;
+    private int mColumns;
+    private int mRows;
+
+    //entries at the corners of the last located patch and its number of sampled pixels
+    private int mE00;
+    private int mE01;
+    private int mE10;
+    private int mE11;
+    private int mCount;
+
+    /**
+     * Constructor
+     *
+     * @param maxPixels the max number of pixels sampled in the rectangle
+     */
+    public IntegralImage(int maxPixels) {
+        this.mMaxPixels = maxPixels;
+        //(columns + 1) * (rows + 1) entries, the most for a single row or column of pixels
+        int maxEntries = 2 * maxPixels + 2;
+        this.mSums = new int[3 * maxEntries];
+        this.mSquareSums = new long[maxEntries];
+    }
+
+    /**
+     * Builds the tables of a rectangle of the image, one pixel every step pixels is sampled,
+     * the step being the smallest one keeping the sampled pixels under the capacity
+     *
+     * @param yBuffer       the Y plane
+     * @param yRowStride    the row stride of the Y plane
+     * @param yPixelStride  the pixel stride of the Y plane
+     * @param uBuffer       the U plane
+     * @param vBuffer       the V plane
+     * @param uvRowStride   the row stride of the U and V planes
+     * @param uvPixelStride the pixel stride of the U and V planes
+     * @param left          the first column of the rectangle
+     * @param top           the first row of the rectangle
+     * @param width         the number of columns of the rectangle
+     * @param height        the number of rows of the rectangle
+     */
+    public void build(@NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                      @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                      int left, int top, int width, int height) {
+        mLeft = left;
+        mTop = top;
+        mStep = YuvPixels.getSampleStep(width, height, mMaxPixels);
+        mColumns = (width + mStep - 1) / mStep;
+        mRows = (height + mStep - 1) / mStep;
+
+        //the first row and the first column of the tables are zeros
+        int stride = mColumns + 1;
+        for (int j = 0; j < stride; j++) {
+            mSums[3 * j] = 0;
+            mSums[3 * j + 1] = 0;
+            mSums[3 * j + 2] = 0;
+            mSquareSums[j] = 0;
+        }
+
+        for (int i = 0; i < mRows; i++) {
+            int row = top + i * mStep;
+            int yRow = row * yRowStride;
+            int uvRow = (row / 2) * uvRowStride;
+            int idx = (i + 1) * stride;
+            mSums[3 * idx] = 0;
+            mSums[3 * idx + 1] = 0;
+            mSums[3 * idx + 2] = 0;
+            mSquareSums[idx] = 0;
+
+            //sums of the current row added to the entries of the previous row
+            int rowR = 0;
+            int rowG = 0;
+            int rowB = 0;
+            long rowSquares = 0;
+            for (int j = 0; j < mColumns; j++) {
+                int column = left + j * mStep;
+                int uvIdx = uvRow + (column / 2) * uvPixelStride;
+                int rgb = YuvPixels.yuvToRgb(yBuffer.get(yRow + column * yPixelStride) & 0xff, uBuffer.get(uvIdx) & 0xff, vBuffer.get(uvIdx) & 0xff);
+                int r = rgb >> 16;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                rowR += r;
+                rowG += g;
+                rowB += b;
+                rowSquares += r * r + g * g + b * b;
+
+                int entry = idx + j + 1;
+                int above = entry - stride;
+                mSums[3 * entry] = mSums[3 * above] + rowR;
+                mSums[3 * entry + 1] = mSums[3 * above + 1] + rowG;
+                mSums[3 * entry + 2] = mSums[3 * above + 2] + rowB;
+                mSquareSums[entry] = mSquareSums[above] + rowSquares;
+            }
+        }
+    }
+
+    /**
+     * Computes the mean color of a patch, the patch must be inside the built rectangle
+     *
+     * @param left   the first column of the patch in the image
+     * @param top    the first row of the patch in the image
+     * @param width  the number of columns of the patch
+     * @param height the number of rows of the patch
+     * @return the mean color of the sampled pixels of the patch packed as 0xRRGGBB
+     */
+    public int meanRgb(int left, int top, int width, int height) {
+        locate(left, top, width, height);
+        return (getSum(0) / mCount) << 16 | (getSum(1) / mCount) << 8 | (getSum(2) / mCount);
+    }
+
+    /**
+     * Computes the variance of the colors of a patch, the patch must be inside the built rectangle
+     *
+     * @param left   the first column of the patch in the image
+     * @param top    the first row of the patch in the image
+     * @param width  the number of columns of the patch
+     * @param height the number of rows of the patch
+     * @return the sum of the variances of the red, green and blue values of the sampled pixels of the patch
+     */
+    public float variance(int left, int top, int width, int height) {
+        locate(left, top, width, height);
+        double r = (double) getSum(0) / mCount;
+        double g = (double) getSum(1) / mCount;
+        double b = (double) getSum(2) / mCount;
+        double squares = (double) (mSquareSums[mE11] - mSquareSums[mE01] - mSquareSums[mE10] + mSquareSums[mE00]) / mCount;
+        //rounding can make the variance of a uniform patch slightly negative
+        return (float) Math.max(0, squares - r * r - g * g - b * b);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the distance between two sampled pixels of the last built rectangle
+     */
+    public int getStep() {
+        return mStep;
+    }
+
+    /**
+     * Finds the entries of the tables at the corners of a patch, a patch smaller than
+     * the step still contains the nearest sampled pixel
+     */
+    private void locate(int left, int top, int width, int height) {
+        int stride = mColumns + 1;
+        int c0 = Math.min(mColumns - 1, getCell(left - mLeft));
+        int c1 = Math.max(c0 + 1, Math.min(mColumns, getCell(left + width - mLeft)));
+        int r0 = Math.min(mRows - 1, getCell(top - mTop));
+        int r1 = Math.max(r0 + 1, Math.min(mRows, getCell(top + height - mTop)));
+        mE00 = r0 * stride + c0;
+        mE01 = r0 * stride + c1;
+        mE10 = r1 * stride + c0;
+        mE11 = r1 * stride + c1;
+        mCount = (c1 - c0) * (r1 - r0);
+    }
+
+    /**
+     * Getter
+     *
+     * @param offset the offset of a pixel from the start of the rectangle
+     * @return the number of sampled pixels before the pixel in this direction
+     */
+    private int getCell(int offset) {
+        return Math.max(0, (offset + mStep - 1) / mStep);
+    }
+
+    /**
+     * Getter
+     *
+     * @param channel 0 for red, 1 for green and 2 for blue
+     * @return the sum of the channel over the last located patch
+     */
+    private int getSum(int channel) {
+        return mSums[3 * mE11 + channel] - mSums[3 * mE01 + channel] - mSums[3 * mE10 + channel] + mSums[3 * mE00 + channel];
+    }
+
+}
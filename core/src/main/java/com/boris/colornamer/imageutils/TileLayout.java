@@ -0,0 +1,64 @@
+package com.boris.colornamer.imageutils;
+
+/**
+ * Layout of the tiles of a large image decoded region by region. A level of the image is
+ * decoded with a power of two subsample size, and each tile of a level holds {@link #TILE_SIZE}
+ * decoded pixels on each side, so it covers sampleSize times more pixels of the image.
+ */
+public class TileLayout {
+
+    //side of a decoded tile in pixels
+    public static final int TILE_SIZE = 256;
+    //coarsest level, a tile of a 50 megapixels image then covers a quarter of it
+    public static final int MAX_SAMPLE_SIZE = 32;
+
+    /**
+     * Getter, the coarsest level still having at least one decoded pixel per displayed pixel
+     *
+     * @param scale the number of displayed pixels per pixel of the image
+     * @return the subsample size of the level to decode, a power of two
+     */
+    public static int getSampleSize(float scale) {
+        int sampleSize = 1;
+        while (sampleSize < MAX_SAMPLE_SIZE && 2 * sampleSize * scale <= 1) sampleSize *= 2;
+        return sampleSize;
+    }
+
+    /**
+     * Getter, the finest level small enough to be decoded whole in the given size
+     *
+     * @param width     the width of the image
+     * @param height    the height of the image
+     * @param maxWidth  the max width of the decoded image
+     * @param maxHeight the max height of the decoded image
+     * @return the subsample size of the level, a power of two
+     */
+    public static int getSampleSizeToFit(int width, int height, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+        while (width / sampleSize > maxWidth || height / sampleSize > maxHeight) sampleSize *= 2;
+        return sampleSize;
+    }
+
+    /**
+     * Getter
+     *
+     * @param sampleSize the subsample size of the level
+     * @return the side of the tiles of the level in pixels of the image
+     */
+    public static int getTileSpan(int sampleSize) {
+        return TILE_SIZE * sampleSize;
+    }
+
+    /**
+     * Getter
+     *
+     * @param sampleSize the subsample size of the level, a power of two
+     * @param column     the column of the tile in the level
+     * @param row        the row of the tile in the level
+     * @return the key identifying the tile among the tiles of all the levels
+     */
+    public static long getKey(int sampleSize, int column, int row) {
+        return (long) Integer.numberOfTrailingZeros(sampleSize) << 48 | (long) column << 24 | row;
+    }
+
+}
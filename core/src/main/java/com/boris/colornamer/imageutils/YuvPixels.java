@@ -0,0 +1,201 @@
+package com.boris.colornamer.imageutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and copies the raw planes of YUV_420_888 images, independently of the camera
+ * classes so the same code runs on the device and on the JVM
+ */
+public class YuvPixels {
+
+    /**
+     * Layouts of the chroma planes
+     */
+    public static final int LAYOUT_I420 = 0;
+    public static final int LAYOUT_NV12 = 1;
+    public static final int LAYOUT_NV21 = 2;
+
+    //fixed-point BT.601 coefficients used by OpenCV for COLOR_YUV2RGB_NV21, NV12 and I420
+    private static final int SHIFT = 20;
+    private static final int HALF = 1 << (SHIFT - 1);
+    private static final int CY = 1220542;
+    private static final int CUB = 2116026;
+    private static final int CUG = -409993;
+    private static final int CVG = -852492;
+    private static final int CVR = 1673527;
+
+    /**
+     * Computes the mean color of a rectangle of the image, the strides of the planes are
+     * used so the same code reads NV12, NV21 and I420 layouts with or without padding
+     *
+     * @param yBuffer       the Y plane
+     * @param yRowStride    the row stride of the Y plane
+     * @param yPixelStride  the pixel stride of the Y plane
+     * @param uBuffer       the U plane
+     * @param vBuffer       the V plane
+     * @param uvRowStride   the row stride of the U and V planes
+     * @param uvPixelStride the pixel stride of the U and V planes
+     * @param left          the first column of the rectangle
+     * @param top           the first row of the rectangle
+     * @param width         the number of columns of the rectangle
+     * @param height        the number of rows of the rectangle
+     * @return the mean color packed as 0xRRGGBB
+     */
+    public static int meanRgb(@NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                              @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                              int left, int top, int width, int height) {
+        int sumR = 0;
+        int sumG = 0;
+        int sumB = 0;
+        for (int i = top; i < top + height; i++) {
+            int yRow = i * yRowStride;
+            int uvRow = (i / 2) * uvRowStride;
+            for (int j = left; j < left + width; j++) {
+                int uvIdx = uvRow + (j / 2) * uvPixelStride;
+                int rgb = yuvToRgb(yBuffer.get(yRow + j * yPixelStride) & 0xff, uBuffer.get(uvIdx) & 0xff, vBuffer.get(uvIdx) & 0xff);
+                sumR += rgb >> 16;
+                sumG += (rgb >> 8) & 0xff;
+                sumB += rgb & 0xff;
+            }
+        }
+
+        int count = width * height;
+        return (sumR / count) << 16 | (sumG / count) << 8 | (sumB / count);
+    }
+
+    /**
+     * Converts the pixels of a rectangle of the image to RGB, one pixel every step pixels in both directions
+     *
+     * @param yBuffer       the Y plane
+     * @param yRowStride    the row stride of the Y plane
+     * @param yPixelStride  the pixel stride of the Y plane
+     * @param uBuffer       the U plane
+     * @param vBuffer       the V plane
+     * @param uvRowStride   the row stride of the U and V planes
+     * @param uvPixelStride the pixel stride of the U and V planes
+     * @param left          the first column of the rectangle
+     * @param top           the first row of the rectangle
+     * @param width         the number of columns of the rectangle
+     * @param height        the number of rows of the rectangle
+     * @param step          the distance between two sampled pixels
+     * @param dst           the array receiving the colors packed as 0xRRGGBB, it must hold
+     *                      ceil(width / step) * ceil(height / step) colors
+     * @return the number of sampled pixels
+     */
+    public static int sampleRgb(@NotNull ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                                @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                                int left, int top, int width, int height, int step, @NotNull int[] dst) {
+        int count = 0;
+        for (int i = top; i < top + height; i += step) {
+            int yRow = i * yRowStride;
+            int uvRow = (i / 2) * uvRowStride;
+            for (int j = left; j < left + width; j += step) {
+                int uvIdx = uvRow + (j / 2) * uvPixelStride;
+                dst[count++] = yuvToRgb(yBuffer.get(yRow + j * yPixelStride) & 0xff, uBuffer.get(uvIdx) & 0xff, vBuffer.get(uvIdx) & 0xff);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Getter
+     *
+     * @param width      the number of columns of a rectangle
+     * @param height     the number of rows of a rectangle
+     * @param maxSamples the max number of pixels to sample
+     * @return the smallest step of {@link #sampleRgb} sampling at most the given number of pixels of the rectangle
+     */
+    public static int getSampleStep(int width, int height, int maxSamples) {
+        int step = Math.max(1, (int) Math.sqrt((double) width * height / maxSamples));
+        while (((width + step - 1) / step) * ((height + step - 1) / step) > maxSamples) step++;
+        return step;
+    }
+
+    /**
+     * Converts a YUV pixel to RGB with the same arithmetic as OpenCV
+     *
+     * @param y the luma of the pixel between 0 and 255
+     * @param u the blue-difference chroma of the pixel between 0 and 255
+     * @param v the red-difference chroma of the pixel between 0 and 255
+     * @return the color packed as 0xRRGGBB
+     */
+    public static int yuvToRgb(int y, int u, int v) {
+        int yy = Math.max(0, y - 16) * CY;
+        u -= 128;
+        v -= 128;
+        int r = clamp((yy + HALF + CVR * v) >> SHIFT);
+        int g = clamp((yy + HALF + CVG * v + CUG * u) >> SHIFT);
+        int b = clamp((yy + HALF + CUB * u) >> SHIFT);
+        return r << 16 | g << 8 | b;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+
+    /**
+     * Copies the planes in the given buffer, the Y plane is followed by the U and V planes
+     * for the I420 layout, and by the interleaved chroma for the NV12 and NV21 layouts
+     *
+     * @param yBuffer     the Y plane
+     * @param yRowStride  the row stride of the Y plane
+     * @param uBuffer     the U plane
+     * @param vBuffer     the V plane
+     * @param uvRowStride the row stride of the U and V planes
+     * @param w           the width of the image
+     * @param h           the height of the image
+     * @param layout      the layout of the chroma planes
+     * @param dst         the buffer that will contain the w * (h + h / 2) bytes of the image
+     */
+    public static void stage(@NotNull ByteBuffer yBuffer, int yRowStride, @NotNull ByteBuffer uBuffer, @NotNull ByteBuffer vBuffer,
+                             int uvRowStride, int w, int h, int layout, @NotNull ByteBuffer dst) {
+        copyPlane(yBuffer, yRowStride, w, h, w, dst);
+
+        if (layout == LAYOUT_I420) {
+            copyPlane(uBuffer, uvRowStride, w / 2, h / 2, w / 2, dst);
+            copyPlane(vBuffer, uvRowStride, w / 2, h / 2, w / 2, dst);
+        } else {
+            //the plane starting first contains all the interleaved chroma but the last byte,
+            //which is the last byte of the other plane
+            ByteBuffer first = layout == LAYOUT_NV12 ? uBuffer : vBuffer;
+            ByteBuffer second = layout == LAYOUT_NV12 ? vBuffer : uBuffer;
+            copyPlane(first, uvRowStride, w, h / 2, w - 1, dst);
+            dst.put(second.get(second.position() + uvRowStride * (h / 2 - 1) + w - 2));
+        }
+    }
+
+    /**
+     * Copies the rows of a plane without their padding, the position and the limit of the plane are kept
+     *
+     * @param src           the plane to copy
+     * @param rowStride     the number of bytes between the starts of two consecutive rows
+     * @param rowLength     the number of bytes to copy for each row
+     * @param rows          the number of rows
+     * @param lastRowLength the number of bytes to copy for the last row
+     * @param dst           the buffer the rows are appended to
+     */
+    public static void copyPlane(@NotNull ByteBuffer src, int rowStride, int rowLength, int rows, int lastRowLength, @NotNull ByteBuffer dst) {
+        int position = src.position();
+        int limit = src.limit();
+
+        if (rowStride == rowLength) {
+            // When the row stride equals the row length, we can copy the entire plane in one go
+            src.limit(position + rowLength * (rows - 1) + lastRowLength);
+            dst.put(src);
+        } else {
+            // When not equal, we need to copy the plane row by row
+            for (int i = 0; i < rows; i++) {
+                int start = position + i * rowStride;
+                src.limit(start + (i < rows - 1 ? rowLength : lastRowLength));
+                src.position(start);
+                dst.put(src);
+            }
+        }
+
+        src.limit(limit);
+        src.position(position);
+    }
+
+}
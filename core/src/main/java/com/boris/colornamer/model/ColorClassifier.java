@@ -0,0 +1,104 @@
+package com.boris.colornamer.model;
+
+public class ColorClassifier {
+
+    //ids of the color names, used as indices by the lookup table
+    public static final byte RED = 0;
+    public static final byte BROWN = 1;
+    public static final byte ORANGE = 2;
+    public static final byte YELLOW = 3;
+    public static final byte GREEN = 4;
+    public static final byte CYAN = 5;
+    public static final byte BLUE = 6;
+    public static final byte PURPLE = 7;
+    public static final byte PINK = 8;
+    public static final byte BLACK = 9;
+    public static final byte GRAY = 10;
+    public static final byte WHITE = 11;
+
+    /**
+     * The number of color names
+     */
+    public static final int COUNT = 12;
+
+    //locale independent keys of the color names, indexed by their id
+    private static final String[] KEYS = new String[]{
+            "red", "brown", "orange", "yellow", "green", "cyan",
+            "blue", "purple", "pink", "black", "gray", "white"
+    };
+
+    /**
+     * Getter
+     *
+     * @param id the id of the color name
+     * @return the locale independent key of the color name, the same as its string resource name
+     */
+    public static String getKey(byte id) {
+        return KEYS[id];
+    }
+
+    /**
+     * Getter
+     *
+     * @param key the locale independent key of a color name, case is ignored
+     * @return the id of the color name, or -1 if the key is unknown
+     */
+    public static byte getId(String key) {
+        for (byte id = 0; id < COUNT; id++) {
+            if (KEYS[id].equalsIgnoreCase(key)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Classifies a color using its packed HSV values, the thresholds on the saturation
+     * and the value are compared with integers so that no float computation is needed
+     *
+     * @param hsv the packed HSV values of the color, as computed by {@link HsvConverter#toHsv(int, int, int)}
+     * @return the id of the color name
+     */
+    public static byte classify(int hsv) {
+        int h = HsvConverter.getH(hsv);
+        int max = HsvConverter.getMax(hsv);
+        int chroma = HsvConverter.getChroma(hsv);
+
+        //value < 0.18
+        if (100 * max < 18 * 255) return BLACK;
+
+        //saturation < 0.1
+        if (10 * chroma < max) {
+            //value < 0.85
+            return 100 * max < 85 * 255 ? GRAY : WHITE;
+        }
+
+        if (h < 15 || h >= 346) return RED;
+
+        //saturation < 0.75
+        if (h < 40) return 4 * chroma < 3 * max ? BROWN : ORANGE;
+
+        if (h < 74) return YELLOW;
+
+        if (h < 155) return GREEN;
+
+        if (h < 186) return CYAN;
+
+        if (h < 278) return BLUE;
+
+        if (h < 330) return PURPLE;
+
+        return PINK;
+    }
+
+    /**
+     * Classifies a color using its red, green and blue values
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the id of the color name
+     */
+    public static byte classify(int r, int g, int b) {
+        return classify(HsvConverter.toHsv(r, g, b));
+    }
+
+}
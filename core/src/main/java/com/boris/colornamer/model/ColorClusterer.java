@@ -0,0 +1,228 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Finds the dominant colors of a set of pixels with k-means. The clusters are seeded with
+ * the most populated bins of a coarse color histogram, then refined by a few iterations.
+ * All the buffers are created by the constructor so clustering never allocates, and
+ * an instance must only be used by one thread at a time.
+ */
+public class ColorClusterer {
+
+    //bits kept of each channel for the histogram, 8 levels per channel
+    private static final int HISTOGRAM_BITS = 3;
+    private static final int BIN_COUNT = 1 << (3 * HISTOGRAM_BITS);
+    //min squared distance between two seeds, so two seeds do not start on the same color
+    private static final int MIN_SEED_DISTANCE2 = 48 * 48;
+
+    private final int mMaxClusters;
+
+    //histogram of the pixels
+    private final int[] mBinCounts = new int[BIN_COUNT];
+    private final int[] mBinSums = new int[3 * BIN_COUNT];
+
+    //cluster of each pixel
+    private final byte[] mAssignments;
+
+    //centers and sizes of the clusters
+    private final int[] mCenters;
+    private final int[] mCounts;
+    private final long[] mSums;
+    private int mClusterCount;
+    private int mPixelCount;
+
+    /**
+     * Constructor
+     *
+     * @param maxPixels   the max number of pixels given to {@link #cluster(int[], int, int, int)}
+     * @param maxClusters the max number of clusters, at most 127
+     */
+    public ColorClusterer(int maxPixels, int maxClusters) {
+        if (maxClusters < 1 || maxClusters > Byte.MAX_VALUE) throw new IllegalArgumentException("invalid number of clusters " + maxClusters);
+        this.mMaxClusters = maxClusters;
+        this.mAssignments = new byte[maxPixels];
+        this.mCenters = new int[maxClusters];
+        this.mCounts = new int[maxClusters];
+        this.mSums = new long[3 * maxClusters];
+    }
+
+    /**
+     * Groups the given pixels in at most k clusters, sorted from the largest to the smallest
+     *
+     * @param pixels     the pixels packed as 0xRRGGBB
+     * @param count      the number of pixels to read from the array
+     * @param k          the max number of clusters, fewer are found when the pixels have fewer distinct colors
+     * @param iterations the max number of k-means iterations after the seeding
+     * @return the number of clusters found
+     */
+    public int cluster(@NotNull int[] pixels, int count, int k, int iterations) {
+        if (count > mAssignments.length) throw new IllegalArgumentException("too many pixels " + count);
+        k = Math.min(k, mMaxClusters);
+        mPixelCount = count;
+        mClusterCount = 0;
+        if (count == 0) return 0;
+
+        seed(pixels, count, k);
+        for (int i = 0; i < iterations; i++) {
+            if (!assign(pixels, count) && i > 0) break;
+            update();
+        }
+        //the sizes of the clusters match their final centers
+        assign(pixels, count);
+        update();
+        sort();
+        return mClusterCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @param cluster the index of a cluster, 0 for the largest
+     * @return the mean color of the cluster packed as 0xRRGGBB
+     */
+    public int getColor(int cluster) {
+        return mCenters[cluster];
+    }
+
+    /**
+     * Getter
+     *
+     * @param cluster the index of a cluster, 0 for the largest
+     * @return the part of the pixels in the cluster, between 0 and 1
+     */
+    public float getCoverage(int cluster) {
+        return (float) mCounts[cluster] / mPixelCount;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of clusters found by the last call to {@link #cluster(int[], int, int, int)}
+     */
+    public int getClusterCount() {
+        return mClusterCount;
+    }
+
+    /**
+     * Chooses the first centers among the mean colors of the most populated bins of the histogram
+     */
+    private void seed(@NotNull int[] pixels, int count, int k) {
+        Arrays.fill(mBinCounts, 0);
+        Arrays.fill(mBinSums, 0);
+        int shift = 8 - HISTOGRAM_BITS;
+        for (int i = 0; i < count; i++) {
+            int rgb = pixels[i];
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int bin = (r >> shift) << (2 * HISTOGRAM_BITS) | (g >> shift) << HISTOGRAM_BITS | (b >> shift);
+            mBinCounts[bin]++;
+            mBinSums[3 * bin] += r;
+            mBinSums[3 * bin + 1] += g;
+            mBinSums[3 * bin + 2] += b;
+        }
+
+        while (mClusterCount < k) {
+            int best = -1;
+            int bestColor = 0;
+            for (int bin = 0; bin < BIN_COUNT; bin++) {
+                int binCount = mBinCounts[bin];
+                if (binCount == 0 || (best >= 0 && binCount <= mBinCounts[best])) continue;
+                int color = (mBinSums[3 * bin] / binCount) << 16 | (mBinSums[3 * bin + 1] / binCount) << 8 | (mBinSums[3 * bin + 2] / binCount);
+                if (isFarFromCenters(color)) {
+                    best = bin;
+                    bestColor = color;
+                }
+            }
+            //no distinct color left
+            if (best < 0) break;
+            mCenters[mClusterCount++] = bestColor;
+        }
+    }
+
+    private boolean isFarFromCenters(int color) {
+        for (int c = 0; c < mClusterCount; c++) {
+            if (distance2(color, mCenters[c]) < MIN_SEED_DISTANCE2) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Assigns each pixel to its nearest center and sums the pixels of each cluster
+     *
+     * @return true if at least one pixel changed of cluster
+     */
+    private boolean assign(@NotNull int[] pixels, int count) {
+        Arrays.fill(mCounts, 0, mClusterCount, 0);
+        Arrays.fill(mSums, 0, 3 * mClusterCount, 0);
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            int rgb = pixels[i];
+            int nearest = 0;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int c = 0; c < mClusterCount; c++) {
+                int distance = distance2(rgb, mCenters[c]);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = c;
+                }
+            }
+            if (mAssignments[i] != nearest) {
+                mAssignments[i] = (byte) nearest;
+                changed = true;
+            }
+            mCounts[nearest]++;
+            mSums[3 * nearest] += (rgb >> 16) & 0xff;
+            mSums[3 * nearest + 1] += (rgb >> 8) & 0xff;
+            mSums[3 * nearest + 2] += rgb & 0xff;
+        }
+        return changed;
+    }
+
+    /**
+     * Moves each center to the mean of its pixels and removes the empty clusters
+     */
+    private void update() {
+        int kept = 0;
+        for (int c = 0; c < mClusterCount; c++) {
+            int clusterCount = mCounts[c];
+            if (clusterCount == 0) continue;
+            int r = (int) ((mSums[3 * c] + clusterCount / 2) / clusterCount);
+            int g = (int) ((mSums[3 * c + 1] + clusterCount / 2) / clusterCount);
+            int b = (int) ((mSums[3 * c + 2] + clusterCount / 2) / clusterCount);
+            mCenters[kept] = r << 16 | g << 8 | b;
+            mCounts[kept] = clusterCount;
+            kept++;
+        }
+        mClusterCount = kept;
+    }
+
+    /**
+     * Sorts the clusters from the largest to the smallest, there are only a few of them
+     */
+    private void sort() {
+        for (int i = 1; i < mClusterCount; i++) {
+            int center = mCenters[i];
+            int clusterCount = mCounts[i];
+            int j = i - 1;
+            while (j >= 0 && mCounts[j] < clusterCount) {
+                mCenters[j + 1] = mCenters[j];
+                mCounts[j + 1] = mCounts[j];
+                j--;
+            }
+            mCenters[j + 1] = center;
+            mCounts[j + 1] = clusterCount;
+        }
+    }
+
+    private static int distance2(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xff) - ((rgb2 >> 16) & 0xff);
+        int dg = ((rgb1 >> 8) & 0xff) - ((rgb2 >> 8) & 0xff);
+        int db = (rgb1 & 0xff) - (rgb2 & 0xff);
+        return dr * dr + dg * dg + db * db;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class ColorNameTable implements ColorNamer {
+
+    /**
+     * The number of entries of the table, one for each 24-bit RGB color
+     */
+    public static final int SIZE = 1 << 24;
+
+    /**
+     * The name of the file containing the table, to change when the classification rules change
+     */
+    public static final String FILE_NAME = "color_names_v1.bin";
+
+    private static volatile ColorNameTable sInstance;
+
+    private final ByteBuffer mTable;
+
+    private ColorNameTable(@NotNull ByteBuffer table) {
+        this.mTable = table;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the shared table, or null while it is not loaded yet
+     */
+    public static ColorNameTable getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Loads the shared table in a background thread, the color names are
+     * computed with the classification rules until the table is available
+     *
+     * @param dir the directory in which the table file is stored
+     */
+    public static void loadInBackground(@NotNull File dir) {
+        Thread thread = new Thread(() -> {
+            try {
+                sInstance = load(new File(dir, FILE_NAME));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "ColorNameTable");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Memory-maps the table stored in the given file, the file is
+     * created first if it does not exist or is incomplete
+     *
+     * @param file the file containing the table
+     * @return the table mapped from the file
+     * @throws IOException if the file can not be written or mapped
+     */
+    public static ColorNameTable load(@NotNull File file) throws IOException {
+        if (file.length() != SIZE) {
+            //write in a temporary file so that an interrupted write is never mapped
+            File tmp = new File(file.getPath() + ".tmp");
+            try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                raf.setLength(0);
+                FileChannel channel = raf.getChannel();
+                ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+                for (int r = 0; r < 256; r++) {
+                    chunk.clear();
+                    fill(chunk, r);
+                    chunk.flip();
+                    while (chunk.hasRemaining()) channel.write(chunk);
+                }
+            }
+            if (!tmp.renameTo(file)) throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer table = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, SIZE);
+            return new ColorNameTable(table);
+        }
+    }
+
+    /**
+     * Computes the table in memory
+     *
+     * @return the computed table
+     */
+    public static ColorNameTable build() {
+        ByteBuffer table = ByteBuffer.allocate(SIZE);
+        for (int r = 0; r < 256; r++) fill(table, r);
+        table.flip();
+        return new ColorNameTable(table);
+    }
+
+    /**
+     * Puts the ids of the color names of all the colors having the given red value
+     *
+     * @param dst the buffer to fill with 256 * 256 ids
+     * @param r   the red value of the colors
+     */
+    private static void fill(ByteBuffer dst, int r) {
+        for (int g = 0; g < 256; g++) {
+            for (int b = 0; b < 256; b++) {
+                dst.put(ColorClassifier.classify(r, g, b));
+            }
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the id of the color name
+     */
+    public byte getNameId(int r, int g, int b) {
+        return mTable.get((r << 16) | (g << 8) | b);
+    }
+
+    @Override
+    public byte getNameId(int rgb) {
+        return mTable.get(rgb);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.boris.colornamer.model;
+
+/**
+ * Gives the name of a color, implemented by the engines that can replace the classification rules
+ */
+public interface ColorNamer {
+
+    /**
+     * Getter
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @return the id of the color name, as defined in {@link ColorClassifier}
+     */
+    byte getNameId(int rgb);
+
+}
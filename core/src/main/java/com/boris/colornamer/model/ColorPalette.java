@@ -0,0 +1,238 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reference colors, each one having a color name, indexed by a k-d tree in CIELAB so that
+ * the nearest reference of a color, in the CIE76 Delta E sense, is found without comparing
+ * the color with every reference. A color name usually has several references, for its
+ * light and dark shades. A palette is immutable and can be shared between threads.
+ */
+public class ColorPalette {
+
+    //references of the default palette, as name key and color pairs
+    private static final Object[] DEFAULT_COLORS = new Object[]{
+            "red", 0xff0000, "red", 0xc41e1e, "red", 0x8b0000, "red", 0xe0483c,
+            "brown", 0x8b4513, "brown", 0xa0522d, "brown", 0x654321, "brown", 0x5c4033, "brown", 0xc19a6b,
+            "orange", 0xffa500, "orange", 0xff8c00, "orange", 0xff7518, "orange", 0xe67e22,
+            "yellow", 0xffff00, "yellow", 0xffd700, "yellow", 0xf0e68c, "yellow", 0xfff44f,
+            "green", 0x00ff00, "green", 0x008000, "green", 0x006400, "green", 0x228b22, "green", 0x9acd32, "green", 0x90ee90,
+            "cyan", 0x00ffff, "cyan", 0x00ced1, "cyan", 0x40e0d0, "cyan", 0x008b8b,
+            "blue", 0x0000ff, "blue", 0x00008b, "blue", 0x4169e1, "blue", 0x1e90ff, "blue", 0x87ceeb,
+            "purple", 0x800080, "purple", 0x8a2be2, "purple", 0x9370db, "purple", 0x4b0082, "purple", 0xee82ee,
+            "pink", 0xffc0cb, "pink", 0xff69b4, "pink", 0xff1493, "pink", 0xdb7093,
+            "black", 0x000000, "black", 0x1c1c1c,
+            "gray", 0x808080, "gray", 0xa9a9a9, "gray", 0x696969, "gray", 0xc0c0c0,
+            "white", 0xffffff, "white", 0xf5f5f5
+    };
+
+    private static volatile ColorPalette sDefault;
+
+    //references sorted in the order of the nodes of the tree
+    private final int[] mColors;
+    private final byte[] mNameIds;
+    //CIELAB values of the references, 3 floats per reference
+    private final float[] mLab;
+    //axis splitting the references of each node, the node of a range of references is at its middle
+    private final byte[] mAxes;
+
+    /**
+     * Constructor, builds the tree of the references
+     *
+     * @param colors  the reference colors packed as 0xRRGGBB
+     * @param nameIds the id of the color name of each reference
+     */
+    public ColorPalette(@NotNull int[] colors, @NotNull byte[] nameIds) {
+        if (colors.length == 0 || colors.length != nameIds.length) throw new IllegalArgumentException("invalid palette of " + colors.length + " colors");
+        int count = colors.length;
+        this.mColors = colors.clone();
+        this.mNameIds = nameIds.clone();
+        this.mLab = new float[3 * count];
+        this.mAxes = new byte[count];
+        float[] lab = new float[3];
+        for (int i = 0; i < count; i++) {
+            if (mNameIds[i] < 0 || mNameIds[i] >= ColorClassifier.COUNT) throw new IllegalArgumentException("invalid color name id " + mNameIds[i]);
+            LabConverter.toLab(mColors[i], lab);
+            System.arraycopy(lab, 0, mLab, 3 * i, 3);
+        }
+        build(0, count);
+    }
+
+    /**
+     * Getter, the default palette is created at the first call
+     *
+     * @return the palette of the app, a few shades of each color name
+     */
+    @NotNull
+    public static ColorPalette getDefault() {
+        if (sDefault == null) {
+            int count = DEFAULT_COLORS.length / 2;
+            int[] colors = new int[count];
+            byte[] nameIds = new byte[count];
+            for (int i = 0; i < count; i++) {
+                nameIds[i] = ColorClassifier.getId((String) DEFAULT_COLORS[2 * i]);
+                colors[i] = (Integer) DEFAULT_COLORS[2 * i + 1];
+            }
+            sDefault = new ColorPalette(colors, nameIds);
+        }
+        return sDefault;
+    }
+
+    /**
+     * Reads a palette with one reference per line, as the key of its color name and its hexadecimal
+     * color separated by a comma, such as "brown,8b4513". Empty lines and lines starting with # are ignored.
+     *
+     * @param reader the reader of the palette
+     * @return the palette read
+     * @throws IOException if the palette can not be read or a line is invalid
+     */
+    @NotNull
+    public static ColorPalette parse(@NotNull Reader reader) throws IOException {
+        List<int[]> references = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split(",");
+            byte id = fields.length == 2 ? ColorClassifier.getId(fields[0].trim()) : -1;
+            if (id < 0) throw new IOException("Invalid palette line " + lineNumber + ": " + line);
+            try {
+                references.add(new int[]{Integer.parseInt(fields[1].trim(), 16) & 0xffffff, id});
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid palette color at line " + lineNumber + ": " + line, e);
+            }
+        }
+        if (references.isEmpty()) throw new IOException("Empty palette");
+
+        int[] colors = new int[references.size()];
+        byte[] nameIds = new byte[references.size()];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = references.get(i)[0];
+            nameIds[i] = (byte) references.get(i)[1];
+        }
+        return new ColorPalette(colors, nameIds);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of references
+     */
+    public int size() {
+        return mColors.length;
+    }
+
+    /**
+     * Getter
+     *
+     * @param index the index of a reference, as returned by {@link #nearest(float, float, float)}
+     * @return the color of the reference packed as 0xRRGGBB
+     */
+    public int getColor(int index) {
+        return mColors[index];
+    }
+
+    /**
+     * Getter
+     *
+     * @param index the index of a reference, as returned by {@link #nearest(float, float, float)}
+     * @return the id of the color name of the reference
+     */
+    public byte getNameId(int index) {
+        return mNameIds[index];
+    }
+
+    /**
+     * Finds the reference nearest to a color
+     *
+     * @param l the lightness of the color
+     * @param a the a value of the color
+     * @param b the b value of the color
+     * @return the index of the nearest reference
+     */
+    public int nearest(float l, float a, float b) {
+        return search(0, mColors.length, l, a, b, -1);
+    }
+
+    /**
+     * Searches the nearest reference in a subtree, the subtree on the other side
+     * of the splitting plane is only visited if it can contain a nearer reference
+     *
+     * @param best the nearest reference found so far, -1 if none
+     * @return the nearest reference found in the subtree or before
+     */
+    private int search(int start, int end, float l, float a, float b, int best) {
+        if (start >= end) return best;
+        int node = (start + end) >>> 1;
+        if (best < 0 || distance2(node, l, a, b) < distance2(best, l, a, b)) best = node;
+
+        int axis = mAxes[node];
+        float diff = (axis == 0 ? l : axis == 1 ? a : b) - mLab[3 * node + axis];
+        boolean left = diff < 0;
+        best = search(left ? start : node + 1, left ? node : end, l, a, b, best);
+        if (diff * diff < distance2(best, l, a, b)) best = search(left ? node + 1 : start, left ? end : node, l, a, b, best);
+        return best;
+    }
+
+    private float distance2(int index, float l, float a, float b) {
+        float dl = mLab[3 * index] - l;
+        float da = mLab[3 * index + 1] - a;
+        float db = mLab[3 * index + 2] - b;
+        return dl * dl + da * da + db * db;
+    }
+
+    /**
+     * Sorts a range of references into a subtree, its root at the middle of the range splits the
+     * references along the axis on which they spread the most
+     */
+    private void build(int start, int end) {
+        if (end - start <= 1) return;
+        int axis = 0;
+        float widest = -1;
+        for (int c = 0; c < 3; c++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (int i = start; i < end; i++) {
+                min = Math.min(min, mLab[3 * i + c]);
+                max = Math.max(max, mLab[3 * i + c]);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = c;
+            }
+        }
+
+        //the palettes are small, an insertion sort along the axis puts the median in the middle
+        for (int i = start + 1; i < end; i++) {
+            for (int j = i; j > start && mLab[3 * (j - 1) + axis] > mLab[3 * j + axis]; j--) swap(j - 1, j);
+        }
+        int node = (start + end) >>> 1;
+        mAxes[node] = (byte) axis;
+        build(start, node);
+        build(node + 1, end);
+    }
+
+    private void swap(int i, int j) {
+        int color = mColors[i];
+        mColors[i] = mColors[j];
+        mColors[j] = color;
+        byte nameId = mNameIds[i];
+        mNameIds[i] = mNameIds[j];
+        mNameIds[j] = nameId;
+        for (int c = 0; c < 3; c++) {
+            float value = mLab[3 * i + c];
+            mLab[3 * i + c] = mLab[3 * j + c];
+            mLab[3 * j + c] = value;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.boris.colornamer.model;
+
+/**
+ * Reading of the color history read from a {@link SampleLogReader}, reused from one record to another
+ */
+public class ColorSample {
+
+    //wall clock time of the reading in milliseconds
+    public long time;
+    //color packed as 0xRRGGBB
+    public int rgb;
+    //hue in degrees, saturation and value in percent
+    public int h;
+    public int s;
+    public int v;
+    //id of the color name
+    public byte nameId;
+    //variance of the colors of the sampled patch, low for a uniform patch
+    public float variance;
+
+}
@@ -0,0 +1,91 @@
+package com.boris.colornamer.model;
+
+/**
+ * Converts RGB colors to HSV using integer arithmetic only.
+ * The result is packed in an int: the hue on the high 16 bits, then the chroma
+ * (max - min) and the max of the RGB values on 8 bits each, so that the
+ * saturation and the value are kept exact without any float computation.
+ */
+public class HsvConverter {
+
+    /**
+     * Converts the given RGB values to packed HSV values
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the packed HSV values of the color
+     */
+    public static int toHsv(int r, int g, int b) {
+        int min = Math.min(r, Math.min(g, b));
+        int max = Math.max(r, Math.max(g, b));
+        int chroma = max - min;
+
+        int h = 0;
+        if (chroma != 0) {
+            //hue is the truncation of the exact value 60 * (offset + num / chroma)
+            if (r == max) {
+                h = Math.floorDiv(60 * (g - b), chroma);
+            } else if (g == max) {
+                h = 120 + Math.floorDiv(60 * (b - r), chroma);
+            } else {
+                h = 240 + Math.floorDiv(60 * (r - g), chroma);
+            }
+            if (h < 0) h += 360;
+        }
+
+        return (h << 16) | (chroma << 8) | max;
+    }
+
+    /**
+     * Getter
+     *
+     * @param hsv the packed HSV values
+     * @return the hue of the color between 0 and 360
+     */
+    public static int getH(int hsv) {
+        return hsv >>> 16;
+    }
+
+    /**
+     * Getter
+     *
+     * @param hsv the packed HSV values
+     * @return the saturation of the color between 0 and 1
+     */
+    public static float getS(int hsv) {
+        int max = getMax(hsv);
+        return max == 0 ? 0 : (float) getChroma(hsv) / max;
+    }
+
+    /**
+     * Getter
+     *
+     * @param hsv the packed HSV values
+     * @return the value of the color between 0 and 1
+     */
+    public static float getV(int hsv) {
+        return getMax(hsv) / 255.0f;
+    }
+
+    /**
+     * Getter
+     *
+     * @param hsv the packed HSV values
+     * @return the difference between the max and the min of the RGB values, between 0 and 255
+     */
+    public static int getChroma(int hsv) {
+        return (hsv >>> 8) & 0xff;
+    }
+
+    /**
+     * Getter
+     *
+     * @param hsv the packed HSV values
+     * @return the max of the RGB values, between 0 and 255
+     */
+    public static int getMax(int hsv) {
+        return hsv & 0xff;
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts sRGB colors to CIELAB with the D65 white point, so that the distance between
+ * two colors is close to the perceived difference
+ */
+public class LabConverter {
+
+    //white point D65
+    private static final double XN = 0.95047;
+    private static final double YN = 1.0;
+    private static final double ZN = 1.08883;
+    //limit of the linear part of the lightness function, (6 / 29)^3
+    private static final double EPSILON = 216.0 / 24389.0;
+
+    //linear values of the sRGB channel values, computed once
+    private static final double[] LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    /**
+     * Converts a color to CIELAB
+     *
+     * @param r   the red value of the color between 0 and 255
+     * @param g   the green value of the color between 0 and 255
+     * @param b   the blue value of the color between 0 and 255
+     * @param dst the array receiving L between 0 and 100, then a and b
+     */
+    public static void toLab(int r, int g, int b, @NotNull float[] dst) {
+        double lr = LINEAR[r];
+        double lg = LINEAR[g];
+        double lb = LINEAR[b];
+        double fx = f((0.4124564 * lr + 0.3575761 * lg + 0.1804375 * lb) / XN);
+        double fy = f((0.2126729 * lr + 0.7151522 * lg + 0.0721750 * lb) / YN);
+        double fz = f((0.0193339 * lr + 0.1191920 * lg + 0.9503041 * lb) / ZN);
+        dst[0] = (float) (116 * fy - 16);
+        dst[1] = (float) (500 * (fx - fy));
+        dst[2] = (float) (200 * (fy - fz));
+    }
+
+    /**
+     * Converts a color to CIELAB
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @param dst the array receiving L between 0 and 100, then a and b
+     */
+    public static void toLab(int rgb, @NotNull float[] dst) {
+        toLab((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff, dst);
+    }
+
+    private static double f(double t) {
+        return t > EPSILON ? Math.cbrt(t) : (24389.0 / 27.0 * t + 16) / 116;
+    }
+
+}
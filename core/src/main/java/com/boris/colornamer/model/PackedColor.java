@@ -0,0 +1,108 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Colors packed as 0xRRGGBB ints, with their HSV values and their names computed by static functions.
+ * An int is immutable and is copied instead of shared, so the colors can be handed from the analysis
+ * threads to the UI thread without locking, and the hot loops do not allocate any object.
+ * The names are ids as defined in {@link ColorClassifier}, their strings are only read in the locale
+ * of the UI when they are displayed. The functions have no state: the engine naming the colors
+ * is given by the caller.
+ */
+public class PackedColor {
+
+    /**
+     * Packs a color
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the color packed as 0xRRGGBB
+     */
+    public static int pack(int r, int g, int b) {
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Getter
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @return the red value of the color
+     */
+    public static int getR(int rgb) {
+        return (rgb >> 16) & 0xff;
+    }
+
+    /**
+     * Getter
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @return the green value of the color
+     */
+    public static int getG(int rgb) {
+        return (rgb >> 8) & 0xff;
+    }
+
+    /**
+     * Getter
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @return the blue value of the color
+     */
+    public static int getB(int rgb) {
+        return rgb & 0xff;
+    }
+
+    /**
+     * Getter
+     *
+     * @param rgb the color packed as 0xRRGGBB
+     * @return the packed HSV values of the color, read with {@link HsvConverter}
+     */
+    public static int toHsv(int rgb) {
+        return HsvConverter.toHsv(getR(rgb), getG(rgb), getB(rgb));
+    }
+
+    /**
+     * Names a color
+     *
+     * @param namer the engine naming the color, such as a {@link ColorNameTable}, or null to apply the hue thresholds
+     * @param rgb   the color packed as 0xRRGGBB
+     * @return the id of the color name
+     */
+    public static byte classify(@Nullable ColorNamer namer, int rgb) {
+        if (namer != null) return namer.getNameId(rgb);
+        return ColorClassifier.classify(toHsv(rgb));
+    }
+
+    /**
+     * Names colors
+     *
+     * @param namer      the engine naming the colors, or null to apply the hue thresholds
+     * @param colors     the colors packed as 0xRRGGBB
+     * @param outNameIds the ids of the color names, at least as long as the colors
+     */
+    public static void classify(@Nullable ColorNamer namer, @NotNull int[] colors, @NotNull byte[] outNameIds) {
+        classify(namer, colors, colors.length, outNameIds);
+    }
+
+    /**
+     * Names the first colors of an array
+     *
+     * @param namer      the engine naming the colors, or null to apply the hue thresholds
+     * @param colors     the colors packed as 0xRRGGBB
+     * @param count      the number of colors to name
+     * @param outNameIds the ids of the color names, at least count long
+     */
+    public static void classify(@Nullable ColorNamer namer, @NotNull int[] colors, int count, @NotNull byte[] outNameIds) {
+        if (count > outNameIds.length) throw new IllegalArgumentException("name ids shorter than " + count);
+        if (namer != null) {
+            for (int i = 0; i < count; i++) outNameIds[i] = namer.getNameId(colors[i]);
+        } else {
+            for (int i = 0; i < count; i++) outNameIds[i] = ColorClassifier.classify(toHsv(colors[i]));
+        }
+    }
+
+}
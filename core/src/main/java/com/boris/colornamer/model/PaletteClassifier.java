@@ -0,0 +1,96 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Names the colors with the nearest reference of a palette in CIELAB instead of the hue thresholds.
+ * The Voronoi cells of the references are precomputed on a grid of the RGB cube, each cell of the grid
+ * holding the name of the reference nearest to its center, so naming a color is a single lookup
+ * whatever the size of the palette. The grid is immutable and can be shared between threads.
+ */
+public class PaletteClassifier implements ColorNamer {
+
+    //bits kept of each channel, a cell of the grid spans 4 values of each channel
+    private static final int GRID_BITS = 6;
+    private static final int SHIFT = 8 - GRID_BITS;
+    private static final int GRID_SIZE = 1 << GRID_BITS;
+
+    private static volatile PaletteClassifier sDefault;
+
+    private final ColorPalette mPalette;
+    private final byte[] mGrid = new byte[GRID_SIZE * GRID_SIZE * GRID_SIZE];
+
+    /**
+     * Constructor, computes the grid with the tree of the palette
+     *
+     * @param palette the references of the color names
+     */
+    public PaletteClassifier(@NotNull ColorPalette palette) {
+        this.mPalette = palette;
+        float[] lab = new float[3];
+        int half = (1 << SHIFT) / 2;
+        int idx = 0;
+        for (int r = 0; r < GRID_SIZE; r++) {
+            for (int g = 0; g < GRID_SIZE; g++) {
+                for (int b = 0; b < GRID_SIZE; b++) {
+                    LabConverter.toLab((r << SHIFT) + half, (g << SHIFT) + half, (b << SHIFT) + half, lab);
+                    mGrid[idx++] = palette.getNameId(palette.nearest(lab[0], lab[1], lab[2]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter, the classifier of the default palette is created at the first call, which
+     * takes a fraction of a second so the first call should not be done by the UI thread
+     *
+     * @return the classifier of the default palette
+     */
+    @NotNull
+    public static PaletteClassifier getDefault() {
+        if (sDefault == null) sDefault = new PaletteClassifier(ColorPalette.getDefault());
+        return sDefault;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the references of the color names
+     */
+    @NotNull
+    public ColorPalette getPalette() {
+        return mPalette;
+    }
+
+    /**
+     * Getter
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the id of the color name
+     */
+    public byte getNameId(int r, int g, int b) {
+        return mGrid[(r >> SHIFT) << (2 * GRID_BITS) | (g >> SHIFT) << GRID_BITS | (b >> SHIFT)];
+    }
+
+    @Override
+    public byte getNameId(int rgb) {
+        return getNameId((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    /**
+     * Names a color with the nearest reference without the grid, slower but exact
+     *
+     * @param r the red value of the color between 0 and 255
+     * @param g the green value of the color between 0 and 255
+     * @param b the blue value of the color between 0 and 255
+     * @return the id of the color name
+     */
+    public byte classifyExact(int r, int g, int b) {
+        float[] lab = new float[3];
+        LabConverter.toLab(r, g, b, lab);
+        return mPalette.getNameId(mPalette.nearest(lab[0], lab[1], lab[2]));
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only log of the color readings that {@link SampleLogReader} maps. Each reading is a
+ * record of {@link #RECORD_SIZE} bytes copied in a ring buffer, and a background thread writes
+ * the pending records in batches, so the producer never waits for the disk: when the ring is
+ * full the reading is dropped and counted. The file starts with a magic number and a version,
+ * all numbers being little endian. When the file is larger than the max size it becomes the
+ * previous file, replacing the older one, so the history uses at most twice the max size.
+ * {@link #append} must not be called concurrently, and {@link #close()} only once the appends are over.
+ */
+public class SampleLog implements Closeable {
+
+    //"CNSL" read as a little endian int
+    static final int MAGIC = 0x4c534e43;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    //time, color, variance, hue, saturation, value and name id, padded to 8 bytes
+    static final int RECORD_SIZE = 24;
+
+    public static final String FILE_NAME = "samples.bin";
+    public static final String PREVIOUS_FILE_NAME = "samples.1.bin";
+    //about 43 000 readings per file
+    public static final long DEFAULT_MAX_FILE_SIZE = 1 << 20;
+    //records waiting for the writing thread, it is woken once a batch is pending
+    private static final int RING_RECORDS = 1024;
+    private static final int BATCH_RECORDS = 64;
+    //the pending records of a slow producer are written at least this often
+    private static final long FLUSH_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+
+    private final File mDirectory;
+    private final File mFile;
+    private final File mPreviousFile;
+    private final long mMaxFileSize;
+    private final ByteBuffer mRing = ByteBuffer.allocateDirect(RING_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Thread mThread;
+    //numbers of records appended by the producer and written by the writing thread
+    private volatile long mHead;
+    private volatile long mTail;
+    //only used by the writing thread
+    private final ByteBuffer mWriterView = mRing.duplicate();
+    private FileChannel mChannel;
+    private long mFileSize;
+
+    private volatile boolean mClosed;
+    private volatile IOException mError;
+    private volatile long mDroppedCount;
+
+    /**
+     * Constructor, the records are appended to the log of the directory if there is one, else it is created
+     *
+     * @param directory   the directory of the log files
+     * @param maxFileSize the size from which the file is rotated
+     * @throws IOException if the file can not be opened or created
+     */
+    public SampleLog(@NotNull File directory, long maxFileSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Can not create " + directory);
+        this.mDirectory = directory;
+        this.mFile = new File(directory, FILE_NAME);
+        this.mPreviousFile = new File(directory, PREVIOUS_FILE_NAME);
+        this.mMaxFileSize = maxFileSize;
+        open();
+        this.mThread = new Thread(this::write, "SampleLog");
+        this.mThread.start();
+    }
+
+    /**
+     * Copies a reading in the ring buffer
+     *
+     * @param time     the wall clock time of the reading in milliseconds
+     * @param rgb      the color packed as 0xRRGGBB
+     * @param h        the hue in degrees
+     * @param s        the saturation in percent
+     * @param v        the value in percent
+     * @param nameId   the id of the color name
+     * @param variance the variance of the colors of the sampled patch
+     * @return true if the reading was copied, false if it was dropped or the log failed
+     */
+    public boolean append(long time, int rgb, int h, int s, int v, byte nameId, float variance) {
+        if (mClosed || mError != null) return false;
+        long head = mHead;
+        if (head - mTail >= RING_RECORDS) {
+            //the disk is slower than the readings
+            mDroppedCount++;
+            return false;
+        }
+        int position = (int) (head % RING_RECORDS) * RECORD_SIZE;
+        mRing.putLong(position, time);
+        mRing.putInt(position + 8, rgb);
+        mRing.putFloat(position + 12, variance);
+        mRing.putShort(position + 16, (short) h);
+        mRing.put(position + 18, (byte) s);
+        mRing.put(position + 19, (byte) v);
+        mRing.put(position + 20, nameId);
+        //the record is visible to the writing thread once the head moves
+        mHead = head + 1;
+        if (head + 1 - mTail >= BATCH_RECORDS) LockSupport.unpark(mThread);
+        return true;
+    }
+
+    /**
+     * Waits until the readings appended before the call are written, so that a new reader sees them
+     *
+     * @throws IOException if the records could not be written
+     */
+    public void flush() throws IOException {
+        long head = mHead;
+        LockSupport.unpark(mThread);
+        synchronized (this) {
+            try {
+                while (mTail < head && mThread.isAlive()) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (mError != null) throw mError;
+    }
+
+    /**
+     * Writes the pending records then closes the file
+     *
+     * @throws IOException if records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) return;
+        mClosed = true;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (mError != null) throw mError;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the directory of the log files, to be opened by a {@link SampleLogReader}
+     */
+    @NotNull
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of readings appended
+     */
+    public long getCount() {
+        return mHead;
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of readings dropped because the disk was too slow
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Opens the file for appending, a file that is not a log is replaced and a record cut by the end of the file is removed
+     */
+    private void open() throws IOException {
+        FileChannel channel = new RandomAccessFile(mFile, "rw").getChannel();
+        try {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (size >= FILE_HEADER_SIZE && header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) break;
+            }
+            if (size < FILE_HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                channel.truncate(0);
+                header.clear();
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+                size = FILE_HEADER_SIZE;
+            }
+            size -= (size - FILE_HEADER_SIZE) % RECORD_SIZE;
+            channel.truncate(size);
+            channel.position(size);
+            mChannel = channel;
+            mFileSize = size;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Makes the file the previous file and starts a new one, runs on the writing thread
+     */
+    private void rotate() throws IOException {
+        mChannel.close();
+        if (mPreviousFile.exists() && !mPreviousFile.delete()) throw new IOException("Can not delete " + mPreviousFile);
+        if (!mFile.renameTo(mPreviousFile)) throw new IOException("Can not rename " + mFile);
+        open();
+    }
+
+    /**
+     * Loop of the writing thread, the pending records are written when a batch is pending, at each
+     * flush interval and when the log is closed
+     */
+    private void write() {
+        try {
+            while (true) {
+                //the records appended before the closing are all seen
+                boolean closed = mClosed;
+                long head = mHead;
+                long tail = mTail;
+                if (head > tail) {
+                    if (mFileSize >= mMaxFileSize) rotate();
+                    writeRecords(tail, head);
+                    mTail = head;
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+                if (closed) return;
+                LockSupport.parkNanos(this, FLUSH_INTERVAL_NS);
+            }
+        } catch (IOException e) {
+            mError = e;
+        } finally {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                if (mError == null) mError = e;
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes the records between two counts, in two parts when they wrap around the ring
+     */
+    private void writeRecords(long from, long to) throws IOException {
+        while (from < to) {
+            int start = (int) (from % RING_RECORDS);
+            int count = (int) Math.min(to - from, RING_RECORDS - start);
+            mWriterView.limit((start + count) * RECORD_SIZE);
+            mWriterView.position(start * RECORD_SIZE);
+            while (mWriterView.hasRemaining()) mChannel.write(mWriterView);
+            mFileSize += (long) count * RECORD_SIZE;
+            from += count;
+        }
+    }
+
+}
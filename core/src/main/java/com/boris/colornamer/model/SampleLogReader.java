@@ -0,0 +1,110 @@
+package com.boris.colornamer.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Reads the color readings of the files of a {@link SampleLog}, from the oldest one in the previous
+ * file to the newest one. The files are memory-mapped so browsing the history only reads the records
+ * that are displayed. The readings written after the opening are not seen, and a record cut by the
+ * end of a file is ignored. The reader is immutable once opened and can be shared between threads,
+ * each one reading in its own {@link ColorSample}.
+ */
+public class SampleLogReader {
+
+    //previous file then current file, and number of records of each one
+    private final MappedByteBuffer[] mFiles;
+    private final int[] mCounts;
+
+    private SampleLogReader(@NotNull MappedByteBuffer[] files, @NotNull int[] counts) {
+        this.mFiles = files;
+        this.mCounts = counts;
+    }
+
+    /**
+     * Maps the files of a log, the mappings stay valid after the files are closed or rotated
+     *
+     * @param directory the directory of the log files
+     * @return the reader of the readings, empty if there is no log
+     * @throws IOException if a file can not be read or is not a log file
+     */
+    @NotNull
+    public static SampleLogReader open(@NotNull File directory) throws IOException {
+        File[] files = new File[]{new File(directory, SampleLog.PREVIOUS_FILE_NAME), new File(directory, SampleLog.FILE_NAME)};
+        MappedByteBuffer[] buffers = new MappedByteBuffer[files.length];
+        int[] counts = new int[files.length];
+        for (int f = 0; f < files.length; f++) {
+            if (!files[f].exists()) continue;
+            try (RandomAccessFile raf = new RandomAccessFile(files[f], "r")) {
+                FileChannel channel = raf.getChannel();
+                long size = channel.size();
+                if (size < SampleLog.FILE_HEADER_SIZE) continue;
+                buffers[f] = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffers[f].order(ByteOrder.LITTLE_ENDIAN);
+                if (buffers[f].getInt(0) != SampleLog.MAGIC) throw new IOException("Not a sample log: " + files[f]);
+                if (buffers[f].getInt(4) != SampleLog.VERSION) throw new IOException("Unsupported sample log version " + buffers[f].getInt(4) + ": " + files[f]);
+                counts[f] = (int) ((size - SampleLog.FILE_HEADER_SIZE) / SampleLog.RECORD_SIZE);
+            }
+        }
+        return new SampleLogReader(buffers, counts);
+    }
+
+    /**
+     * Getter
+     *
+     * @return the number of readings of the log
+     */
+    public int getCount() {
+        int count = 0;
+        for (int c : mCounts) count += c;
+        return count;
+    }
+
+    /**
+     * Reads a reading
+     *
+     * @param index the index of the reading, from the oldest one
+     * @param dst   the sample receiving the reading
+     */
+    public void read(int index, @NotNull ColorSample dst) {
+        int f = 0;
+        while (index >= mCounts[f]) index -= mCounts[f++];
+        ByteBuffer buffer = mFiles[f];
+        int position = SampleLog.FILE_HEADER_SIZE + index * SampleLog.RECORD_SIZE;
+        dst.time = buffer.getLong(position);
+        dst.rgb = buffer.getInt(position + 8);
+        dst.variance = buffer.getFloat(position + 12);
+        dst.h = buffer.getShort(position + 16);
+        dst.s = buffer.get(position + 18);
+        dst.v = buffer.get(position + 19);
+        dst.nameId = buffer.get(position + 20);
+    }
+
+    /**
+     * Writes the readings as CSV from the oldest one, with a header line
+     *
+     * @param writer the writer of the CSV text, not closed
+     * @param names  the color names indexed by their id
+     * @throws IOException if the text can not be written
+     */
+    public void writeCsv(@NotNull Writer writer, @NotNull String[] names) throws IOException {
+        writer.write("time,r,g,b,h,s,v,name,variance\n");
+        ColorSample sample = new ColorSample();
+        for (int i = 0, count = getCount(); i < count; i++) {
+            read(i, sample);
+            writer.write(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%s,%.1f\n", sample.time,
+                    sample.rgb >> 16, (sample.rgb >> 8) & 0xff, sample.rgb & 0xff,
+                    sample.h, sample.s, sample.v, names[sample.nameId], sample.variance));
+        }
+    }
+
+}
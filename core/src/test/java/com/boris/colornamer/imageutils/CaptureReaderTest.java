@@ -0,0 +1,101 @@
+package com.boris.colornamer.imageutils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CaptureReaderTest {
+
+    private static ByteBuffer randomPlane(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes).clear();
+        return buffer;
+    }
+
+    private static void assertSamePlane(ByteBuffer expected, ByteBuffer actual) {
+        assertEquals(expected.limit(), actual.remaining());
+        for (int i = 0; i < expected.limit(); i++) assertEquals(expected.get(i), actual.get(actual.position() + i));
+    }
+
+    @Test
+    public void read_returnsTheAppendedImagesWithTheirStridesAndTimestamps() throws IOException {
+        File file = File.createTempFile("capture", ".yuv");
+        file.deleteOnExit();
+        Random random = new Random(7);
+        //an I420 image of 64x48 with padded rows, then an interleaved one of 320x240 larger than a batch
+        ByteBuffer[][] planes = new ByteBuffer[][]{
+                {randomPlane(random, 80 * 48), randomPlane(random, 40 * 24), randomPlane(random, 40 * 24)},
+                {randomPlane(random, 320 * 240), randomPlane(random, 320 * 119 + 319), randomPlane(random, 320 * 119 + 319)},
+                {randomPlane(random, 80 * 48), randomPlane(random, 40 * 24), randomPlane(random, 40 * 24)}
+        };
+        int[][] layouts = new int[][]{{64, 48, 80, 1, 40, 1}, {320, 240, 320, 1, 320, 2}, {64, 48, 80, 1, 40, 1}};
+
+        try (CaptureWriter writer = new CaptureWriter(file, 16 * 1024)) {
+            for (int i = 0; i < planes.length; i++) {
+                int[] layout = layouts[i];
+                //the positions of the planes do not change what is written
+                planes[i][0].position(5);
+                assertTrue(writer.append(1_000_000L * i, layout[0], layout[1], 90 * i, planes[i][0], layout[2], layout[3],
+                        planes[i][1], planes[i][2], layout[4], layout[5]));
+                assertEquals(5, planes[i][0].position());
+                planes[i][0].position(0);
+            }
+            assertEquals(3, writer.getFrameCount());
+        }
+
+        CaptureReader reader = CaptureReader.open(file);
+        assertEquals(3, reader.getFrameCount());
+        CapturedFrame frame = new CapturedFrame();
+        //the images can be read in any order
+        for (int i = planes.length - 1; i >= 0; i--) {
+            reader.read(i, frame);
+            int[] layout = layouts[i];
+            assertEquals(1_000_000L * i, frame.timestamp);
+            assertEquals(layout[0], frame.width);
+            assertEquals(layout[1], frame.height);
+            assertEquals(90 * i, frame.rotationDegrees);
+            assertEquals(layout[2], frame.yRowStride);
+            assertEquals(layout[3], frame.yPixelStride);
+            assertEquals(layout[4], frame.uvRowStride);
+            assertEquals(layout[5], frame.uvPixelStride);
+            assertTrue(frame.y.isDirect());
+            assertSamePlane(planes[i][0], frame.y);
+            assertSamePlane(planes[i][1], frame.u);
+            assertSamePlane(planes[i][2], frame.v);
+        }
+    }
+
+    @Test
+    public void open_ignoresAnImageCutByTheEndOfTheFile() throws IOException {
+        File file = File.createTempFile("capture", ".yuv");
+        file.deleteOnExit();
+        ByteBuffer plane = ByteBuffer.allocateDirect(100);
+        try (CaptureWriter writer = new CaptureWriter(file, CaptureWriter.DEFAULT_BATCH_SIZE)) {
+            for (int i = 0; i < 4; i++) writer.append(i, 10, 10, 0, plane, 10, 1, plane, plane, 10, 1);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertEquals(3, CaptureReader.open(file).getFrameCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsAFileThatIsNotACapture() throws IOException {
+        File file = File.createTempFile("capture", ".yuv");
+        file.deleteOnExit();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[256]);
+        }
+        CaptureReader.open(file);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.boris.colornamer.imageutils;
+
+import com.boris.colornamer.model.ColorClassifier;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ColorSegmenterTest {
+
+    @Test
+    public void segment_matchesTheSequentialClassificationOfEachPixel() {
+        //NV21 image of 640x480 with padded rows
+        int w = 640;
+        int h = 480;
+        int stride = 704;
+        Random random = new Random(3);
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * h);
+        ByteBuffer vu = ByteBuffer.allocateDirect(stride * h / 2);
+        byte[] bytes = new byte[stride * h];
+        random.nextBytes(bytes);
+        y.put(bytes).clear();
+        random.nextBytes(bytes);
+        vu.put(bytes, 0, vu.capacity()).clear();
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        vu.clear();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ColorSegmenter segmenter = new ColorSegmenter(pool, 500);
+        for (int size : new int[]{500, 333, 20}) {
+            byte[] labels = new byte[size * size];
+            segmenter.segment(y, stride, 1, u, vu, stride, 2, w, h, size, null, labels);
+
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    int row = i * h / size;
+                    int column = j * w / size;
+                    int uvIdx = (row / 2) * stride + (column / 2) * 2;
+                    int rgb = YuvPixels.yuvToRgb(y.get(row * stride + column) & 0xff, u.get(uvIdx) & 0xff, vu.get(uvIdx) & 0xff);
+                    byte expected = ColorClassifier.classify(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+                    assertEquals("pixel " + i + ", " + j + " of " + size, expected, labels[i * size + j]);
+                }
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void segment_onlyMapsTheArea() {
+        //gray image with a red square, the area is the square
+        int w = 64;
+        int h = 48;
+        ByteBuffer y = ByteBuffer.allocateDirect(w * h);
+        ByteBuffer vu = ByteBuffer.allocateDirect(w * h / 2);
+        for (int i = 0; i < w * h; i++) y.put(i, (byte) 128);
+        for (int i = 0; i < w * h / 2; i++) vu.put(i, (byte) 128);
+        for (int row = 16; row < 32; row++) {
+            for (int column = 24; column < 40; column++) {
+                y.put(row * w + column, (byte) 76);
+                int uvIdx = (row / 2) * w + (column / 2) * 2;
+                vu.put(uvIdx, (byte) 255);
+                vu.put(uvIdx + 1, (byte) 85);
+            }
+        }
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        vu.clear();
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        byte[] labels = new byte[8 * 8];
+        new ColorSegmenter(pool, 8).segment(y, w, 1, u, vu, w, 2, 24, 16, 16, 16, 8, null, labels);
+        pool.shutdown();
+        byte[] expected = new byte[8 * 8];
+        Arrays.fill(expected, ColorClassifier.RED);
+        assertArrayEquals(expected, labels);
+    }
+
+    @Test
+    public void render_outlinesTheRegions() {
+        //a red square in the middle of a white map
+        int size = 8;
+        byte[] labels = new byte[size * size];
+        for (int i = 0; i < size * size; i++) {
+            int row = i / size;
+            int column = i % size;
+            labels[i] = row >= 2 && row < 6 && column >= 2 && column < 6 ? ColorClassifier.RED : ColorClassifier.WHITE;
+        }
+        int[] pixels = new int[size * size];
+        ColorSegmenter.render(labels, size, 0, pixels);
+
+        int red = ColorSegmenter.getDisplayColor(ColorClassifier.RED);
+        int white = ColorSegmenter.getDisplayColor(ColorClassifier.WHITE);
+        //translucent inside the regions
+        assertEquals(0x50000000 | white, pixels[0]);
+        assertEquals(0x50000000 | red, pixels[3 * size + 3]);
+        //opaque on both sides of their borders
+        assertEquals(0xff000000 | red, pixels[2 * size + 2]);
+        assertEquals(0xff000000 | white, pixels[2 * size + 1]);
+        assertEquals(0xff000000 | white, pixels[size + 3]);
+    }
+
+    @Test
+    public void render_drawsTheMapOfARotatedBufferUpright() {
+        //the buffer is rotated by 90 degrees, its top left red pixel is at the top right of the upright image
+        int size = 4;
+        byte[] labels = new byte[size * size];
+        Arrays.fill(labels, ColorClassifier.WHITE);
+        labels[0] = ColorClassifier.RED;
+        labels[1] = ColorClassifier.BLUE;
+        int[] pixels = new int[size * size];
+        int red = ColorSegmenter.getDisplayColor(ColorClassifier.RED);
+        int blue = ColorSegmenter.getDisplayColor(ColorClassifier.BLUE);
+
+        ColorSegmenter.render(labels, size, 90, pixels);
+        assertEquals(red, pixels[size - 1] & 0xffffff);
+        assertEquals(blue, pixels[size + size - 1] & 0xffffff);
+        ColorSegmenter.render(labels, size, 180, pixels);
+        assertEquals(red, pixels[size * size - 1] & 0xffffff);
+        assertEquals(blue, pixels[size * size - 2] & 0xffffff);
+        ColorSegmenter.render(labels, size, 270, pixels);
+        assertEquals(red, pixels[(size - 1) * size] & 0xffffff);
+        assertEquals(blue, pixels[(size - 2) * size] & 0xffffff);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.boris.colornamer.imageutils;
+
+import com.boris.colornamer.model.LabConverter;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class DaltonizerTest {
+
+    @Test
+    public void createLut_keepsTheGrays() {
+        for (int deficiency = 0; deficiency < Daltonizer.DEFICIENCY_COUNT; deficiency++) {
+            for (boolean daltonize : new boolean[]{false, true}) {
+                int[] lut = Daltonizer.createLut(deficiency, daltonize);
+                for (int gray = 0; gray < 256; gray += 17) {
+                    int rgb = lut[Daltonizer.getIndex(gray, gray, gray)];
+                    //the table is indexed by the highest bits, a gray is mapped to the center of its entry
+                    assertEquals(gray, rgb >> 16, 3);
+                    assertEquals(gray, (rgb >> 8) & 0xff, 3);
+                    assertEquals(gray, rgb & 0xff, 3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void createLut_daltonizedColorsAreBetterDistinguished() {
+        //a red and an olive that protanopes and deuteranopes confuse
+        int red = 0xcc3333;
+        int olive = 0x666600;
+        for (int deficiency : new int[]{Daltonizer.PROTANOPIA, Daltonizer.DEUTERANOPIA}) {
+            int[] simulation = Daltonizer.createLut(deficiency, false);
+            int[] daltonization = Daltonizer.createLut(deficiency, true);
+
+            float seen = distance(filter(simulation, red), filter(simulation, olive));
+            //the daltonized colors as seen with the deficiency
+            float daltonized = distance(filter(simulation, filter(daltonization, red)), filter(simulation, filter(daltonization, olive)));
+            assertTrue(deficiency + ": " + seen + " < " + daltonized, daltonized > 2 * seen);
+        }
+    }
+
+    @Test
+    public void apply_matchesTheLookupOfEachPixel() {
+        int w = 500;
+        int h = 333;
+        byte[] src = new byte[3 * w * h];
+        new Random(5).nextBytes(src);
+        int[] lut = Daltonizer.createLut(Daltonizer.DEUTERANOPIA, true);
+        int[] dst = new int[w * h];
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        new Daltonizer(pool, 500).apply(src, w, h, lut, dst);
+        pool.shutdown();
+
+        for (int i = 0; i < w * h; i++) {
+            int expected = lut[Daltonizer.getIndex(src[3 * i] & 0xff, src[3 * i + 1] & 0xff, src[3 * i + 2] & 0xff)];
+            assertEquals("pixel " + i, 0xff000000 | expected, dst[i]);
+        }
+    }
+
+    private static int filter(int[] lut, int rgb) {
+        return lut[Daltonizer.getIndex(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff)];
+    }
+
+    private static float distance(int first, int second) {
+        float[] a = new float[3];
+        float[] b = new float[3];
+        LabConverter.toLab(first, a);
+        LabConverter.toLab(second, b);
+        return (float) Math.sqrt((a[0] - b[0]) * (a[0] - b[0]) + (a[1] - b[1]) * (a[1] - b[1]) + (a[2] - b[2]) * (a[2] - b[2]));
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.boris.colornamer.imageutils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageRotationTest {
+
+    @Test
+    public void toBuffer_mapsTheTopLeftCornerOfTheUprightImage() {
+        //the top left corner of the upright image is the bottom left corner of a buffer rotated clockwise by 90 degrees
+        assertEquals(0, ImageRotation.toBufferX(0, 0, 90), 1e-6);
+        assertEquals(1, ImageRotation.toBufferY(0, 0, 90), 1e-6);
+        assertEquals(1, ImageRotation.toBufferX(0, 0, 180), 1e-6);
+        assertEquals(1, ImageRotation.toBufferY(0, 0, 180), 1e-6);
+        assertEquals(1, ImageRotation.toBufferX(0, 0, 270), 1e-6);
+        assertEquals(0, ImageRotation.toBufferY(0, 0, 270), 1e-6);
+        //the center does not move
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertEquals(0.5f, ImageRotation.toBufferX(0.5f, 0.5f, rotation), 1e-6);
+            assertEquals(0.5f, ImageRotation.toBufferY(0.5f, 0.5f, rotation), 1e-6);
+        }
+    }
+
+    @Test
+    public void toUprightIndex_isTheInverseOfTheCoordinateMapping() {
+        int size = 5;
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            boolean[] covered = new boolean[size * size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    int idx = ImageRotation.toUprightIndex(i, j, size, rotation);
+                    covered[idx] = true;
+                    //centers of the cells relatively to the size of the grid
+                    float x = (idx % size + 0.5f) / size;
+                    float y = (idx / size + 0.5f) / size;
+                    assertEquals(rotation + ": " + i + ", " + j, (j + 0.5f) / size, ImageRotation.toBufferX(x, y, rotation), 1e-6);
+                    assertEquals(rotation + ": " + i + ", " + j, (i + 0.5f) / size, ImageRotation.toBufferY(x, y, rotation), 1e-6);
+                }
+            }
+            for (boolean cell : covered) assertTrue(cell);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.boris.colornamer.imageutils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntegralImageTest {
+
+    //I420 image of 320x240 with padded rows
+    private static final int W = 320;
+    private static final int H = 240;
+    private static final int STRIDE = 352;
+    private static final int UV_STRIDE = 176;
+
+    private static ByteBuffer randomPlane(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes).clear();
+        return buffer;
+    }
+
+    @Test
+    public void meanRgb_matchesTheDirectMeanOfEachPatch() {
+        Random random = new Random(5);
+        ByteBuffer y = randomPlane(random, STRIDE * H);
+        ByteBuffer u = randomPlane(random, UV_STRIDE * H / 2);
+        ByteBuffer v = randomPlane(random, UV_STRIDE * H / 2);
+
+        IntegralImage integral = new IntegralImage(W * H);
+        integral.build(y, STRIDE, 1, u, v, UV_STRIDE, 1, 10, 20, 300, 200);
+        assertEquals(1, integral.getStep());
+        for (int i = 0; i < 200; i++) {
+            int width = 1 + random.nextInt(60);
+            int height = 1 + random.nextInt(60);
+            int left = 10 + random.nextInt(300 - width + 1);
+            int top = 20 + random.nextInt(200 - height + 1);
+            int expected = YuvPixels.meanRgb(y, STRIDE, 1, u, v, UV_STRIDE, 1, left, top, width, height);
+            assertEquals("patch " + left + ", " + top + ", " + width + "x" + height, expected, integral.meanRgb(left, top, width, height));
+        }
+    }
+
+    @Test
+    public void variance_isZeroOnAUniformPatchAndMatchesTheDirectVariance() {
+        Random random = new Random(6);
+        ByteBuffer y = randomPlane(random, STRIDE * H);
+        ByteBuffer u = randomPlane(random, UV_STRIDE * H / 2);
+        ByteBuffer v = randomPlane(random, UV_STRIDE * H / 2);
+        //the top left corner has a single color
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 16; j++) y.put(i * STRIDE + j, (byte) 120);
+        }
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                u.put(i * UV_STRIDE + j, (byte) 90);
+                v.put(i * UV_STRIDE + j, (byte) 200);
+            }
+        }
+
+        IntegralImage integral = new IntegralImage(W * H);
+        integral.build(y, STRIDE, 1, u, v, UV_STRIDE, 1, 0, 0, W, H);
+        assertEquals(0, integral.variance(0, 0, 16, 16), 1e-3);
+
+        //variance of a noisy patch computed pixel by pixel
+        int left = 100;
+        int top = 50;
+        int size = 25;
+        double sumR = 0, sumG = 0, sumB = 0, squares = 0;
+        for (int i = top; i < top + size; i++) {
+            for (int j = left; j < left + size; j++) {
+                int uvIdx = (i / 2) * UV_STRIDE + j / 2;
+                int rgb = YuvPixels.yuvToRgb(y.get(i * STRIDE + j) & 0xff, u.get(uvIdx) & 0xff, v.get(uvIdx) & 0xff);
+                int r = rgb >> 16, g = (rgb >> 8) & 0xff, b = rgb & 0xff;
+                sumR += r;
+                sumG += g;
+                sumB += b;
+                squares += r * r + g * g + b * b;
+            }
+        }
+        double n = size * size;
+        double expected = squares / n - (sumR / n) * (sumR / n) - (sumG / n) * (sumG / n) - (sumB / n) * (sumB / n);
+        assertEquals(expected, integral.variance(left, top, size, size), 1e-2 * expected);
+    }
+
+    @Test
+    public void build_subsamplesALargeRectangleAndKeepsSmallPatchesNonEmpty() {
+        //a uniform image, every patch has its color whatever the step
+        ByteBuffer y = ByteBuffer.allocateDirect(STRIDE * H);
+        ByteBuffer u = ByteBuffer.allocateDirect(UV_STRIDE * H / 2);
+        ByteBuffer v = ByteBuffer.allocateDirect(UV_STRIDE * H / 2);
+        for (int i = 0; i < y.capacity(); i++) y.put(i, (byte) 180);
+        for (int i = 0; i < u.capacity(); i++) {
+            u.put(i, (byte) 128);
+            v.put(i, (byte) 128);
+        }
+        int gray = YuvPixels.yuvToRgb(180, 128, 128);
+
+        IntegralImage integral = new IntegralImage(1000);
+        integral.build(y, STRIDE, 1, u, v, UV_STRIDE, 1, 0, 0, W, H);
+        assertTrue(integral.getStep() > 1);
+        assertEquals(gray, integral.meanRgb(0, 0, W, H));
+        assertEquals(gray, integral.meanRgb(101, 57, 1, 1));
+        assertEquals(gray, integral.meanRgb(W - 2, H - 2, 2, 2));
+        assertEquals(0, integral.variance(40, 40, 100, 100), 1e-3);
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.boris.colornamer.imageutils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TileLayoutTest {
+
+    @Test
+    public void getSampleSize_keepsAtLeastOneDecodedPixelPerDisplayedPixel() {
+        assertEquals(1, TileLayout.getSampleSize(2));
+        assertEquals(1, TileLayout.getSampleSize(1));
+        assertEquals(1, TileLayout.getSampleSize(0.6f));
+        assertEquals(2, TileLayout.getSampleSize(0.5f));
+        assertEquals(4, TileLayout.getSampleSize(0.2f));
+        //a 8000 pixels wide photo fitted in a 1080 pixels wide view
+        assertEquals(4, TileLayout.getSampleSize(1080f / 8000));
+        assertEquals(TileLayout.MAX_SAMPLE_SIZE, TileLayout.getSampleSize(0.0001f));
+    }
+
+    @Test
+    public void getSampleSizeToFit_decodesTheWholeImageInTheGivenSize() {
+        assertEquals(1, TileLayout.getSampleSizeToFit(800, 600, 1024, 1024));
+        assertEquals(8, TileLayout.getSampleSizeToFit(8160, 6120, 1024, 1024));
+        assertEquals(2, TileLayout.getSampleSizeToFit(2048, 100, 1024, 1024));
+    }
+
+    @Test
+    public void getKey_isUniqueAmongTheLevels() {
+        Set<Long> keys = new HashSet<>();
+        for (int sampleSize = 1; sampleSize <= TileLayout.MAX_SAMPLE_SIZE; sampleSize *= 2) {
+            for (int column = 0; column < 40; column++) {
+                for (int row = 0; row < 40; row++) assertTrue(keys.add(TileLayout.getKey(sampleSize, column, row)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColorClustererTest {
+
+    @Test
+    public void stripes_giveTheirTwoColorsInsteadOfTheirMean() {
+        //a red and white striped shirt, 60% red, with some noise
+        Random random = new Random(1);
+        int[] pixels = new int[1000];
+        for (int i = 0; i < pixels.length; i++) {
+            boolean red = i % 10 < 6;
+            int noise = random.nextInt(21) - 10;
+            pixels[i] = red ? rgb(200 + noise, 20, 30 + noise) : rgb(240 + noise / 2, 240 + noise / 2, 235);
+        }
+
+        ColorClusterer clusterer = new ColorClusterer(pixels.length, 3);
+        int count = clusterer.cluster(pixels, pixels.length, 3, 5);
+
+        assertTrue(count >= 2);
+        assertEquals(ColorClassifier.RED, classify(clusterer.getColor(0)));
+        assertEquals(0.6f, clusterer.getCoverage(0), 0.01f);
+        assertEquals(ColorClassifier.WHITE, classify(clusterer.getColor(1)));
+        float total = 0;
+        for (int c = 0; c < count; c++) total += clusterer.getCoverage(c);
+        assertEquals(1f, total, 1e-5f);
+    }
+
+    @Test
+    public void uniformColor_givesASingleCluster() {
+        int[] pixels = new int[256];
+        Arrays.fill(pixels, rgb(20, 60, 200));
+        ColorClusterer clusterer = new ColorClusterer(pixels.length, 4);
+
+        assertEquals(1, clusterer.cluster(pixels, pixels.length, 4, 5));
+        assertEquals(rgb(20, 60, 200), clusterer.getColor(0));
+        assertEquals(1f, clusterer.getCoverage(0), 0);
+        assertEquals(0, clusterer.cluster(pixels, 0, 4, 5));
+    }
+
+    @Test
+    public void clustersAreSortedBySize() {
+        int[] pixels = new int[100];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i < 10 ? rgb(0, 0, 255) : i < 40 ? rgb(0, 255, 0) : rgb(255, 0, 0);
+        }
+        ColorClusterer clusterer = new ColorClusterer(pixels.length, 3);
+
+        assertEquals(3, clusterer.cluster(pixels, pixels.length, 3, 5));
+        assertEquals(rgb(255, 0, 0), clusterer.getColor(0));
+        assertEquals(rgb(0, 255, 0), clusterer.getColor(1));
+        assertEquals(rgb(0, 0, 255), clusterer.getColor(2));
+        assertEquals(0.1f, clusterer.getCoverage(2), 1e-6f);
+    }
+
+    @Test
+    public void cluster_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Random random = new Random(2);
+        int[] pixels = new int[1024];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt(1 << 24);
+        ColorClusterer clusterer = new ColorClusterer(pixels.length, 5);
+        for (int i = 0; i < 1000; i++) clusterer.cluster(pixels, pixels.length, 5, 5);
+
+        long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1000; i++) clusterer.cluster(pixels, pixels.length, 5, 5);
+        assertEquals(0, threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start);
+    }
+
+    private static int rgb(int r, int g, int b) {
+        return r << 16 | g << 8 | b;
+    }
+
+    private static byte classify(int rgb) {
+        return ColorClassifier.classify(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the lookup table against the hue, saturation and value thresholds for all the 24-bit colors
+ */
+public class ColorNameTableTest {
+
+    /**
+     * Reference port of android.graphics.Color.RGBToHSV followed by the
+     * original thresholds of CompleteColor.getName
+     */
+    private static byte referenceName(int r, int g, int b) {
+        int min = Math.min(r, Math.min(g, b));
+        int max = Math.max(r, Math.max(g, b));
+        int delta = max - min;
+        float v = max / 255.0f;
+        float s = 0;
+        float hue = 0;
+        if (delta != 0) {
+            s = (float) delta / max;
+            if (r == max) hue = (float) (g - b) / delta;
+            else if (g == max) hue = 2 + (float) (b - r) / delta;
+            else hue = 4 + (float) (r - g) / delta;
+            hue *= 60;
+            if (hue < 0) hue += 360;
+        }
+        int h = (int) hue;
+
+        byte color = -1;
+        if (h < 15 || h >= 346) color = ColorClassifier.RED;
+        if (h >= 15 && h < 40) color = s < 0.75 ? ColorClassifier.BROWN : ColorClassifier.ORANGE;
+        if (h >= 40 && h < 74) color = ColorClassifier.YELLOW;
+        if (h >= 74 && h < 155) color = ColorClassifier.GREEN;
+        if (h >= 155 && h < 186) color = ColorClassifier.CYAN;
+        if (h >= 186 && h < 278) color = ColorClassifier.BLUE;
+        if (h >= 278 && h < 330) color = ColorClassifier.PURPLE;
+        if (h >= 330 && h < 346) color = ColorClassifier.PINK;
+        if (v < 0.18) color = ColorClassifier.BLACK;
+        else if (s < 0.1) color = v < 0.85 ? ColorClassifier.GRAY : ColorClassifier.WHITE;
+        return color;
+    }
+
+    private static void assertMatchesReference(ColorNameTable table) {
+        for (int r = 0; r < 256; r++) {
+            for (int g = 0; g < 256; g++) {
+                for (int b = 0; b < 256; b++) {
+                    byte expected = referenceName(r, g, b);
+                    byte actual = table.getNameId(r, g, b);
+                    if (expected != actual) {
+                        fail("rgb(" + r + ", " + g + ", " + b + "): expected " + expected + " but was " + actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void build_matchesThresholdsForAllColors() {
+        assertMatchesReference(ColorNameTable.build());
+    }
+
+    @Test
+    public void load_mapsTheSameTable() throws IOException {
+        File file = File.createTempFile("color_names", ".bin");
+        assertTrue(file.delete());
+        try {
+            //first load writes the file, second load only maps it
+            ColorNameTable.load(file);
+            assertEquals(ColorNameTable.SIZE, file.length());
+            assertMatchesReference(ColorNameTable.load(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColorPaletteTest {
+
+    @Test
+    public void toLab_matchesTheReferenceValues() {
+        float[] lab = new float[3];
+        LabConverter.toLab(0xffffff, lab);
+        assertEquals(100, lab[0], 0.01);
+        assertEquals(0, lab[1], 0.01);
+        assertEquals(0, lab[2], 0.01);
+        LabConverter.toLab(0xff0000, lab);
+        assertEquals(53.24, lab[0], 0.01);
+        assertEquals(80.09, lab[1], 0.01);
+        assertEquals(67.20, lab[2], 0.01);
+        LabConverter.toLab(0x000000, lab);
+        assertEquals(0, lab[0], 0.01);
+    }
+
+    @Test
+    public void nearest_matchesTheBruteForceSearch() {
+        Random random = new Random(11);
+        int count = 300;
+        int[] colors = new int[count];
+        byte[] nameIds = new byte[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = random.nextInt(1 << 24);
+            nameIds[i] = (byte) random.nextInt(ColorClassifier.COUNT);
+        }
+        ColorPalette palette = new ColorPalette(colors, nameIds);
+
+        float[] lab = new float[3];
+        float[] reference = new float[3];
+        for (int n = 0; n < 2000; n++) {
+            LabConverter.toLab(random.nextInt(1 << 24), lab);
+            float best = Float.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                LabConverter.toLab(colors[i], reference);
+                float dl = reference[0] - lab[0], da = reference[1] - lab[1], db = reference[2] - lab[2];
+                best = Math.min(best, dl * dl + da * da + db * db);
+            }
+            LabConverter.toLab(palette.getColor(palette.nearest(lab[0], lab[1], lab[2])), reference);
+            float dl = reference[0] - lab[0], da = reference[1] - lab[1], db = reference[2] - lab[2];
+            assertEquals(best, dl * dl + da * da + db * db, 1e-3);
+        }
+    }
+
+    @Test
+    public void parse_readsTheReferencesAndRejectsInvalidLines() throws IOException {
+        ColorPalette palette = ColorPalette.parse(new StringReader("# shades\nbrown, 8b4513\n\nOrange,ffa500\n"));
+        assertEquals(2, palette.size());
+        float[] lab = new float[3];
+        LabConverter.toLab(0x8a4412, lab);
+        assertEquals(ColorClassifier.BROWN, palette.getNameId(palette.nearest(lab[0], lab[1], lab[2])));
+
+        for (String invalid : new String[]{"mauve,e0b0ff", "brown", "brown,xyz", ""}) {
+            try {
+                ColorPalette.parse(new StringReader(invalid));
+                fail("accepted " + invalid);
+            } catch (IOException expected) {
+                //the palette is rejected
+            }
+        }
+    }
+
+    @Test
+    public void paletteClassifier_namesTheReferencesAndMostlyMatchesTheExactSearch() {
+        PaletteClassifier classifier = PaletteClassifier.getDefault();
+        ColorPalette palette = classifier.getPalette();
+        for (int i = 0; i < palette.size(); i++) {
+            int rgb = palette.getColor(i);
+            assertEquals("reference " + Integer.toHexString(rgb), palette.getNameId(i),
+                    classifier.classifyExact(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff));
+        }
+
+        //the grid only differs from the exact search near the borders of the Voronoi cells
+        Random random = new Random(12);
+        int differences = 0;
+        for (int n = 0; n < 20000; n++) {
+            int rgb = random.nextInt(1 << 24);
+            if (classifier.getNameId(rgb) != classifier.classifyExact(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff)) differences++;
+        }
+        assertTrue("differences " + differences, differences < 20000 / 50);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the integer HSV conversion against a float conversion for all the 24-bit colors
+ */
+public class HsvConverterTest {
+
+    @Test
+    public void toHsv_matchesFloatConversionForAllColors() {
+        for (int r = 0; r < 256; r++) {
+            for (int g = 0; g < 256; g++) {
+                for (int b = 0; b < 256; b++) {
+                    int min = Math.min(r, Math.min(g, b));
+                    int max = Math.max(r, Math.max(g, b));
+                    int delta = max - min;
+                    float hue = 0;
+                    if (delta != 0) {
+                        if (r == max) hue = (float) (g - b) / delta;
+                        else if (g == max) hue = 2 + (float) (b - r) / delta;
+                        else hue = 4 + (float) (r - g) / delta;
+                        hue *= 60;
+                        if (hue < 0) hue += 360;
+                    }
+
+                    int hsv = HsvConverter.toHsv(r, g, b);
+                    String rgb = "rgb(" + r + ", " + g + ", " + b + ")";
+                    //the float hue may fall just below an exact integer, the integer hue never does
+                    assertEquals(rgb, (int) Math.floor(hue + 1e-4), HsvConverter.getH(hsv));
+                    assertEquals(rgb, delta == 0 ? 0 : (float) delta / max, HsvConverter.getS(hsv), 0);
+                    assertEquals(rgb, max / 255.0f, HsvConverter.getV(hsv), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void toHsv_primaryColors() {
+        assertEquals(0, HsvConverter.getH(HsvConverter.toHsv(255, 0, 0)));
+        assertEquals(120, HsvConverter.getH(HsvConverter.toHsv(0, 255, 0)));
+        assertEquals(240, HsvConverter.getH(HsvConverter.toHsv(0, 0, 255)));
+        assertEquals(300, HsvConverter.getH(HsvConverter.toHsv(255, 0, 255)));
+        assertEquals(1f, HsvConverter.getS(HsvConverter.toHsv(255, 0, 255)), 0);
+        assertEquals(0f, HsvConverter.getS(HsvConverter.toHsv(0, 0, 0)), 0);
+        assertEquals(0f, HsvConverter.getV(HsvConverter.toHsv(0, 0, 0)), 0);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PackedColorTest {
+
+    @Test
+    public void pack_isReadBackByTheChannelGetters() {
+        int rgb = PackedColor.pack(0xfe, 0x01, 0x80);
+        assertEquals(0xfe0180, rgb);
+        assertEquals(0xfe, PackedColor.getR(rgb));
+        assertEquals(0x01, PackedColor.getG(rgb));
+        assertEquals(0x80, PackedColor.getB(rgb));
+        //an opaque color read from a bitmap has the same channels
+        assertEquals(0xfe, PackedColor.getR(0xff000000 | rgb));
+        assertEquals(HsvConverter.toHsv(0xfe, 0x01, 0x80), PackedColor.toHsv(rgb));
+    }
+
+    @Test
+    public void classify_namesEachColorOfTheArrayLikeASingleColor() {
+        Random random = new Random(3);
+        int[] colors = new int[4096];
+        for (int i = 0; i < colors.length; i++) colors[i] = random.nextInt(1 << 24);
+        byte[] nameIds = new byte[colors.length];
+
+        PackedColor.classify(null, colors, nameIds);
+        for (int i = 0; i < colors.length; i++) {
+            int rgb = colors[i];
+            assertEquals(ColorClassifier.classify(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff), nameIds[i]);
+            assertEquals(PackedColor.classify(null, rgb), nameIds[i]);
+        }
+    }
+
+    @Test
+    public void classify_usesTheNamerAndOnlyWritesTheCountedColors() {
+        ColorNamer namer = rgb -> rgb == 0x123456 ? ColorClassifier.PINK : ColorClassifier.GRAY;
+        byte[] nameIds = new byte[]{-1, -1, -1};
+
+        PackedColor.classify(namer, new int[]{0x123456, 0, 0x123456}, 2, nameIds);
+        assertArrayEquals(new byte[]{ColorClassifier.PINK, ColorClassifier.GRAY, -1}, nameIds);
+        assertEquals(ColorClassifier.PINK, PackedColor.classify(namer, 0x123456));
+        //the engine of a call does not change the next ones
+        assertEquals(ColorClassifier.classify(0x12, 0x34, 0x56), PackedColor.classify(null, 0x123456));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classify_rejectsTooShortNameIds() {
+        PackedColor.classify(null, new int[3], new byte[2]);
+    }
+
+}
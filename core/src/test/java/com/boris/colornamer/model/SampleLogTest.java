@@ -0,0 +1,122 @@
+package com.boris.colornamer.model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SampleLogTest {
+
+    private static File createDirectory() throws IOException {
+        File directory = Files.createTempDirectory("history").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private static void append(SampleLog log, int i) {
+        assertTrue(log.append(1000L + i, 0x102030 + i, 200 + i, 50, 75, (byte) (i % 3), 0.5f * i));
+    }
+
+    private static void assertSample(ColorSample sample, int i) {
+        assertEquals(1000L + i, sample.time);
+        assertEquals(0x102030 + i, sample.rgb);
+        assertEquals(200 + i, sample.h);
+        assertEquals(50, sample.s);
+        assertEquals(75, sample.v);
+        assertEquals(i % 3, sample.nameId);
+        assertEquals(0.5f * i, sample.variance, 0);
+    }
+
+    @Test
+    public void read_returnsTheFlushedReadingsFromTheOldest() throws IOException {
+        File directory = createDirectory();
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            //more readings than a batch
+            for (int i = 0; i < 100; i++) append(log, i);
+            log.flush();
+            assertEquals(100, log.getCount());
+            assertEquals(0, log.getDroppedCount());
+
+            SampleLogReader reader = SampleLogReader.open(directory);
+            assertEquals(100, reader.getCount());
+            ColorSample sample = new ColorSample();
+            for (int i = 99; i >= 0; i--) {
+                reader.read(i, sample);
+                assertSample(sample, i);
+            }
+        }
+    }
+
+    @Test
+    public void open_appendsToTheExistingLogAndIgnoresACutRecord() throws IOException {
+        File directory = createDirectory();
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            for (int i = 0; i < 3; i++) append(log, i);
+        }
+        //the application was killed while a record was written
+        try (RandomAccessFile raf = new RandomAccessFile(new File(directory, SampleLog.FILE_NAME), "rw")) {
+            raf.setLength(raf.length() + 10);
+        }
+        assertEquals(3, SampleLogReader.open(directory).getCount());
+
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            for (int i = 3; i < 5; i++) append(log, i);
+        }
+        SampleLogReader reader = SampleLogReader.open(directory);
+        assertEquals(5, reader.getCount());
+        ColorSample sample = new ColorSample();
+        for (int i = 0; i < 5; i++) {
+            reader.read(i, sample);
+            assertSample(sample, i);
+        }
+    }
+
+    @Test
+    public void append_rotatesTheFileAndKeepsTheNewestReadings() throws IOException {
+        File directory = createDirectory();
+        //a file is rotated after 10 records
+        long maxFileSize = SampleLog.FILE_HEADER_SIZE + 10 * SampleLog.RECORD_SIZE;
+        try (SampleLog log = new SampleLog(directory, maxFileSize)) {
+            for (int i = 0; i < 25; i++) {
+                append(log, i);
+                //one record per write so the rotations are predictable
+                log.flush();
+            }
+        }
+        assertTrue(new File(directory, SampleLog.PREVIOUS_FILE_NAME).length() <= maxFileSize);
+        assertTrue(new File(directory, SampleLog.FILE_NAME).length() <= maxFileSize);
+
+        SampleLogReader reader = SampleLogReader.open(directory);
+        //the first 10 readings were rotated twice
+        assertEquals(15, reader.getCount());
+        ColorSample sample = new ColorSample();
+        for (int i = 0; i < 15; i++) {
+            reader.read(i, sample);
+            assertSample(sample, i + 10);
+        }
+    }
+
+    @Test
+    public void open_returnsAnEmptyReaderWithoutLog() throws IOException {
+        assertEquals(0, SampleLogReader.open(createDirectory()).getCount());
+    }
+
+    @Test
+    public void writeCsv_writesOneLinePerReading() throws IOException {
+        File directory = createDirectory();
+        try (SampleLog log = new SampleLog(directory, SampleLog.DEFAULT_MAX_FILE_SIZE)) {
+            for (int i = 0; i < 2; i++) append(log, i);
+        }
+        StringWriter writer = new StringWriter();
+        SampleLogReader.open(directory).writeCsv(writer, new String[]{"Red", "Green", "Blue"});
+        assertEquals("time,r,g,b,h,s,v,name,variance\n"
+                + "1000,16,32,48,200,50,75,Red,0.0\n"
+                + "1001,16,32,49,201,50,75,Green,0.5\n", writer.toString());
+    }
+
+}